@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The RequestExecutor class runs the work of a request off the container worker threads, so requests blocked
+ * on the DB do not take the threads of cheap requests (e.g. the reference data served from memory).
+ * The mode is switched by `filmorate.async.enabled`. When it is off, the work runs in the calling thread
+ * and the returned future is already completed, exceptions are thrown to the caller as before.
+ * When it is on, the work runs on virtual threads if the JDK has them and `filmorate.async.virtual-threads`
+ * is true, otherwise on a bounded pool of platform threads. A request that does not fit in the queue
+ * of the pool is rejected with {@link RejectedExecutionException} instead of waiting.
+ */
+@Slf4j
+@Component
+public class RequestExecutor {
+    private final ExecutorService executor;
+
+    public RequestExecutor(@Value("${filmorate.async.enabled:false}") boolean isEnabled,
+                           @Value("${filmorate.async.virtual-threads:true}") boolean isVirtualThreads,
+                           @Value("${filmorate.async.pool-size:64}") int poolSize,
+                           @Value("${filmorate.async.queue-capacity:2000}") int queueCapacity) {
+        ExecutorService virtualThreadExecutor = isEnabled && isVirtualThreads ? newVirtualThreadExecutor() : null;
+
+        if (!isEnabled) {
+            this.executor = null;
+            log.info("The requests are executed in the container threads.");
+        } else if (virtualThreadExecutor != null) {
+            this.executor = virtualThreadExecutor;
+            log.info("The requests are executed in virtual threads.");
+        } else {
+            this.executor = newPlatformThreadExecutor(poolSize, queueCapacity);
+            log.info("The requests are executed in a pool of {} threads, queue capacity: {}.",
+                    poolSize, queueCapacity);
+        }
+    }
+
+    public boolean isEnabled() {
+
+        return executor != null;
+    }
+
+    /**
+     * Runs the work and returns its result.
+     *
+     * @param supplier The work of the request.
+     * @param <T>      The type of the result.
+     * @return The future result, already completed if the mode is off.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+
+        if (executor == null) {
+            return CompletableFuture.completedFuture(supplier.get());
+        }
+
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+
+    /**
+     * Runs the work of a request without a result.
+     *
+     * @param runnable The work of the request.
+     * @return The future completion, already completed if the mode is off.
+     */
+    public CompletableFuture<Void> run(Runnable runnable) {
+
+        return supply(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task, available from JDK 21.
+     * The application is built for JDK 11, so the factory method is looked up at runtime.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException exception) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(int poolSize, int queueCapacity) {
+
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "request-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
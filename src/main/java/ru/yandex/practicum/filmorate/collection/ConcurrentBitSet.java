@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.collection;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The ConcurrentBitSet class is a growable set of non-negative long values stored as one bit per value,
+ * intended for dense ID spaces: a million IDs take 125 KB, a lookup is a single array read.
+ * Lookups take no locks and always see completed writes. Writes are serialized on the set,
+ * so growing the array never loses a concurrent write. The values range from 0 to MAX_VALUE,
+ * the word index of a greater value does not fit the array index.
+ */
+public class ConcurrentBitSet {
+    public static final long MAX_VALUE = (1L << 37) - 1;
+
+    private volatile AtomicLongArray words = new AtomicLongArray(0);
+
+    public boolean get(long value) {
+
+        if (value < 0) {
+            return false;
+        }
+
+        AtomicLongArray current = words;
+        long index = value >>> 6;
+
+        return index < current.length() && (current.get((int) index) & (1L << value)) != 0;
+    }
+
+    public synchronized void set(long value) {
+
+        if (value < 0 || value > MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("The value must be from 0 to %d: %d.",
+                    MAX_VALUE, value));
+        }
+
+        int index = (int) (value >>> 6);
+        AtomicLongArray current = words;
+        if (index >= current.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            words = grown;
+            current = grown;
+        }
+
+        current.set(index, current.get(index) | (1L << value));
+    }
+
+    public synchronized void clear(long value) {
+
+        AtomicLongArray current = words;
+        long index = value >>> 6;
+        if (value >= 0 && index < current.length()) {
+            current.set((int) index, current.get((int) index) & ~(1L << value));
+        }
+    }
+
+    public synchronized void clear() {
+
+        words = new AtomicLongArray(0);
+    }
+}
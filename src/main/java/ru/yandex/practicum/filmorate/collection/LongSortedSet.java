@@ -0,0 +1,338 @@
+package ru.yandex.practicum.filmorate.collection;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.LongStream;
+
+/**
+ * The LongSortedSet class is a set of long values stored in ascending order in a primitive array.
+ * An element takes 8 bytes instead of about 56 bytes of a boxed Long in a TreeSet node.
+ * Lookups use binary search (O(log n)), appending a value greater than all stored values is O(1) amortized,
+ * inserting or removing in the middle shifts the tail of the array (O(n)).
+ * The set is not thread-safe, reads do not modify it, so it can be shared between readers.
+ * It is serialized to JSON as a plain array of numbers.
+ */
+@JsonSerialize(using = LongSortedSet.Serializer.class)
+@JsonDeserialize(using = LongSortedSet.Deserializer.class)
+public class LongSortedSet extends AbstractSet<Long> {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values;
+    private int size;
+
+    public LongSortedSet() {
+        this.values = EMPTY;
+    }
+
+    public LongSortedSet(int capacity) {
+        this.values = capacity == 0 ? EMPTY : new long[capacity];
+    }
+
+    public LongSortedSet(Collection<? extends Long> collection) {
+        if (collection instanceof LongSortedSet) {
+            LongSortedSet other = (LongSortedSet) collection;
+            this.values = Arrays.copyOf(other.values, other.size);
+            this.size = other.size;
+        } else {
+            this.values = new long[collection.size()];
+            collection.forEach(this::add);
+        }
+    }
+
+    /**
+     * Creates a set from the given values in any order, duplicates are dropped.
+     *
+     * @param values The values of the set.
+     * @return The set of the values.
+     */
+    public static LongSortedSet of(long... values) {
+
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[count - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+
+        LongSortedSet set = new LongSortedSet();
+        set.values = sorted;
+        set.size = count;
+        return set;
+    }
+
+    public boolean add(long value) {
+
+        if (size == 0 || value > values[size - 1]) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            return true;
+        }
+
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+
+        int insertionPoint = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(values, insertionPoint, values, insertionPoint + 1, size - insertionPoint);
+        values[insertionPoint] = value;
+        size++;
+        return true;
+    }
+
+    public boolean remove(long value) {
+
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(long value) {
+
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Retrieves the value at the given position in ascending order.
+     *
+     * @param index The position of the value, from 0 to size - 1.
+     * @return The value.
+     */
+    public long get(int index) {
+
+        Objects.checkIndex(index, size);
+        return values[index];
+    }
+
+    public long[] toLongArray() {
+
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Retrieves the values greater than the given one in ascending order.
+     *
+     * @param after The value after which the result starts.
+     * @param limit The maximum number of values in the result.
+     * @return The values.
+     */
+    public long[] toLongArray(long after, int limit) {
+
+        int index = Arrays.binarySearch(values, 0, size, after);
+        int from = index >= 0 ? index + 1 : -index - 1;
+
+        return Arrays.copyOfRange(values, from, from + Math.min(limit, size - from));
+    }
+
+    /**
+     * Finds the values present in both sets. Sets of similar sizes are merged in O(n + m).
+     * When one set is much smaller, each of its values is searched in the larger one by galloping
+     * (exponential search from the previous position), which costs O(n log(m / n)).
+     *
+     * @param other The other set.
+     * @return A new set of the common values.
+     */
+    public LongSortedSet intersection(LongSortedSet other) {
+
+        long[] small = size <= other.size ? values : other.values;
+        int smallSize = Math.min(size, other.size);
+        long[] large = size <= other.size ? other.values : values;
+        int largeSize = Math.max(size, other.size);
+
+        LongSortedSet result = new LongSortedSet(smallSize);
+        if (smallSize == 0) {
+            return result;
+        }
+
+        if (largeSize / smallSize < 8) {
+            int i = 0;
+            int j = 0;
+            long[] common = result.values;
+            int count = 0;
+            while (i < smallSize && j < largeSize) {
+                long a = small[i];
+                long b = large[j];
+                common[count] = a;
+                count += a == b ? 1 : 0;
+                i += a <= b ? 1 : 0;
+                j += a >= b ? 1 : 0;
+            }
+            result.size = count;
+            return result;
+        }
+
+        int from = 0;
+        for (int i = 0; i < smallSize && from < largeSize; i++) {
+            long value = small[i];
+            int step = 1;
+            int to = from;
+            while (to < largeSize && large[to] < value) {
+                from = to + 1;
+                to += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(large, from, Math.min(to + 1, largeSize), value);
+            if (index >= 0) {
+                result.values[result.size++] = value;
+                from = index + 1;
+            } else {
+                from = -index - 1;
+            }
+        }
+
+        return result;
+    }
+
+    public LongStream longStream() {
+
+        return Arrays.stream(values, 0, size);
+    }
+
+    @Override
+    public boolean add(Long value) {
+
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+
+        return value instanceof Long && remove(((Long) value).longValue());
+    }
+
+    @Override
+    public boolean contains(Object value) {
+
+        return value instanceof Long && contains(((Long) value).longValue());
+    }
+
+    @Override
+    public int size() {
+
+        return size;
+    }
+
+    @Override
+    public void clear() {
+
+        size = 0;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+
+        return new PrimitiveIterator.OfLong() {
+            private int next;
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public long nextLong() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                last = next++;
+                return values[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                System.arraycopy(values, last + 1, values, last, size - last - 1);
+                size--;
+                next = last;
+                last = -1;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object object) {
+
+        if (object instanceof LongSortedSet) {
+            LongSortedSet other = (LongSortedSet) object;
+            return Arrays.equals(values, 0, size, other.values, 0, other.size);
+        }
+
+        return super.equals(object);
+    }
+
+    @Override
+    public int hashCode() {
+
+        int hashCode = 0;
+        for (int i = 0; i < size; i++) {
+            hashCode += Long.hashCode(values[i]);
+        }
+
+        return hashCode;
+    }
+
+    private void ensureCapacity(int capacity) {
+
+        if (capacity > values.length) {
+            values = Arrays.copyOf(values, Math.max(capacity, Math.max(8, values.length + (values.length >> 1))));
+        }
+    }
+
+    public static class Serializer extends StdSerializer<LongSortedSet> {
+
+        public Serializer() {
+            super(LongSortedSet.class);
+        }
+
+        @Override
+        public void serialize(LongSortedSet set, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+
+            generator.writeArray(set.values, 0, set.size);
+        }
+    }
+
+    public static class Deserializer extends StdDeserializer<LongSortedSet> {
+
+        public Deserializer() {
+            super(LongSortedSet.class);
+        }
+
+        @Override
+        public LongSortedSet deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+
+            if (!parser.isExpectedStartArrayToken()) {
+                return (LongSortedSet) context.handleUnexpectedToken(LongSortedSet.class, parser);
+            }
+
+            LongSortedSet set = new LongSortedSet();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                set.add(parser.getLongValue());
+            }
+
+            return set;
+        }
+    }
+}
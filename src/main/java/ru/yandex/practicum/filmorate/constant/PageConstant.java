@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.constant;
+
+public class PageConstant {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+}
@@ -3,5 +3,7 @@ package ru.yandex.practicum.filmorate.constant;
 public class UserConstant {
     public static final String EMAIL_REGEX = "[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,6}";
     public static final String LOGIN_REGEX = "\\S+";
-    public static final String USER_DAO_IMPL = "userDB";
+    public static final String USER_DAO_IMPL = "userDao";
+    public static final String COUNT_OF_RECOMMENDATIONS = "10";
+    public static final int MAX_COUNT_OF_RECOMMENDATIONS = 100;
 }
@@ -7,6 +7,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.SQLDataAccessException;
 import ru.yandex.practicum.filmorate.exception.ValidException;
@@ -14,6 +15,7 @@ import ru.yandex.practicum.filmorate.response.ErrorResponse;
 
 import javax.validation.ConstraintViolationException;
 import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -52,6 +54,24 @@ public class ErrorHandler extends ResponseEntityExceptionHandler {
         return ErrorResponse.builder().message(exception.getMessage()).build();
     }
 
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(ConflictException.class)
+    public ErrorResponse conflictException(final ConflictException exception) {
+
+        log.warn("Exception: {}, Conflict: \n- {}", exception.getClass().getName(), exception.getMessage());
+
+        return ErrorResponse.builder().message(exception.getMessage()).build();
+    }
+
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ErrorResponse rejectedExecutionException(final RejectedExecutionException exception) {
+
+        log.warn("Exception: {}, The request queue is full.", exception.getClass().getName());
+
+        return ErrorResponse.builder().message("The server is overloaded, retry the request later.").build();
+    }
+
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     @ExceptionHandler(Exception.class)
     public ErrorResponse throwableException(final Exception exception) {
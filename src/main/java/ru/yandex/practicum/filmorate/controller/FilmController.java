@@ -1,17 +1,36 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.async.RequestExecutor;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.FilmRankDTO;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.model.FilmView;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.utils.HttpCacheUtils;
+import ru.yandex.practicum.filmorate.utils.JsonStreamUtils;
+import ru.yandex.practicum.filmorate.utils.PageUtils;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
 
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Positive;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static ru.yandex.practicum.filmorate.constant.FilmConstant.COUNT_OF_POPULAR_FILM;
+import static ru.yandex.practicum.filmorate.constant.FilmConstant.FULL_VIEW;
+import static ru.yandex.practicum.filmorate.constant.PageConstant.DEFAULT_PAGE_SIZE;
+import static ru.yandex.practicum.filmorate.constant.PageConstant.MAX_PAGE_SIZE;
+import static ru.yandex.practicum.filmorate.utils.JsonStreamUtils.FORMAT_JSON;
 
 @Slf4j
 @Validated
@@ -20,72 +39,184 @@ import static ru.yandex.practicum.filmorate.constant.FilmConstant.COUNT_OF_POPUL
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService service;
+    private final ObjectMapper objectMapper;
+    private final EntityVersions versions;
+    private final RequestExecutor executor;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public FilmDTO createFilm(@RequestBody FilmDTO filmDTO) {
+    public CompletableFuture<FilmDTO> createFilm(@RequestBody FilmDTO filmDTO) {
 
         log.info("START endpoint `method:POST /films` (create film), request: {}.", filmDTO.getName());
 
-        return service.create(filmDTO);
+        return executor.supply(() -> service.create(filmDTO));
+    }
+
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public CompletableFuture<List<Long>> createFilms(@RequestBody List<FilmDTO> filmDTOs) {
+
+        log.info("START endpoint `method:POST /films/batch` (create films), films: {}.", filmDTOs.size());
+
+        return executor.supply(() -> service.createAll(filmDTOs));
     }
 
     @GetMapping("/{id}")
-    public FilmDTO getFilmById(@PathVariable Long id) {
+    public CompletableFuture<FilmDTO> getFilmById(@PathVariable Long id,
+                                                  @RequestParam(defaultValue = FULL_VIEW) String view,
+                                                  ServletWebRequest request) {
 
-        log.info("START endpoint `method:GET /films/{id}` (get film by id), film id: {}.", id);
+        log.info("START endpoint `method:GET /films/{id}` (get film by id), film id: {}, view: {}.", id, view);
 
-        return service.getById(id);
+        FilmView filmView = parseView(view);
+        if (request.checkNotModified(versions.tag(EntityVersions.Type.FILM, id))) {
+            return null;
+        }
+
+        return executor.supply(() -> service.getById(id, filmView));
+    }
+
+    /**
+     * Writes the full film list as a JSON array while the films are read in keyset pages,
+     * so the list is never held in memory as a whole.
+     */
+    @GetMapping(params = {"!after", "!limit", "!stream"})
+    public ResponseEntity<StreamingResponseBody> getAllFilms(@RequestParam(defaultValue = FULL_VIEW) String view) {
+
+        log.info("START endpoint `method:GET /films` (get all films), view: {}.", view);
+
+        FilmView filmView = parseView(view);
+
+        return JsonStreamUtils.<FilmDTO>toResponse(FORMAT_JSON, objectMapper,
+                consumer -> service.streamAll(consumer, filmView));
     }
 
     @GetMapping
-    public List<FilmDTO> getAllFilms() {
+    public CompletableFuture<ResponseEntity<List<FilmDTO>>> getFilmsPage(
+            @RequestParam(required = false) Long after,
+            @Positive(message = "must be greater than 0.")
+            @Max(value = MAX_PAGE_SIZE, message = "must not be greater than 1000.")
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = FULL_VIEW) String view) {
+
+        log.info("START endpoint `method:GET /films` (get a page of films), after: {}, limit: {}, view: {}.",
+                after, limit, view);
+
+        FilmView filmView = parseView(view);
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+        return executor.supply(() -> PageUtils.toResponse(service.getAll(after, pageSize, filmView), pageSize,
+                FilmDTO::getId));
+    }
+
+    @GetMapping(params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamAllFilms(@RequestParam String stream,
+                                                                @RequestParam(defaultValue = FULL_VIEW) String view) {
+
+        log.info("START endpoint `method:GET /films?stream` (stream all films), format: {}, view: {}.", stream, view);
 
-        log.info("START endpoint `method:GET /films` (get all films).");
+        FilmView filmView = parseView(view);
 
-        return service.getAll();
+        return JsonStreamUtils.<FilmDTO>toResponse(stream, objectMapper,
+                consumer -> service.streamAll(consumer, filmView));
     }
 
     @PutMapping
-    public FilmDTO updateFilm(@RequestBody FilmDTO filmDTO) {
+    public CompletableFuture<FilmDTO> updateFilm(
+            @RequestBody FilmDTO filmDTO,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         log.info("START endpoint `method:PUT /films` (update film), request: {}.", filmDTO.getName());
 
-        return service.update(filmDTO);
+        Long version = HttpCacheUtils.parseIfMatchVersion(ifMatch);
+        if (version != null) {
+            filmDTO.setVersion(version);
+        }
+
+        return executor.supply(() -> service.update(filmDTO));
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteFilmById(@PathVariable Long id) {
+    public CompletableFuture<Void> deleteFilmById(@PathVariable Long id) {
 
         log.info("START endpoint `method:DELETE /films/{id}` (delete film by id), film id: {}.", id);
-        service.deleteById(id);
+
+        return executor.run(() -> service.deleteById(id));
     }
 
     @PutMapping("/{id}/like/{userId}")
-    public void likeFilm(@PathVariable Long id, @PathVariable Long userId) {
+    public CompletableFuture<Void> likeFilm(@PathVariable Long id, @PathVariable Long userId) {
 
         log.info("START endpoint `method:PUT /films/{id}/like/{userId}` (add like to film), " +
                 "film id: {}, user id: {}.", id, userId);
-        service.likeFilm(id, userId);
+
+        return executor.run(() -> service.likeFilm(id, userId));
     }
 
     @GetMapping("/popular")
-    public List<FilmDTO> getPopularFilms(@Positive(message = "must be greater than 0.")
-                                         @RequestParam(defaultValue = COUNT_OF_POPULAR_FILM) String count) {
+    public CompletableFuture<ResponseEntity<List<FilmDTO>>> getPopularFilms(
+            @Positive(message = "must be greater than 0.")
+            @RequestParam(defaultValue = COUNT_OF_POPULAR_FILM) String count,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = FULL_VIEW) String view,
+            ServletWebRequest request) {
 
         log.info("START endpoint `method:GET /films/popular` (get must popular films), " +
-                "count films: {}.", count);
+                "count films: {}, after: {}, view: {}.", count, after, view);
+
+        FilmView filmView = parseView(view);
+        if (request.checkNotModified(versions.tag(EntityVersions.Type.FILM))) {
+            return null;
+        }
+
+        return executor.supply(() -> PageUtils.toResponse(service.getPopularFilms(count, after, filmView)));
+    }
+
+    @GetMapping("/{id}/likes")
+    public CompletableFuture<ResponseEntity<List<Long>>> getFilmLikes(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long after,
+            @Positive(message = "must be greater than 0.")
+            @Max(value = MAX_PAGE_SIZE, message = "must not be greater than 1000.")
+            @RequestParam(required = false) Integer limit) {
+
+        log.info("START endpoint `method:GET /films/{id}/likes` (get users who liked the film), " +
+                "film id: {}, after: {}, limit: {}.", id, after, limit);
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
 
-        return service.getPopularFilms(count);
+        return executor.supply(() -> PageUtils.toResponse(service.getLikes(id, after, pageSize), pageSize,
+                userId -> userId));
+    }
+
+    @GetMapping("/{id}/rank")
+    public CompletableFuture<FilmRankDTO> getFilmRank(@PathVariable Long id) {
+
+        log.info("START endpoint `method:GET /films/{id}/rank` (get film rank by popularity), film id: {}.", id);
+
+        return executor.supply(() -> service.getRank(id));
     }
 
     @DeleteMapping("/{id}/like/{userId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteLike(@PathVariable Long id, @PathVariable Long userId) {
+    public CompletableFuture<Void> deleteLike(@PathVariable Long id, @PathVariable Long userId) {
 
         log.info("START endpoint `method:DELETE /films/{id}/like/{userId}` (delete like from film), " +
                 "film id: {}, user id: {}.", id, userId);
-        service.deleteLike(id, userId);
+
+        return executor.run(() -> service.deleteLike(id, userId));
+    }
+
+    private FilmView parseView(String view) {
+
+        try {
+            return FilmView.valueOf(view.toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            throw BadRequestException.builder()
+                    .message(String.format("The view `%s` is not supported, use `summary` or `full`.", view))
+                    .httpStatus(HttpStatus.BAD_REQUEST)
+                    .build();
+        }
     }
 }
\ No newline at end of file
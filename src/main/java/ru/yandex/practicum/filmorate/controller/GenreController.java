@@ -2,19 +2,38 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import ru.yandex.practicum.filmorate.dto.GenreDTO;
 import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.utils.HttpCacheUtils;
+import ru.yandex.practicum.filmorate.utils.PageUtils;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import java.time.Duration;
 import java.util.List;
 
+import static ru.yandex.practicum.filmorate.constant.PageConstant.DEFAULT_PAGE_SIZE;
+import static ru.yandex.practicum.filmorate.constant.PageConstant.MAX_PAGE_SIZE;
+
 @Slf4j
+@Validated
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/genres")
 public class GenreController {
     private final GenreService service;
+    private final EntityVersions versions;
+
+    @Value("${filmorate.http.reference-max-age:1h}")
+    private Duration referenceMaxAge = Duration.ofHours(1);
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -26,19 +45,43 @@ public class GenreController {
     }
 
     @GetMapping("/{id}")
-    public GenreDTO getGenreById(@PathVariable Long id) {
+    public ResponseEntity<GenreDTO> getGenreById(@PathVariable Long id, ServletWebRequest request) {
 
         log.info("START endpoint `method:GET /genres/{id}` (get genre by id), genre id: {}.", id);
 
-        return service.getById(id);
+        CacheControl cacheControl = CacheControl.maxAge(referenceMaxAge).cachePublic();
+        if (HttpCacheUtils.checkNotModified(request, versions.tag(EntityVersions.Type.GENRE, id), cacheControl)) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .body(service.getById(id));
     }
 
     @GetMapping
-    public List<GenreDTO> getAllGenres() {
-
-        log.info("START endpoint `method:GET /genres` (get all genres).");
-
-        return service.getAll();
+    public ResponseEntity<List<GenreDTO>> getAllGenres(@RequestParam(required = false) Long after,
+                                                       @Positive(message = "must be greater than 0.")
+                                                       @Max(value = MAX_PAGE_SIZE,
+                                                               message = "must not be greater than 1000.")
+                                                       @RequestParam(required = false) Integer limit,
+                                                       ServletWebRequest request) {
+
+        log.info("START endpoint `method:GET /genres` (get all genres), after: {}, limit: {}.", after, limit);
+
+        CacheControl cacheControl = CacheControl.maxAge(referenceMaxAge).cachePublic();
+        if (HttpCacheUtils.checkNotModified(request, versions.tag(EntityVersions.Type.GENRE), cacheControl)) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok()
+                    .cacheControl(cacheControl)
+                    .body(service.getAll());
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+        return HttpCacheUtils.withCacheControl(PageUtils.toResponse(service.getAll(after, pageSize), pageSize,
+                GenreDTO::getId), cacheControl);
     }
 
     @PutMapping
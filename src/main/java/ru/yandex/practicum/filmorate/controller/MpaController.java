@@ -2,20 +2,39 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import ru.yandex.practicum.filmorate.dto.MpaDTO;
 import ru.yandex.practicum.filmorate.service.MpaService;
+import ru.yandex.practicum.filmorate.utils.HttpCacheUtils;
+import ru.yandex.practicum.filmorate.utils.PageUtils;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import java.time.Duration;
 import java.util.List;
 
+import static ru.yandex.practicum.filmorate.constant.PageConstant.DEFAULT_PAGE_SIZE;
+import static ru.yandex.practicum.filmorate.constant.PageConstant.MAX_PAGE_SIZE;
+
 
 @Slf4j
+@Validated
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/mpa")
 public class MpaController {
     private final MpaService service;
+    private final EntityVersions versions;
+
+    @Value("${filmorate.http.reference-max-age:1h}")
+    private Duration referenceMaxAge = Duration.ofHours(1);
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -27,19 +46,43 @@ public class MpaController {
     }
 
     @GetMapping("/{id}")
-    public MpaDTO getMpaById(@PathVariable Long id) {
+    public ResponseEntity<MpaDTO> getMpaById(@PathVariable Long id, ServletWebRequest request) {
 
         log.info("START endpoint `method:GET /mpa/{id}` (get MPA rating by id), MPA rating id: {}.", id);
 
-        return service.getById(id);
+        CacheControl cacheControl = CacheControl.maxAge(referenceMaxAge).cachePublic();
+        if (HttpCacheUtils.checkNotModified(request, versions.tag(EntityVersions.Type.MPA, id), cacheControl)) {
+            return null;
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .body(service.getById(id));
     }
 
     @GetMapping
-    public List<MpaDTO> getAllMpaRatings() {
-
-        log.info("START endpoint `method:GET /mpa` (get all MPA ratings).");
-
-        return service.getAll();
+    public ResponseEntity<List<MpaDTO>> getAllMpaRatings(@RequestParam(required = false) Long after,
+                                                         @Positive(message = "must be greater than 0.")
+                                                         @Max(value = MAX_PAGE_SIZE,
+                                                                 message = "must not be greater than 1000.")
+                                                         @RequestParam(required = false) Integer limit,
+                                                         ServletWebRequest request) {
+
+        log.info("START endpoint `method:GET /mpa` (get all MPA ratings), after: {}, limit: {}.", after, limit);
+
+        CacheControl cacheControl = CacheControl.maxAge(referenceMaxAge).cachePublic();
+        if (HttpCacheUtils.checkNotModified(request, versions.tag(EntityVersions.Type.MPA), cacheControl)) {
+            return null;
+        }
+        if (after == null && limit == null) {
+            return ResponseEntity.ok()
+                    .cacheControl(cacheControl)
+                    .body(service.getAll());
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+        return HttpCacheUtils.withCacheControl(PageUtils.toResponse(service.getAll(after, pageSize), pageSize,
+                MpaDTO::getId), cacheControl);
     }
 
     @PutMapping
@@ -1,94 +1,213 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.async.RequestExecutor;
+import ru.yandex.practicum.filmorate.dto.FriendshipDTO;
+import ru.yandex.practicum.filmorate.dto.FriendshipResultDTO;
+import ru.yandex.practicum.filmorate.dto.RecommendationDTO;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
 import ru.yandex.practicum.filmorate.service.UserService;
-
+import ru.yandex.practicum.filmorate.utils.HttpCacheUtils;
+import ru.yandex.practicum.filmorate.utils.JsonStreamUtils;
+import ru.yandex.practicum.filmorate.utils.PageUtils;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Positive;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static ru.yandex.practicum.filmorate.constant.PageConstant.DEFAULT_PAGE_SIZE;
+import static ru.yandex.practicum.filmorate.constant.PageConstant.MAX_PAGE_SIZE;
+import static ru.yandex.practicum.filmorate.constant.UserConstant.COUNT_OF_RECOMMENDATIONS;
+import static ru.yandex.practicum.filmorate.constant.UserConstant.MAX_COUNT_OF_RECOMMENDATIONS;
+import static ru.yandex.practicum.filmorate.utils.JsonStreamUtils.FORMAT_JSON;
 
 @Slf4j
+@Validated
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/users")
 public class UserController {
     private final UserService service;
+    private final ObjectMapper objectMapper;
+    private final EntityVersions versions;
+    private final RequestExecutor executor;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public UserDTO createUser(@RequestBody final UserDTO userDTO) {
+    public CompletableFuture<UserDTO> createUser(@RequestBody final UserDTO userDTO) {
 
         log.info("START endpoint `method:POST /users` (create user), request: {}.", userDTO.getLogin());
 
-        return service.create(userDTO);
+        return executor.supply(() -> service.create(userDTO));
+    }
+
+    @PostMapping(value = "/friendships/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<List<FriendshipResultDTO>> addFriendships(
+            @RequestBody List<FriendshipDTO> friendshipDTOs) {
+
+        log.info("START endpoint `method:POST /users/friendships/batch` (add friendships), friendships: {}.",
+                friendshipDTOs.size());
+
+        return executor.supply(() -> service.addFriends(friendshipDTOs));
+    }
+
+    @PostMapping(value = "/friendships/batch", consumes = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> addFriendshipsNdjson(InputStream inputStream) {
+
+        List<FriendshipDTO> friendshipDTOs = JsonStreamUtils.readNdjson(inputStream, objectMapper,
+                FriendshipDTO.class);
+
+        log.info("START endpoint `method:POST /users/friendships/batch` (add friendships, NDJSON), " +
+                "friendships: {}.", friendshipDTOs.size());
+
+        List<FriendshipResultDTO> results = service.addFriends(friendshipDTOs);
+
+        return JsonStreamUtils.toResponse(JsonStreamUtils.FORMAT_NDJSON, objectMapper, results::forEach);
     }
 
     @GetMapping("/{id}")
-    public UserDTO getUserById(@PathVariable final Long id) {
+    public CompletableFuture<UserDTO> getUserById(@PathVariable final Long id, ServletWebRequest request) {
 
         log.info("START endpoint `method:GET /users/{id}` (get user by id), user id: {}.", id);
 
-        return service.getById(id);
+        if (request.checkNotModified(versions.tag(EntityVersions.Type.USER, id))) {
+            return null;
+        }
+
+        return executor.supply(() -> service.getById(id));
     }
 
-    @GetMapping
-    public List<UserDTO> getAllUsers() {
+    /**
+     * Writes the full user list as a JSON array while the users are read in keyset pages,
+     * so the list is never held in memory as a whole.
+     */
+    @GetMapping(params = {"!after", "!limit", "!stream"})
+    public ResponseEntity<StreamingResponseBody> getAllUsers() {
 
         log.info("START endpoint `method:GET /users` (get all users).");
 
-        return service.getAll();
+        return JsonStreamUtils.toResponse(FORMAT_JSON, objectMapper, service::streamAll);
+    }
+
+    @GetMapping
+    public CompletableFuture<ResponseEntity<List<UserDTO>>> getUsersPage(
+            @RequestParam(required = false) Long after,
+            @Positive(message = "must be greater than 0.")
+            @Max(value = MAX_PAGE_SIZE, message = "must not be greater than 1000.")
+            @RequestParam(required = false) Integer limit) {
+
+        log.info("START endpoint `method:GET /users` (get a page of users), after: {}, limit: {}.", after, limit);
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+        return executor.supply(() -> PageUtils.toResponse(service.getAll(after, pageSize), pageSize,
+                UserDTO::getId));
+    }
+
+    @GetMapping(params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@RequestParam String stream) {
+
+        log.info("START endpoint `method:GET /users?stream` (stream all users), format: {}.", stream);
+
+        return JsonStreamUtils.toResponse(stream, objectMapper, service::streamAll);
     }
 
     @PutMapping
-    public UserDTO updateUser(@RequestBody UserDTO userDTO) {
+    public CompletableFuture<UserDTO> updateUser(
+            @RequestBody UserDTO userDTO,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         log.info("START endpoint `method:PUT /users` (update user), request: {}.", userDTO.getLogin());
 
-        return service.update(userDTO);
+        Long version = HttpCacheUtils.parseIfMatchVersion(ifMatch);
+        if (version != null) {
+            userDTO.setVersion(version);
+        }
+
+        return executor.supply(() -> service.update(userDTO));
     }
 
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteUserById(@PathVariable Long id) {
+    public CompletableFuture<Void> deleteUserById(@PathVariable Long id) {
 
         log.info("START endpoint `method:DELETE /users/{id}` (delete user by id), user id: {}.", id);
-        service.deleteById(id);
+
+        return executor.run(() -> service.deleteById(id));
     }
 
     @PutMapping("/{id}/friends/{friendId}")
-    public void addFriend(@PathVariable Long id, @PathVariable Long friendId) {
+    public CompletableFuture<Void> addFriend(@PathVariable Long id, @PathVariable Long friendId) {
 
         log.info("START endpoint `method:PUT /users/{id}/friends/{friendId}` (add friend), " +
                 "user id: {}, friend id: {}.", id, friendId);
-        service.addFriend(id, friendId);
+
+        return executor.run(() -> service.addFriend(id, friendId));
     }
 
     @GetMapping("/{id}/friends")
-    public List<UserDTO> getAllFriends(@PathVariable Long id) {
-
-        log.info("START endpoint `method:GET /users/{id}/friends` (get all friends), user id: {}.", id);
-
-        return service.getAllFriends(id);
+    public CompletableFuture<ResponseEntity<List<UserDTO>>> getAllFriends(
+            @PathVariable Long id,
+            @RequestParam(required = false) Long after,
+            @Positive(message = "must be greater than 0.")
+            @Max(value = MAX_PAGE_SIZE, message = "must not be greater than 1000.")
+            @RequestParam(required = false) Integer limit) {
+
+        log.info("START endpoint `method:GET /users/{id}/friends` (get all friends), user id: {}, " +
+                "after: {}, limit: {}.", id, after, limit);
+
+        if (after == null && limit == null) {
+            return executor.supply(() -> ResponseEntity.ok(service.getAllFriends(id)));
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+
+        return executor.supply(() -> PageUtils.toResponse(service.getAllFriends(id, after, pageSize), pageSize,
+                UserDTO::getId));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public List<UserDTO> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
+    public CompletableFuture<List<UserDTO>> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
 
         log.info("START endpoint `method:GET /users/{id}/friends/common/{otherId}` (get common friends), " +
                 "user id: {}, other user id: {}.", id, otherId);
 
-        return service.getCommonFriends(id, otherId);
+        return executor.supply(() -> service.getCommonFriends(id, otherId));
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public CompletableFuture<List<RecommendationDTO>> getRecommendations(
+            @PathVariable Long id,
+            @Positive(message = "must be greater than 0.")
+            @Max(value = MAX_COUNT_OF_RECOMMENDATIONS, message = "must not be greater than 100.")
+            @RequestParam(defaultValue = COUNT_OF_RECOMMENDATIONS) Integer limit) {
+
+        log.info("START endpoint `method:GET /users/{id}/recommendations` (get people the user may know), " +
+                "user id: {}, limit: {}.", id, limit);
+
+        return executor.supply(() -> service.getRecommendations(id, limit));
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteFriendById(@PathVariable Long id, @PathVariable Long friendId) {
+    public CompletableFuture<Void> deleteFriendById(@PathVariable Long id, @PathVariable Long friendId) {
 
         log.info("START endpoint `method:DELETE /users/{id}/friends/{friendId}` (delete friend), " +
                 "user id: {}, friend id: {}.", id, friendId);
-        service.deleteFriendById(id, friendId);
+
+        return executor.run(() -> service.deleteFriendById(id, friendId));
     }
 }
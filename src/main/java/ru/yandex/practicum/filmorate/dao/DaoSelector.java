@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import static ru.yandex.practicum.filmorate.constant.FilmConstant.FILM_DAO_IMPL;
+import static ru.yandex.practicum.filmorate.constant.UserConstant.USER_DAO_IMPL;
+
+/**
+ * The DaoSelector class picks the film and user DAOs used by the services. `filmorate.dao.films` and
+ * `filmorate.dao.users` name the bean of the implementation, which is registered under the alias
+ * FILM_DAO_IMPL or USER_DAO_IMPL. The DB DAOs `filmDB` and `userDB` are the default. The other implementations
+ * are opt-in: `filmCache` and `userCache` (Caffeine caches over the DB), `filmWriteBehind` (write-behind likes
+ * over `filmCache`), `filmMemory` and `userMemory` (in memory) and `filmMapped` (memory-mapped files).
+ * The optional decorators and the mapped DAO are created only when they are selected.
+ */
+@Slf4j
+@Component
+public class DaoSelector implements BeanDefinitionRegistryPostProcessor, EnvironmentAware {
+    private static final String FILM_DAO_PROPERTY = "filmorate.dao.films";
+    private static final String USER_DAO_PROPERTY = "filmorate.dao.users";
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+
+        select(registry, FILM_DAO_PROPERTY, "filmDB", FILM_DAO_IMPL);
+        select(registry, USER_DAO_PROPERTY, "userDB", USER_DAO_IMPL);
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+    }
+
+    private void select(BeanDefinitionRegistry registry, String property, String defaultName, String alias) {
+
+        String beanName = environment.getProperty(property, defaultName);
+        if (!registry.containsBeanDefinition(beanName)) {
+            throw new IllegalStateException(String.format("The DAO `%s` set by `%s` does not exist.",
+                    beanName, property));
+        }
+        registry.registerAlias(beanName, alias);
+        log.info("The DAO `{}` is used as `{}`.", beanName, alias);
+    }
+}
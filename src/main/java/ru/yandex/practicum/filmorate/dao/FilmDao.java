@@ -1,8 +1,15 @@
 package ru.yandex.practicum.filmorate.dao;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * The FilmDao interface represents a data access object for managing films.
@@ -13,14 +20,60 @@ import java.util.List;
  */
 public interface FilmDao extends GenericDao<Film, Long> {
 
+    @Override
+    default Optional<Film> findById(Long filmId) {
+
+        return findById(filmId, FilmView.FULL);
+    }
+
+    @Override
+    default List<Film> findAll() {
+
+        return findAll(FilmView.FULL);
+    }
+
+    @Override
+    default List<Film> findAll(Long afterId, int limit) {
+
+        return findAll(afterId, limit, FilmView.FULL);
+    }
+
+    /**
+     * Retrieves a film by its ID.
+     *
+     * @param filmId The ID of the film.
+     * @param view   The view of the film, SUMMARY does not read the IDs of the users who liked the film.
+     * @return An Optional containing the film if found, or empty if not found.
+     */
+    Optional<Film> findById(Long filmId, FilmView view);
+
+    /**
+     * Retrieves all films ordered by ID.
+     *
+     * @param view The view of the films.
+     * @return A list of all films.
+     */
+    List<Film> findAll(FilmView view);
+
+    /**
+     * Retrieves a page of films ordered by ID (keyset pagination).
+     *
+     * @param afterId The ID after which the page starts, or null to start from the first film.
+     * @param limit   The maximum number of films in the page.
+     * @param view    The view of the films.
+     * @return A list of films with IDs greater than afterId.
+     */
+    List<Film> findAll(Long afterId, int limit, FilmView view);
+
     /**
      * Likes a film with the specified film ID and user ID.
      *
      * @param filmId The ID of the film to be liked.
      * @param userId The ID of the user who likes the film.
-     * @return true if the like is added successfully, false otherwise.
+     * @return OK if the like is added, ALREADY_LIKED if it already exists, otherwise the status naming
+     * the missing film or user.
      */
-    boolean addLike(final Long filmId, final Long userId);
+    LikeStatus addLike(final Long filmId, final Long userId);
 
     /**
      * Retrieves a list of popular films.
@@ -35,7 +88,116 @@ public interface FilmDao extends GenericDao<Film, Long> {
      *
      * @param filmId The ID of the film to be unliked.
      * @param userId The ID of the user who unlikes the film.
-     * @return true if the like is removed successfully, false otherwise.
+     * @return OK if the like is removed, NOT_LIKED if it does not exist, otherwise the status naming
+     * the missing film or user.
+     */
+    LikeStatus deleteLike(final Long filmId, final Long userId);
+
+    /**
+     * Tells whether addLike and deleteLike check that the user exists.
+     *
+     * @return true if a missing user is reported as USER_NOT_FOUND, false if any user ID is accepted
+     * and the user has to be checked by the caller.
+     */
+    default boolean isUserChecked() {
+
+        return true;
+    }
+
+    /**
+     * Passes all films ordered by ID to the consumer one by one, without collecting them into a list.
+     *
+     * @param consumer The consumer that receives the films.
+     */
+    default void streamAll(Consumer<Film> consumer) {
+
+        streamAll(consumer, FilmView.FULL);
+    }
+
+    /**
+     * Passes all films ordered by ID to the consumer one by one, without collecting them into a list.
+     *
+     * @param consumer The consumer that receives the films.
+     * @param view     The view of the films.
+     */
+    void streamAll(Consumer<Film> consumer, FilmView view);
+
+    /**
+     * Saves several films with their genres at once, either all of them or none.
+     *
+     * @param films The films to be saved.
+     * @return The IDs assigned to the films, in the order of the given films.
+     */
+    List<Long> saveAll(List<Film> films);
+
+    /**
+     * Retrieves films by their IDs.
+     *
+     * @param filmIds The IDs of the films.
+     * @return A list of the found films in the order of the given IDs.
+     */
+    default List<Film> findAllByIds(List<Long> filmIds) {
+
+        return findAllByIds(filmIds, FilmView.FULL);
+    }
+
+    /**
+     * Retrieves films by their IDs.
+     *
+     * @param filmIds The IDs of the films.
+     * @param view    The view of the films.
+     * @return A list of the found films in the order of the given IDs.
+     */
+    List<Film> findAllByIds(List<Long> filmIds, FilmView view);
+
+    /**
+     * Retrieves a page of the IDs of the users who liked the film, ordered by user ID.
+     *
+     * @param filmId      The ID of the film.
+     * @param afterUserId The user ID after which the page starts, or null to start from the first user.
+     * @param limit       The maximum number of user IDs in the page.
+     * @return A list of user IDs.
+     */
+    List<Long> findLikes(Long filmId, Long afterUserId, int limit);
+
+    /**
+     * Retrieves the IDs of the films liked by the user, in no particular order.
+     *
+     * @param userId The ID of the user.
+     * @return A list of film IDs.
+     */
+    List<Long> findLikedFilmIds(Long userId);
+
+    /**
+     * Checks whether the user liked the film, without reading the other likes of the film.
+     *
+     * @param filmId The ID of the film.
+     * @param userId The ID of the user.
+     * @return true if the like exists, otherwise false.
+     */
+    boolean isLikeExists(Long filmId, Long userId);
+
+    /**
+     * Adds and removes likes in batches, all of them or none. A like of a missing film or user and an already
+     * existing like are skipped, a missing like is not removed. The like counts of the films are changed
+     * by the likes actually added and removed.
+     *
+     * @param addedLikes   The likes to be added.
+     * @param deletedLikes The likes to be removed.
+     */
+    void saveLikes(List<Like> addedLikes, List<Like> deletedLikes);
+
+    /**
+     * Retrieves the number of likes of every film.
+     *
+     * @return The number of likes keyed by film ID.
+     */
+    Map<Long, Integer> findAllLikeCounts();
+
+    /**
+     * Passes the IDs of all stored films to the consumer in no particular order, without collecting them.
+     *
+     * @param consumer The consumer that receives the IDs.
      */
-    boolean deleteLike(final Long filmId, final Long userId);
+    void streamAllIds(LongConsumer consumer);
 }
@@ -26,6 +26,15 @@ public interface GenericDao<T, ID> {
      */
     List<T> findAll();
 
+    /**
+     * Retrieves a page of entities ordered by identifier (keyset pagination).
+     *
+     * @param afterId The identifier after which the page starts, or null to start from the first entity.
+     * @param limit   The maximum number of entities in the page.
+     * @return A list of entities with identifiers greater than afterId.
+     */
+    List<T> findAll(ID afterId, int limit);
+
     /**
      * Saves an entity.
      *
@@ -1,8 +1,15 @@
 package ru.yandex.practicum.filmorate.dao;
 
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 /**
  * The UserDao interface represents a data access object for managing users.
@@ -22,6 +29,34 @@ public interface UserDao extends GenericDao<User, Long> {
      */
     boolean addFriend(final Long userId, final Long friendId);
 
+    /**
+     * Tells whether a friend request makes the two users friends of each other at once.
+     *
+     * @return true if the friend lists of both users change on addFriend, false if only the list of the user
+     * changes and the friend sees the user after the request is confirmed.
+     */
+    default boolean isFriendshipMutual() {
+
+        return false;
+    }
+
+    /**
+     * Adds friend requests in JDBC batches within one transaction. A request is skipped if the users are
+     * already linked by a request in either direction. The users must exist.
+     *
+     * @param friendships The friend requests to be added.
+     * @return For every friend request, in the given order, true if it is added, false if it is skipped.
+     */
+    boolean[] addFriends(final List<Friendship> friendships);
+
+    /**
+     * Retrieves which of the given user IDs belong to stored users.
+     *
+     * @param userIds The IDs of the users.
+     * @return The IDs of the stored users.
+     */
+    Set<Long> findExistingIds(final Collection<Long> userIds);
+
     /**
      * Retrieves a list of all friends for a user with the specified user ID.
      *
@@ -30,6 +65,16 @@ public interface UserDao extends GenericDao<User, Long> {
      */
     List<User> findAllFriends(final Long userId);
 
+    /**
+     * Retrieves a page of friends for a user with the specified user ID, ordered by friend ID.
+     *
+     * @param userId  The ID of the user.
+     * @param afterId The friend ID after which the page starts, or null to start from the first friend.
+     * @param limit   The maximum number of friends in the page.
+     * @return A list of User objects representing the user's friends.
+     */
+    List<User> findAllFriends(final Long userId, final Long afterId, final int limit);
+
     /**
      * Retrieves a list of common friends between two users.
      *
@@ -39,6 +84,21 @@ public interface UserDao extends GenericDao<User, Long> {
      */
     List<User> findCommonFriends(final Long userId, final Long otherId);
 
+    /**
+     * Retrieves users by their IDs.
+     *
+     * @param userIds The IDs of the users.
+     * @return A list of the found users in the order of the given IDs.
+     */
+    List<User> findAllByIds(final List<Long> userIds);
+
+    /**
+     * Retrieves the friend IDs of every user that has friends.
+     *
+     * @return The friend IDs keyed by user ID.
+     */
+    Map<Long, LongSortedSet> findAllFriendIds();
+
     /**
      * Deletes a friend from the user with the specified user ID.
      *
@@ -47,4 +107,18 @@ public interface UserDao extends GenericDao<User, Long> {
      * @return true if the friend is deleted successfully, false otherwise.
      */
     boolean deleteFriend(final Long userId, final Long friendId);
+
+    /**
+     * Passes all users ordered by ID to the consumer one by one, without collecting them into a list.
+     *
+     * @param consumer The consumer that receives the users.
+     */
+    void streamAll(Consumer<User> consumer);
+
+    /**
+     * Passes the IDs of all stored users to the consumer in no particular order, without collecting them.
+     *
+     * @param consumer The consumer that receives the IDs.
+     */
+    void streamAllIds(LongConsumer consumer);
 }
@@ -1,134 +1,304 @@
 package ru.yandex.practicum.filmorate.dao.impl;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.dao.FilmDao;
 import ru.yandex.practicum.filmorate.exception.SQLDataAccessException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
+import javax.annotation.PostConstruct;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Repository(value = "filmDB")
 @RequiredArgsConstructor
 public class FilmDaoDBImpl implements FilmDao {
     public static final String SAVE_FILM = "INSERT INTO films (name, description, release_date, duration, mpa_id) " +
             "VALUES (?, ?, ?, ?, ?)";
-    public static final String FIND_FILMS = "SELECT f.*," +
-            "       m.name                                    AS mpa_name," +
-            "       (SELECT GROUP_CONCAT(genre_id) " +
-            "        FROM film_genre AS fg " +
-            "        WHERE fg.film_id = f.id)                 AS genre_ids," +
-            "       (SELECT GROUP_CONCAT(name)" +
-            "        FROM genres AS g" +
-            "        WHERE g.id IN (SELECT fg.genre_id" +
-            "                       FROM film_genre AS fg" +
-            "                       WHERE fg.film_id = f.id)) AS genre_names," +
-            "       (SELECT GROUP_CONCAT(l.user_id)" +
-            "        FROM likes AS l" +
-            "        WHERE (l.film_id = f.id))                AS like_user_ids " +
-            "FROM films f" +
-            "         LEFT OUTER JOIN mpa AS m ON f.mpa_id = m.id";
-    public static final String FIND_POPULAR_FILMS = FIND_FILMS + " LEFT OUTER JOIN likes AS l ON l.film_id = f.id " +
-            "          GROUP BY f.id" +
-            "          ORDER BY COUNT(l.user_id) DESC" +
-            "          LIMIT ?";
+    public static final String FIND_FILMS = "SELECT f.* " +
+            "FROM films f";
+    public static final String FIND_GENRES_BY_FILM_IDS = "SELECT fg.film_id," +
+            "       fg.genre_id " +
+            "FROM film_genre AS fg " +
+            "WHERE fg.film_id = ANY(?)";
+    public static final String FIND_LIKES_BY_FILM_IDS = "SELECT l.film_id," +
+            "       l.user_id " +
+            "FROM likes AS l " +
+            "WHERE l.film_id = ANY(?) " +
+            "ORDER BY l.film_id, l.user_id";
+    public static final String FIND_FILMS_PAGE = FIND_FILMS + " WHERE f.id > ?" +
+            " ORDER BY f.id" +
+            " LIMIT ?";
+    public static final String FIND_FILMS_BY_IDS = FIND_FILMS + " WHERE f.id = ANY(?)";
+    public static final String FIND_FILM_IDS_PAGE = "SELECT id " +
+            "FROM films " +
+            "WHERE id > ? " +
+            "ORDER BY id " +
+            "LIMIT ?";
+    public static final String FIND_LIKE_COUNTS = "SELECT id, like_count " +
+            "FROM films";
+    public static final String FIND_POPULAR_FILMS = FIND_FILMS + " ORDER BY f.like_count DESC, f.id" +
+            " LIMIT ?";
     public static final String FIND_FILM_BY_ID = FIND_FILMS +
             " WHERE f.id = ?";
-    public static final String UPDATE_FILM = "UPDATE films " +
+    public static final String UPDATE_FILM_ROW = "UPDATE films " +
             "SET name         = ?," +
             "    description  = ?," +
             "    release_date = ?," +
             "    duration     = ?," +
-            "    mpa_id       = ? " +
+            "    mpa_id       = ?," +
+            "    version      = version + 1 " +
             "WHERE id = ?";
+    public static final String UPDATE_FILM = "SELECT version, like_count " +
+            "FROM FINAL TABLE (" + UPDATE_FILM_ROW + ")";
+    public static final String UPDATE_FILM_IF_VERSION = "SELECT version, like_count " +
+            "FROM FINAL TABLE (" + UPDATE_FILM_ROW + " AND version = ?)";
     public static final String DELETE_FILM_BY_ID = "DELETE " +
             "FROM films " +
             "WHERE id = ?";
     public static final String IS_EXIST_FILM_BY_ID = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)";
     public static final String ADD_LIKE = "INSERT INTO likes (film_id, user_id) " +
-            "VALUES (?, ?)";
+            "SELECT f.id, u.id " +
+            "FROM films AS f " +
+            "JOIN users AS u ON u.id = ? " +
+            "WHERE f.id = ? " +
+            "  AND NOT EXISTS (SELECT 1 FROM likes AS l WHERE l.film_id = f.id AND l.user_id = u.id)";
     public static final String DELETE_LIKE = "DELETE " +
             "FROM likes " +
             "WHERE film_id = ? " +
             "  AND user_id = ?";
+    public static final String FIND_LIKE_TARGETS = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?) AS film_exists," +
+            "       EXISTS (SELECT 1 FROM users WHERE id = ?) AS user_exists";
+    public static final String INCREMENT_LIKE_COUNT = "UPDATE films " +
+            "SET like_count = like_count + 1 " +
+            "WHERE id = ?";
+    public static final String DECREMENT_LIKE_COUNT = "UPDATE films " +
+            "SET like_count = like_count - 1 " +
+            "WHERE id = ?";
+    public static final String RECOUNT_LIKES = "UPDATE films f " +
+            "SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id) " +
+            "WHERE like_count <> (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id)";
+    public static final String CHANGE_LIKE_COUNT = "UPDATE films " +
+            "SET like_count = like_count + ? " +
+            "WHERE id = ?";
+    public static final String IS_EXIST_LIKE = "SELECT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+    public static final String FIND_LIKED_FILM_IDS_BY_USER_ID = "SELECT film_id " +
+            "FROM likes " +
+            "WHERE user_id = ?";
     public static final String ADD_LINKS_FILM_GENRE = "INSERT INTO film_genre (film_id, genre_id) " +
             "VALUES (?, ?)";
     public static final String DELETE_LINKS_FILM_GENRE = "DELETE " +
+            "FROM film_genre " +
+            "WHERE film_id = ? " +
+            "  AND genre_id = ANY(?)";
+    public static final String FIND_GENRE_IDS_BY_FILM_ID = "SELECT genre_id " +
             "FROM film_genre " +
             "WHERE film_id = ?";
+    public static final String FIND_LIKES_PAGE_BY_FILM_ID = "SELECT user_id " +
+            "FROM likes " +
+            "WHERE film_id = ? " +
+            "  AND user_id > ? " +
+            "ORDER BY user_id " +
+            "LIMIT ?";
 
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceData referenceData;
+
+    @Value("${filmorate.stream.fetch-size:500}")
+    private int streamFetchSize = 500;
+
+    @Value("${filmorate.batch.size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${filmorate.likes.recount-on-startup:false}")
+    private boolean isRecountOnStartup;
+
+    /**
+     * Repairs the like counters at startup when `filmorate.likes.recount-on-startup` is set, e.g. once after
+     * the counter column is added to an existing DB. It runs before the popularity index and the caches
+     * read the counters.
+     */
+    @PostConstruct
+    public void recountLikesOnStartup() {
 
+        if (!isRecountOnStartup) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int repaired = recountLikes();
+        log.info("The like counters are recounted, films repaired: {}, {} ms.", repaired,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Inserts the film and its genre links. The returned film is built from the given one,
+     * the genre and MPA names are taken from the reference data instead of reading the film back.
+     */
     @Override
+    @Transactional
     public Film save(Film film) {
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
         try {
             jdbcTemplate.update(connection -> {
                 PreparedStatement stmt = connection.prepareStatement(SAVE_FILM, new String[]{"id"});
-                stmt.setString(1, film.getName());
-                stmt.setString(2, film.getDescription());
-                stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
-                stmt.setInt(4, film.getDuration());
-                stmt.setInt(5, film.getMpa().getId().intValue());
+                setFilmValues(stmt, film);
                 return stmt;
             }, keyHolder);
 
             Long filmId = Objects.requireNonNull(keyHolder.getKey()).longValue();
 
             film.setId(filmId);
-            addLinksFilmGenre(film);
+            film.setVersion(0L);
+            List<Long> genreIds = findGenreIds(film);
+            addLinksFilmGenre(filmId, genreIds);
 
-            return findById(filmId).orElse(null);
+            return buildFilm(film, genreIds, new LongSortedSet(), 0);
         } catch (DataAccessException exception) {
             throw new SQLDataAccessException("Error saving the film in the DB.", exception);
         }
     }
 
+    /**
+     * Inserts the films and then their genre links with JDBC batches of `filmorate.batch.size` rows,
+     * all in one transaction. The films are not re-read, only the generated IDs are returned.
+     */
     @Override
-    public Optional<Film> findById(Long filmId) {
+    @Transactional
+    public List<Long> saveAll(List<Film> films) {
 
-        List<Film> films = jdbcTemplate.query(FIND_FILM_BY_ID, this::mapRowToFilm, filmId);
+        List<Long> filmIds = new ArrayList<>(films.size());
+        try {
+            for (int from = 0; from < films.size(); from += batchSize) {
+                filmIds.addAll(insertFilms(films.subList(from, Math.min(from + batchSize, films.size()))));
+            }
+
+            List<long[]> links = new ArrayList<>();
+            for (int i = 0; i < films.size(); i++) {
+                Set<Genre> genres = films.get(i).getGenres();
+                if (genres == null) {
+                    continue;
+                }
+                long filmId = filmIds.get(i);
+                genres.stream()
+                        .map(Genre::getId)
+                        .distinct()
+                        .forEach(genreId -> links.add(new long[]{filmId, genreId}));
+            }
+            jdbcTemplate.batchUpdate(ADD_LINKS_FILM_GENRE, links, batchSize, (preparedStatement, link) -> {
+                preparedStatement.setLong(1, link[0]);
+                preparedStatement.setLong(2, link[1]);
+            });
+        } catch (DataAccessException exception) {
+            throw new SQLDataAccessException("Error saving the films in the DB.", exception);
+        }
+
+        return filmIds;
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId, FilmView view) {
+
+        List<Film> films = findFilms(FIND_FILM_BY_ID, view, filmId);
 
         return films.stream().findFirst();
     }
 
+    /**
+     * Reads the films in keyset pages like {@link #streamAll}, so no single query loads the whole table
+     * together with all the likes.
+     */
     @Override
-    public List<Film> findAll() {
+    public List<Film> findAll(FilmView view) {
+
+        List<Film> films = new ArrayList<>();
+        streamAll(films::add, view);
 
-        List<Film> films = jdbcTemplate.query(FIND_FILMS, this::mapRowToFilm);
+        return films;
+    }
+
+    @Override
+    public List<Film> findAll(Long afterId, int limit, FilmView view) {
 
-        return films.stream().sorted(Comparator.comparing(Film::getId)).collect(Collectors.toList());
+        return findFilms(FIND_FILMS_PAGE, view, afterId == null ? 0L : afterId, limit);
     }
 
+    /**
+     * Updates the film row and only the genre links that differ from the stored ones,
+     * then builds the returned film from the given one, the updated row and the reference data.
+     * The likes are not read back, the returned film has the like count of the row and no liked user IDs,
+     * as in the SUMMARY view. If the genres of the given film are null, the stored genres are kept.
+     * Every update increments the version of the row. If the given film has a version, the row is updated
+     * only while it still has this version, otherwise the result is empty and nothing is changed.
+     * The genre links are changed after the row in the same transaction, so the row lock orders them
+     * behind any concurrent update of the film.
+     */
     @Override
+    @Transactional
     public Optional<Film> update(Film film) {
 
         Long filmId = film.getId();
         try {
-            int rowsUpdated = jdbcTemplate.update(UPDATE_FILM, film.getName(), film.getDescription(),
-                    film.getReleaseDate(), film.getDuration(), film.getMpa().getId(), filmId);
-
-            if (rowsUpdated == 0) {
+            List<Object> args = new ArrayList<>(Arrays.asList(film.getName(), film.getDescription(),
+                    film.getReleaseDate(), film.getDuration(), film.getMpa().getId(), filmId));
+            if (film.getVersion() != null) {
+                args.add(film.getVersion());
+            }
+            List<Film> updatedRows = jdbcTemplate.query(film.getVersion() == null
+                    ? UPDATE_FILM
+                    : UPDATE_FILM_IF_VERSION, (resultSet, rowNum) -> Film.builder()
+                    .version(resultSet.getLong("version"))
+                    .likeCount(resultSet.getInt("like_count"))
+                    .build(), args.toArray());
+
+            if (updatedRows.isEmpty()) {
                 return Optional.empty();
             }
 
-            addLinksFilmGenre(film);
+            Film updatedRow = updatedRows.get(0);
+            film.setVersion(updatedRow.getVersion());
+
+            List<Long> storedGenreIds = jdbcTemplate.queryForList(FIND_GENRE_IDS_BY_FILM_ID, Long.class, filmId);
+            List<Long> genreIds = storedGenreIds;
+            if (film.getGenres() != null) {
+                genreIds = findGenreIds(film);
+                Set<Long> requestedGenreIds = new HashSet<>(genreIds);
+                Set<Long> existingGenreIds = new HashSet<>(storedGenreIds);
+
+                deleteLinksFilmGenre(filmId, storedGenreIds.stream()
+                        .filter(genreId -> !requestedGenreIds.contains(genreId))
+                        .collect(Collectors.toList()));
+                addLinksFilmGenre(filmId, genreIds.stream()
+                        .filter(genreId -> !existingGenreIds.contains(genreId))
+                        .collect(Collectors.toList()));
+            }
 
-            return findById(filmId);
+            return Optional.of(buildFilm(film, genreIds, null, updatedRow.getLikeCount()));
         } catch (DataAccessException exception) {
             throw new SQLDataAccessException("Error updating the film in the DB.", exception);
         }
@@ -147,73 +317,335 @@ public class FilmDaoDBImpl implements FilmDao {
         return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_EXIST_FILM_BY_ID, Boolean.class, filmId));
     }
 
+    /**
+     * Adds the like with one statement that inserts the row only if the film and the user exist
+     * and the like does not, so the common case takes no existence queries and throws no exceptions.
+     * The reason of a failure is read by a second query, only when nothing was inserted.
+     * A constraint violation (e.g. the film was deleted by a concurrent request) is resolved the same way.
+     */
     @Override
-    public boolean addLike(Long filmId, Long userId) {
+    @Transactional
+    public LikeStatus addLike(Long filmId, Long userId) {
 
+        int likeAdded;
         try {
-            jdbcTemplate.update(ADD_LIKE, filmId, userId);
-            return true;
-        } catch (DuplicateKeyException exception) {
-            return false;
+            likeAdded = jdbcTemplate.update(ADD_LIKE, userId, filmId);
+        } catch (DataIntegrityViolationException exception) {
+            likeAdded = 0;
         }
+
+        if (likeAdded == 0) {
+            return findLikeFailure(filmId, userId, LikeStatus.ALREADY_LIKED);
+        }
+        jdbcTemplate.update(INCREMENT_LIKE_COUNT, filmId);
+
+        return LikeStatus.OK;
+    }
+
+    /**
+     * The like counters are changed by the number of likes each film actually gained or lost in the batches,
+     * the skipped likes (a repeated like, a missing film or user) are not counted.
+     */
+    @Override
+    @Transactional
+    public void saveLikes(List<Like> addedLikes, List<Like> deletedLikes) {
+
+        int[][] likesAdded = jdbcTemplate.batchUpdate(ADD_LIKE, addedLikes, batchSize, (preparedStatement, like) -> {
+            preparedStatement.setLong(1, like.getUserId());
+            preparedStatement.setLong(2, like.getFilmId());
+        });
+        int[][] likesDeleted = jdbcTemplate.batchUpdate(DELETE_LIKE, deletedLikes, batchSize,
+                (preparedStatement, like) -> {
+                    preparedStatement.setLong(1, like.getFilmId());
+                    preparedStatement.setLong(2, like.getUserId());
+                });
+
+        Map<Long, Integer> countChanges = new TreeMap<>();
+        addCountChanges(countChanges, addedLikes, likesAdded, 1);
+        addCountChanges(countChanges, deletedLikes, likesDeleted, -1);
+        countChanges.values().removeIf(change -> change == 0);
+        jdbcTemplate.batchUpdate(CHANGE_LIKE_COUNT, countChanges.entrySet(), batchSize, (preparedStatement, entry) -> {
+            preparedStatement.setInt(1, entry.getValue());
+            preparedStatement.setLong(2, entry.getKey());
+        });
     }
 
     @Override
     public List<Film> findPopularFilms(int count) {
 
-        return jdbcTemplate.query(FIND_POPULAR_FILMS, this::mapRowToFilm, count);
+        return findFilms(FIND_POPULAR_FILMS, FilmView.FULL, count);
     }
 
     @Override
-    public boolean deleteLike(Long filmId, Long userId) {
+    @Transactional
+    public LikeStatus deleteLike(Long filmId, Long userId) {
 
         int likeDeleted = jdbcTemplate.update(DELETE_LIKE, filmId, userId);
 
-        return likeDeleted > 0;
+        if (likeDeleted == 0) {
+            return findLikeFailure(filmId, userId, LikeStatus.NOT_LIKED);
+        }
+        jdbcTemplate.update(DECREMENT_LIKE_COUNT, filmId);
+
+        return LikeStatus.OK;
+    }
+
+    /**
+     * Reads the films in keyset pages of `filmorate.stream.fetch-size` rows. Each page and its genres and likes
+     * are read with a connection taken only for these queries, so no connection is held while the consumer
+     * writes the films to a slow client.
+     */
+    @Override
+    public void streamAll(Consumer<Film> consumer, FilmView view) {
+
+        long afterId = 0L;
+        List<Film> page;
+        do {
+            page = findFilms(FIND_FILMS_PAGE, view, afterId, streamFetchSize);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == streamFetchSize);
+    }
+
+    @Override
+    public List<Film> findAllByIds(List<Long> filmIds, FilmView view) {
+
+        if (filmIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Object[] ids = filmIds.toArray();
+        List<Film> films = jdbcTemplate.query(FIND_FILMS_BY_IDS, preparedStatement -> setIds(preparedStatement, ids),
+                this::mapRowToFilm);
+        loadGenresAndLikes(films, view);
+
+        Map<Long, Film> filmsById = new HashMap<>();
+        films.forEach(film -> filmsById.put(film.getId(), film));
+
+        return filmIds.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> findLikes(Long filmId, Long afterUserId, int limit) {
+
+        return jdbcTemplate.queryForList(FIND_LIKES_PAGE_BY_FILM_ID, Long.class, filmId,
+                afterUserId == null ? 0L : afterUserId, limit);
+    }
+
+    @Override
+    public List<Long> findLikedFilmIds(Long userId) {
+
+        return jdbcTemplate.queryForList(FIND_LIKED_FILM_IDS_BY_USER_ID, Long.class, userId);
+    }
+
+    @Override
+    public boolean isLikeExists(Long filmId, Long userId) {
+
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_EXIST_LIKE, Boolean.class, filmId, userId));
+    }
+
+    @Override
+    public Map<Long, Integer> findAllLikeCounts() {
+
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        jdbcTemplate.query(FIND_LIKE_COUNTS, (RowCallbackHandler) resultSet ->
+                likeCounts.put(resultSet.getLong("id"), resultSet.getInt("like_count")));
+
+        return likeCounts;
+    }
+
+    /**
+     * Reads the film IDs in keyset pages of `filmorate.stream.fetch-size` rows, in ascending order.
+     */
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        long afterId = 0L;
+        List<Long> page;
+        do {
+            page = jdbcTemplate.queryForList(FIND_FILM_IDS_PAGE, Long.class, afterId, streamFetchSize);
+            page.forEach(consumer::accept);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1);
+            }
+        } while (page.size() == streamFetchSize);
     }
 
-    private void addLinksFilmGenre(Film film) {
+    /**
+     * Recalculates the denormalized like counter of every film from the likes table.
+     * Intended as a one-time backfill after the column is introduced, or as a repair if the counters drift.
+     *
+     * It is a single statement and needs no transaction, so it is also safe to call from the startup hook,
+     * which does not go through the transactional proxy.
+     *
+     * @return The number of films whose counter was corrected.
+     */
+    public int recountLikes() {
+
+        return jdbcTemplate.update(RECOUNT_LIKES);
+    }
+
+    private List<Long> insertFilms(List<Film> films) {
+
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(SAVE_FILM, new String[]{"id"})) {
+                for (Film film : films) {
+                    setFilmValues(stmt, film);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                List<Long> filmIds = new ArrayList<>(films.size());
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        filmIds.add(keys.getLong(1));
+                    }
+                }
+                if (filmIds.size() != films.size()) {
+                    throw new SQLException(String.format("Expected %d generated keys, but received %d.",
+                            films.size(), filmIds.size()));
+                }
+
+                return filmIds;
+            }
+        });
+    }
+
+    private void setFilmValues(PreparedStatement stmt, Film film) throws SQLException {
+
+        stmt.setString(1, film.getName());
+        stmt.setString(2, film.getDescription());
+        stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+        stmt.setInt(4, film.getDuration());
+        stmt.setInt(5, film.getMpa().getId().intValue());
+    }
+
+    private List<Long> findGenreIds(Film film) {
 
         if (film.getGenres() == null) {
-            return;
+            return new ArrayList<>();
         }
 
-        Long filmId = film.getId();
-        List<Genre> genres = new ArrayList<>(film.getGenres());
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private Film buildFilm(Film film, List<Long> genreIds, LongSortedSet likedUserIds, int likeCount) {
+
+        Set<Genre> genres = new TreeSet<>(Comparator.comparing(Genre::getId));
+        genreIds.forEach(genreId -> genres.add(referenceData.getGenre(genreId)));
+
+        return film.toBuilder()
+                .mpa(referenceData.getMpa(film.getMpa().getId()))
+                .genres(genres)
+                .likedUserIds(likedUserIds)
+                .likeCount(likeCount)
+                .build();
+    }
+
+    private void addLinksFilmGenre(Long filmId, List<Long> genreIds) {
+
+        if (genreIds.isEmpty()) {
+            return;
+        }
 
-        deleteLinksFilmGenre(filmId);
         jdbcTemplate.batchUpdate(ADD_LINKS_FILM_GENRE, new BatchPreparedStatementSetter() {
 
             @Override
             public void setValues(PreparedStatement preparedStatement, int i) throws SQLException {
 
-                preparedStatement.setLong(1, film.getId());
-                preparedStatement.setLong(2, genres.get(i).getId());
+                preparedStatement.setLong(1, filmId);
+                preparedStatement.setLong(2, genreIds.get(i));
             }
 
             @Override
             public int getBatchSize() {
-                return genres.size();
+                return genreIds.size();
             }
         });
     }
 
-    private void deleteLinksFilmGenre(Long filmId) {
+    private void deleteLinksFilmGenre(Long filmId, List<Long> genreIds) {
+
+        if (genreIds.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.update(DELETE_LINKS_FILM_GENRE, preparedStatement -> {
+            preparedStatement.setLong(1, filmId);
+            preparedStatement.setArray(2, preparedStatement.getConnection().createArrayOf("BIGINT",
+                    genreIds.toArray()));
+        });
+    }
+
+    /**
+     * Loads films in two phases: first the film rows, then the genres and likes of all loaded films
+     * with one query per relation, so the number of queries does not depend on the number of films.
+     */
+    private List<Film> findFilms(String sql, FilmView view, Object... args) {
 
-        jdbcTemplate.update(DELETE_LINKS_FILM_GENRE, filmId);
+        List<Film> films = jdbcTemplate.query(sql, this::mapRowToFilm, args);
+        loadGenresAndLikes(films, view);
+
+        return films;
     }
 
-    private Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
+    /**
+     * Loads the genre IDs of the films, the genres themselves are taken from the reference data.
+     * The likes are loaded only for the FULL view, the SUMMARY view keeps just the like counter read with the film row.
+     */
+    private void loadGenresAndLikes(List<Film> films, FilmView view) {
+
+        if (films.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Film> filmsById = new HashMap<>();
+        films.forEach(film -> filmsById.put(film.getId(), film));
+        Object[] filmIds = filmsById.keySet().toArray();
 
-        String strGenresIds = resultSet.getString("genre_ids");
-        String strGenresNames = resultSet.getString("genre_names");
+        jdbcTemplate.query(FIND_GENRES_BY_FILM_IDS, preparedStatement -> setIds(preparedStatement, filmIds),
+                (RowCallbackHandler) resultSet -> filmsById.get(resultSet.getLong("film_id")).getGenres()
+                        .add(referenceData.getGenre(resultSet.getLong("genre_id"))));
 
-        String strLikes = resultSet.getString("like_user_ids");
-        Set<Long> usersIdsOfLikes = new TreeSet<>();
-        if (strLikes != null) {
-            String[] splitLikes = strLikes.split(",");
-            usersIdsOfLikes.addAll(Arrays.stream(splitLikes).map(Long::valueOf).collect(Collectors.toList()));
+        if (view == FilmView.SUMMARY) {
+            films.forEach(film -> film.setLikedUserIds(null));
+            return;
         }
+        jdbcTemplate.query(FIND_LIKES_BY_FILM_IDS, preparedStatement -> setIds(preparedStatement, filmIds),
+                (RowCallbackHandler) resultSet -> filmsById.get(resultSet.getLong("film_id")).getLikedUserIds()
+                        .add(resultSet.getLong("user_id")));
+    }
+
+    /**
+     * The update counts of a batch follow the order of the likes, a count of zero means the like was skipped.
+     */
+    private void addCountChanges(Map<Long, Integer> countChanges, List<Like> likes, int[][] updateCounts, int change) {
+
+        int index = 0;
+        for (int[] batch : updateCounts) {
+            for (int updateCount : batch) {
+                if (updateCount > 0) {
+                    countChanges.merge(likes.get(index).getFilmId(), change, Integer::sum);
+                }
+                index++;
+            }
+        }
+    }
+
+    private void setIds(PreparedStatement preparedStatement, Object[] ids) throws SQLException {
+
+        preparedStatement.setArray(1, preparedStatement.getConnection().createArrayOf("BIGINT", ids));
+    }
+
+    private Film mapRowToFilm(ResultSet resultSet, int rowNum) throws SQLException {
 
         return Film.builder()
                 .id(resultSet.getLong("id"))
@@ -222,36 +654,46 @@ public class FilmDaoDBImpl implements FilmDao {
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
                 .duration(resultSet.getInt("duration"))
                 .mpa(mapRowToMpa(resultSet))
-                .genres(getGenres(strGenresIds, strGenresNames))
-                .likedUserIds(new TreeSet<>(usersIdsOfLikes))
+                .genres(new TreeSet<>(Comparator.comparing(Genre::getId)))
+                .likedUserIds(new LongSortedSet())
+                .likeCount(resultSet.getInt("like_count"))
+                .version(resultSet.getLong("version"))
                 .build();
     }
 
-    private Set<Genre> getGenres(String strGenresIds, String strGenresNames) {
-
-        Set<Genre> genres = new TreeSet<>(Comparator.comparing(Genre::getId));
-
-        if (strGenresIds != null) {
-            String[] splitGenresIds = strGenresIds.split(",");
-            String[] splitGenresNames = strGenresNames.split(",");
-
-            for (int i = 0; i < splitGenresIds.length; i++) {
+    /**
+     * The MPA rating of a film is null in the DB after the rating is deleted, such a film keeps an MPA rating
+     * with the ID 0 and no name, as before, and the reference data is not reloaded for it.
+     */
+    private Mpa mapRowToMpa(ResultSet resultSet) throws SQLException {
 
-                genres.add(Genre.builder()
-                        .id(Long.valueOf(splitGenresIds[i]))
-                        .name(splitGenresNames[i])
-                        .build());
-            }
+        long mpaId = resultSet.getLong("mpa_id");
+        if (resultSet.wasNull()) {
+            return Mpa.builder()
+                    .id(mpaId)
+                    .build();
         }
 
-        return genres;
+        return referenceData.getMpa(mpaId);
     }
 
-    private Mpa mapRowToMpa(ResultSet resultSet) throws SQLException {
+    private LikeStatus findLikeFailure(Long filmId, Long userId, LikeStatus bothExistStatus) {
 
-        return Mpa.builder()
-                .id(resultSet.getLong("mpa_id"))
-                .name(resultSet.getString("mpa_name"))
-                .build();
+        return jdbcTemplate.queryForObject(FIND_LIKE_TARGETS, (resultSet, rowNum) -> {
+            boolean filmExists = resultSet.getBoolean("film_exists");
+            boolean userExists = resultSet.getBoolean("user_exists");
+
+            if (!filmExists && !userExists) {
+                return LikeStatus.FILM_AND_USER_NOT_FOUND;
+            }
+            if (!filmExists) {
+                return LikeStatus.FILM_NOT_FOUND;
+            }
+            if (!userExists) {
+                return LikeStatus.USER_NOT_FOUND;
+            }
+
+            return bothExistStatus;
+        }, filmId, userId);
     }
 }
@@ -13,11 +13,9 @@ import ru.yandex.practicum.filmorate.model.Genre;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -26,6 +24,10 @@ public class GenreDaoDBImpl implements GenreDao {
             "VALUES (?)";
     public static final String FIND_GENRES = "SELECT * " +
             "FROM genres";
+    public static final String FIND_ALL_GENRES = FIND_GENRES + " ORDER BY id";
+    public static final String FIND_GENRES_PAGE = FIND_GENRES + " WHERE id > ?" +
+            " ORDER BY id" +
+            " LIMIT ?";
     public static final String FIND_GENRES_BY_ID = FIND_GENRES + " WHERE id = ?";
     public static final String UPDATE_GENRE = "UPDATE genres " +
             "SET name = ? " +
@@ -87,11 +89,13 @@ public class GenreDaoDBImpl implements GenreDao {
     @Override
     public List<Genre> findAll() {
 
-        List<Genre> genres = jdbcTemplate.query(FIND_GENRES, this::mapRowToGenre);
+        return jdbcTemplate.query(FIND_ALL_GENRES, this::mapRowToGenre);
+    }
+
+    @Override
+    public List<Genre> findAll(Long afterId, int limit) {
 
-        return genres.stream()
-                .sorted(Comparator.comparing(Genre::getId))
-                .collect(Collectors.toList());
+        return jdbcTemplate.query(FIND_GENRES_PAGE, this::mapRowToGenre, afterId == null ? 0L : afterId, limit);
     }
 
     @Override
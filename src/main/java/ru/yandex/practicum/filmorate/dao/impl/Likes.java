@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * The Likes class keeps the likes of one film for the DAOs that hold the likes in memory. The set and the counter
+ * are changed without locks, the counter follows the set, so the number of likes is read without walking the set.
+ */
+public class Likes {
+    private final ConcurrentSkipListSet<Long> userIds = new ConcurrentSkipListSet<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    public boolean add(Long userId) {
+
+        boolean isAdded = userIds.add(userId);
+        if (isAdded) {
+            count.incrementAndGet();
+        }
+
+        return isAdded;
+    }
+
+    public boolean remove(Long userId) {
+
+        boolean isRemoved = userIds.remove(userId);
+        if (isRemoved) {
+            count.decrementAndGet();
+        }
+
+        return isRemoved;
+    }
+
+    public boolean contains(Long userId) {
+
+        return userIds.contains(userId);
+    }
+
+    public int count() {
+
+        return count.get();
+    }
+
+    /**
+     * Returns up to `limit` user IDs greater than `afterUserId` in ascending order.
+     */
+    public List<Long> findAfter(long afterUserId, int limit) {
+
+        return userIds.tailSet(afterUserId, false).stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public LongSortedSet snapshot() {
+
+        return new LongSortedSet(userIds);
+    }
+}
@@ -13,11 +13,9 @@ import ru.yandex.practicum.filmorate.model.Mpa;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -26,6 +24,10 @@ public class MpaDaoDBImpl implements MpaDao {
             "VALUES (?)";
     public static final String FIND_MPA_RATINGS = "SELECT * " +
             "FROM mpa";
+    public static final String FIND_ALL_MPA_RATINGS = FIND_MPA_RATINGS + " ORDER BY id";
+    public static final String FIND_MPA_RATINGS_PAGE = FIND_MPA_RATINGS + " WHERE id > ?" +
+            " ORDER BY id" +
+            " LIMIT ?";
     public static final String FIND_MPA_RATINGS_BY_ID = FIND_MPA_RATINGS + " WHERE id = ?";
     public static final String UPDATE_MPA = "UPDATE mpa " +
             "SET name = ? " +
@@ -88,11 +90,13 @@ public class MpaDaoDBImpl implements MpaDao {
     @Override
     public List<Mpa> findAll() {
 
-        List<Mpa> mpaRatings = jdbcTemplate.query(FIND_MPA_RATINGS, this::mapRowToMpa);
+        return jdbcTemplate.query(FIND_ALL_MPA_RATINGS, this::mapRowToMpa);
+    }
+
+    @Override
+    public List<Mpa> findAll(Long afterId, int limit) {
 
-        return mpaRatings.stream()
-                .sorted(Comparator.comparing(Mpa::getId))
-                .collect(Collectors.toList());
+        return jdbcTemplate.query(FIND_MPA_RATINGS_PAGE, this::mapRowToMpa, afterId == null ? 0L : afterId, limit);
     }
 
     @Override
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.dao.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.GenreDao;
+import ru.yandex.practicum.filmorate.dao.MpaDao;
+import ru.yandex.practicum.filmorate.event.ReferenceDataChangedEvent;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The ReferenceData class keeps genres and MPA ratings in memory as an immutable snapshot, so films are read
+ * without joining the `genres` and `mpa` tables and the genre and MPA lists are served without the DB.
+ * The snapshot stores one shared Genre or Mpa instance per row in an array indexed by ID, a lookup is O(1).
+ * The shared instances must not be modified. The snapshot is loaded at startup and replaced as a whole after
+ * a genre or an MPA rating is created, updated or deleted, readers never see a partially loaded snapshot.
+ * A film write that references an ID unknown to the snapshot reloads it once (e.g. a genre added by a script).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceData {
+    private final GenreDao genreDao;
+    private final MpaDao mpaDao;
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void load() {
+
+        reload();
+    }
+
+    @EventListener(ReferenceDataChangedEvent.class)
+    public void onReferenceDataChanged() {
+
+        reload();
+    }
+
+    /**
+     * Retrieves a genre with its name, reloading the snapshot if the ID is unknown.
+     *
+     * @param genreId The ID of the genre.
+     * @return The shared genre instance, or a genre without a name if the genre is not found.
+     */
+    public Genre getGenre(Long genreId) {
+
+        Genre genre = getSnapshot().genres.get(genreId);
+        if (genre == null) {
+            genre = reload().genres.get(genreId);
+        }
+
+        return genre != null ? genre : Genre.builder().id(genreId).build();
+    }
+
+    /**
+     * Retrieves an MPA rating with its name, reloading the snapshot if the ID is unknown.
+     *
+     * @param mpaId The ID of the MPA rating.
+     * @return The shared MPA rating instance, or an MPA rating without a name if it is not found.
+     */
+    public Mpa getMpa(Long mpaId) {
+
+        Mpa mpa = getSnapshot().mpas.get(mpaId);
+        if (mpa == null) {
+            mpa = reload().mpas.get(mpaId);
+        }
+
+        return mpa != null ? mpa : Mpa.builder().id(mpaId).build();
+    }
+
+    public Optional<Genre> findGenre(Long genreId) {
+
+        return Optional.ofNullable(getSnapshot().genres.get(genreId));
+    }
+
+    public List<Genre> findAllGenres() {
+
+        return getSnapshot().genres.values;
+    }
+
+    public List<Genre> findAllGenres(Long afterId, int limit) {
+
+        return getSnapshot().genres.page(afterId, limit);
+    }
+
+    public Optional<Mpa> findMpa(Long mpaId) {
+
+        return Optional.ofNullable(getSnapshot().mpas.get(mpaId));
+    }
+
+    public List<Mpa> findAllMpa() {
+
+        return getSnapshot().mpas.values;
+    }
+
+    public List<Mpa> findAllMpa(Long afterId, int limit) {
+
+        return getSnapshot().mpas.page(afterId, limit);
+    }
+
+    private Snapshot getSnapshot() {
+
+        Snapshot current = snapshot;
+
+        return current == null ? reload() : current;
+    }
+
+    private Snapshot reload() {
+
+        Snapshot loaded = new Snapshot(new Table<>(genreDao.findAll(), Genre::getId),
+                new Table<>(mpaDao.findAll(), Mpa::getId));
+        snapshot = loaded;
+        log.debug("The reference data is loaded, genres: {}, MPA ratings: {}.",
+                loaded.genres.values.size(), loaded.mpas.values.size());
+
+        return loaded;
+    }
+
+    @RequiredArgsConstructor
+    private static class Snapshot {
+        private final Table<Genre> genres;
+        private final Table<Mpa> mpas;
+    }
+
+    /**
+     * The rows of one reference table in ID order, with an array of the same instances indexed by ID.
+     * The IDs are generated by the DB starting from 1, so the array is about as long as the table.
+     */
+    private static class Table<T> {
+        private final List<T> values;
+        private final long[] ids;
+        private final Object[] valuesById;
+
+        private Table(List<T> rows, Function<T, Long> idGetter) {
+
+            List<T> sorted = new ArrayList<>(rows);
+            sorted.sort(Comparator.comparing(idGetter));
+
+            this.values = Collections.unmodifiableList(sorted);
+            this.ids = sorted.stream().mapToLong(idGetter::apply).toArray();
+            this.valuesById = new Object[ids.length == 0 ? 0 : (int) ids[ids.length - 1] + 1];
+            sorted.forEach(value -> valuesById[idGetter.apply(value).intValue()] = value);
+        }
+
+        @SuppressWarnings("unchecked")
+        private T get(Long id) {
+
+            if (id == null || id < 0 || id >= valuesById.length) {
+                return null;
+            }
+
+            return (T) valuesById[id.intValue()];
+        }
+
+        private List<T> page(Long afterId, int limit) {
+
+            int index = Arrays.binarySearch(ids, afterId == null ? 0L : afterId);
+            int from = index >= 0 ? index + 1 : -index - 1;
+
+            return values.subList(from, from + Math.min(limit, values.size() - from));
+        }
+    }
+}
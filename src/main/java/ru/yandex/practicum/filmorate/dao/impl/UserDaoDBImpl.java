@@ -1,13 +1,18 @@
 package ru.yandex.practicum.filmorate.dao.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.dao.UserDao;
 import ru.yandex.practicum.filmorate.exception.SQLDataAccessException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.sql.Date;
@@ -15,6 +20,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
 @Repository(value = "userDB")
@@ -23,50 +30,90 @@ public class UserDaoDBImpl implements UserDao {
     public static final String SAVE_USER = "INSERT INTO users (email, login, name, birthday) " +
             "VALUES (?, ?, ?, ?)";
     public static final String FIND_USERS = "SELECT u.*," +
-            "       (SELECT GROUP_CONCAT(CASE" +
-            "                                WHEN f.user_1 = u.id THEN f.user_2" +
-            "                                WHEN f.user_2 = u.id AND f.friendship_status = TRUE THEN f.user_1 END SEPARATOR ',')" +
-            "        FROM friendships f) AS friends_ids " +
+            "       CONCAT_WS(','," +
+            "                 (SELECT GROUP_CONCAT(f.user_high SEPARATOR ',')" +
+            "                  FROM friendships f" +
+            "                  WHERE f.user_low = u.id" +
+            "                    AND (f.initiated_by_low OR f.confirmed))," +
+            "                 (SELECT GROUP_CONCAT(f.user_low SEPARATOR ',')" +
+            "                  FROM friendships f" +
+            "                  WHERE f.user_high = u.id" +
+            "                    AND (NOT f.initiated_by_low OR f.confirmed))) AS friends_ids " +
             "FROM users u";
     public static final String FIND_USER_BY_ID = FIND_USERS + " WHERE u.id = ?";
-    public static final String FIND_ALL_FRIENDS_BY_USER_ID = FIND_USERS + " WHERE u.id IN (SELECT (CASE" +
-            "                           WHEN f.user_1 = ? THEN f.user_2" +
-            "                           WHEN f.user_2 = ? AND f.friendship_status = TRUE THEN f.user_1 END)" +
-            "               FROM friendships f)";
-    public static final String FIND_COMMON_FRIENDS = FIND_USERS + " WHERE u.id IN (SELECT *" +
-            "               FROM (SELECT (CASE" +
-            "                                 WHEN f.user_1 = ? THEN f.user_2" +
-            "                                 WHEN f.user_2 = ? AND f.friendship_status = TRUE THEN f.user_1 END)" +
-            "                     FROM friendships f)" +
-            "               INTERSECT" +
-            "               (SELECT (CASE" +
-            "                            WHEN f.user_1 = ? THEN f.user_2" +
-            "                            WHEN f.user_2 = ? AND f.friendship_status = TRUE THEN f.user_1 END)" +
-            "                FROM friendships f))";
+    public static final String FIND_ALL_USERS = FIND_USERS + " ORDER BY u.id";
+    public static final String FIND_USERS_PAGE = FIND_USERS + " WHERE u.id > ?" +
+            " ORDER BY u.id" +
+            " LIMIT ?";
+    public static final String FIND_FRIEND_IDS_BY_USER_ID = "SELECT f.user_high " +
+            "FROM friendships f " +
+            "WHERE f.user_low = ?" +
+            "  AND (f.initiated_by_low OR f.confirmed) " +
+            "UNION ALL " +
+            "SELECT f.user_low " +
+            "FROM friendships f " +
+            "WHERE f.user_high = ?" +
+            "  AND (NOT f.initiated_by_low OR f.confirmed)";
+    public static final String FIND_FRIENDS_BY_USER_ID = FIND_USERS + " WHERE u.id IN (" +
+            FIND_FRIEND_IDS_BY_USER_ID + ")";
+    public static final String FIND_ALL_FRIENDS_BY_USER_ID = FIND_FRIENDS_BY_USER_ID + " ORDER BY u.id";
+    public static final String FIND_FRIENDS_PAGE_BY_USER_ID = FIND_FRIENDS_BY_USER_ID + " AND u.id > ?" +
+            " ORDER BY u.id" +
+            " LIMIT ?";
+    public static final String FIND_COMMON_FRIENDS = FIND_USERS + " WHERE u.id IN (" +
+            FIND_FRIEND_IDS_BY_USER_ID + ")" +
+            "  AND u.id IN (" + FIND_FRIEND_IDS_BY_USER_ID + ")" +
+            " ORDER BY u.id";
+    public static final String FIND_USERS_BY_IDS = FIND_USERS + " JOIN UNNEST(?) AS ids(id) ON ids.id = u.id";
+    public static final String FIND_ALL_FRIENDSHIPS = "SELECT user_low," +
+            "       user_high," +
+            "       initiated_by_low," +
+            "       confirmed " +
+            "FROM friendships " +
+            "ORDER BY user_low, user_high";
     public static final String UPDATE_USER = "UPDATE users " +
             "SET email    = ?," +
             "    login    = ?," +
             "    name     = ?," +
-            "    birthday = ? " +
+            "    birthday = ?," +
+            "    version  = version + 1 " +
             "WHERE id = ?";
+    public static final String UPDATE_USER_IF_VERSION = UPDATE_USER + " AND version = ?";
     public static final String DELETE_USER_BY_ID = "DELETE " +
             "FROM users " +
             "WHERE id = ?";
+    public static final String DECREMENT_LIKE_COUNTS_BY_USER_ID = "UPDATE films " +
+            "SET like_count = like_count - 1 " +
+            "WHERE id IN (SELECT film_id FROM likes WHERE user_id = ?)";
+    public static final String FIND_USER_IDS_PAGE = "SELECT id " +
+            "FROM users " +
+            "WHERE id > ? " +
+            "ORDER BY id " +
+            "LIMIT ?";
     public static final String IS_EXIST_USER_BY_ID = "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)";
-    public static final String ADD_FRIEND = "INSERT INTO friendships (user_1, user_2) " +
-            "SELECT ?, ? " +
-            "FROM DUAL " +
-            "WHERE NOT EXISTS (SELECT 1 " +
-            "                  FROM friendships" +
-            "                  WHERE (user_1 = ? AND user_2 = ?) " +
-            "                     OR (user_1 = ? AND user_2 = ?))";
+    public static final String FIND_EXISTING_USER_IDS = "SELECT u.id " +
+            "FROM UNNEST(?) AS ids(id) " +
+            "         JOIN users u ON u.id = ids.id";
+    public static final String ADD_FRIEND = "MERGE INTO friendships f " +
+            "USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS BOOLEAN)))" +
+            "    AS n(user_low, user_high, initiated_by_low) " +
+            "ON f.user_low = n.user_low AND f.user_high = n.user_high " +
+            "WHEN NOT MATCHED THEN " +
+            "    INSERT (user_low, user_high, initiated_by_low) " +
+            "    VALUES (n.user_low, n.user_high, n.initiated_by_low)";
     public static final String DELETE_FRIEND = "DELETE " +
             "FROM friendships " +
-            "WHERE (user_1 = ? AND user_2 = ?) " +
-            "   OR (user_1 = ? AND user_2 = ?)";
+            "WHERE user_low = ?" +
+            "  AND user_high = ?";
 
     private final JdbcTemplate jdbcTemplate;
 
+    @Value("${filmorate.stream.fetch-size:500}")
+    private int streamFetchSize = 500;
+
+    @Value("${filmorate.batch.size:1000}")
+    private int batchSize = 1000;
+
     @Override
     public User save(User user) {
 
@@ -84,6 +131,7 @@ public class UserDaoDBImpl implements UserDao {
             Long userId = Objects.requireNonNull(keyHolder.getKey()).longValue();
 
             user.setId(userId);
+            user.setVersion(0L);
 
             return findById(userId).orElse(null);
         } catch (
@@ -103,26 +151,41 @@ public class UserDaoDBImpl implements UserDao {
     @Override
     public List<User> findAll() {
 
-        List<User> users = jdbcTemplate.query(FIND_USERS, this::mapRowToUser);
+        return jdbcTemplate.query(FIND_ALL_USERS, this::mapRowToUser);
+    }
 
-        return users.stream()
-                .sorted(Comparator.comparing(User::getId))
-                .collect(Collectors.toList());
+    @Override
+    public List<User> findAll(Long afterId, int limit) {
+
+        return jdbcTemplate.query(FIND_USERS_PAGE, this::mapRowToUser, afterId == null ? 0L : afterId, limit);
     }
 
+    /**
+     * Updates the user row and increments its version. If the given user has a version, the row is updated
+     * only while it still has this version, otherwise the result is empty and nothing is changed.
+     */
     @Override
     public Optional<User> update(User user) {
 
         Long userId = user.getId();
         try {
-            int rowsUpdated = jdbcTemplate.update(UPDATE_USER, user.getEmail(), user.getLogin(), user.getName(),
-                    user.getBirthday(), userId);
+            List<Object> args = new ArrayList<>(Arrays.asList(user.getEmail(), user.getLogin(), user.getName(),
+                    user.getBirthday(), userId));
+            if (user.getVersion() != null) {
+                args.add(user.getVersion());
+            }
+            int rowsUpdated = jdbcTemplate.update(user.getVersion() == null
+                    ? UPDATE_USER
+                    : UPDATE_USER_IF_VERSION, args.toArray());
 
             if (rowsUpdated == 0) {
                 return Optional.empty();
             }
 
-            return findById(userId);
+            Optional<User> updatedUser = findById(userId);
+            updatedUser.ifPresent(updated -> user.setVersion(updated.getVersion()));
+
+            return updatedUser;
         } catch (
                 DataAccessException exception) {
             throw new SQLDataAccessException("Error updating the user in the DB.", exception);
@@ -130,8 +193,10 @@ public class UserDaoDBImpl implements UserDao {
     }
 
     @Override
+    @Transactional
     public boolean deleteById(Long userId) {
 
+        jdbcTemplate.update(DECREMENT_LIKE_COUNTS_BY_USER_ID, userId);
         int userDeleted = jdbcTemplate.update(DELETE_USER_BY_ID, userId);
 
         return userDeleted > 0;
@@ -143,49 +208,172 @@ public class UserDaoDBImpl implements UserDao {
         return Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_EXIST_USER_BY_ID, Boolean.class, userId));
     }
 
+    /**
+     * A friendship is stored once per pair of users, as (lower ID, higher ID) with the direction of the request,
+     * so adding it is a single primary key probe whichever of the two users sends the request.
+     */
     @Override
     public boolean addFriend(Long userId, Long friendId) {
 
-        int addedFriend = jdbcTemplate.update(ADD_FRIEND, userId, friendId, userId, friendId, friendId, userId);
+        int addedFriend = jdbcTemplate.update(ADD_FRIEND, Math.min(userId, friendId), Math.max(userId, friendId),
+                userId < friendId);
 
         return addedFriend > 0;
     }
 
+    @Override
+    @Transactional
+    public boolean[] addFriends(List<Friendship> friendships) {
+
+        boolean[] added = new boolean[friendships.size()];
+        int[][] counts = jdbcTemplate.batchUpdate(ADD_FRIEND, friendships, batchSize,
+                (preparedStatement, friendship) -> {
+                    long userId = friendship.getUserId();
+                    long friendId = friendship.getFriendId();
+                    preparedStatement.setLong(1, Math.min(userId, friendId));
+                    preparedStatement.setLong(2, Math.max(userId, friendId));
+                    preparedStatement.setBoolean(3, userId < friendId);
+                });
+
+        int index = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                added[index++] = count > 0;
+            }
+        }
+
+        return added;
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> userIds) {
+
+        if (userIds.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        Object[] ids = userIds.toArray();
+
+        return new HashSet<>(jdbcTemplate.query(FIND_EXISTING_USER_IDS,
+                preparedStatement -> preparedStatement.setArray(1,
+                        preparedStatement.getConnection().createArrayOf("BIGINT", ids)),
+                (resultSet, rowNum) -> resultSet.getLong("id")));
+    }
+
     @Override
     public List<User> findAllFriends(Long userId) {
 
-        List<User> users = jdbcTemplate.query(FIND_ALL_FRIENDS_BY_USER_ID, this::mapRowToUser, userId, userId);
+        return jdbcTemplate.query(FIND_ALL_FRIENDS_BY_USER_ID, this::mapRowToUser, userId, userId);
+    }
+
+    @Override
+    public List<User> findAllFriends(Long userId, Long afterId, int limit) {
 
-        return users.stream()
-                .sorted(Comparator.comparing(User::getId))
-                .collect(Collectors.toList());
+        return jdbcTemplate.query(FIND_FRIENDS_PAGE_BY_USER_ID, this::mapRowToUser, userId, userId,
+                afterId == null ? 0L : afterId, limit);
     }
 
     @Override
     public List<User> findCommonFriends(Long userId, Long otherId) {
 
-        List<User> users = jdbcTemplate.query(FIND_COMMON_FRIENDS, this::mapRowToUser, userId, userId, otherId, otherId);
+        return jdbcTemplate.query(FIND_COMMON_FRIENDS, this::mapRowToUser, userId, userId, otherId, otherId);
+    }
+
+    @Override
+    public List<User> findAllByIds(List<Long> userIds) {
+
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Object[] ids = userIds.toArray();
+        List<User> users = jdbcTemplate.query(FIND_USERS_BY_IDS,
+                preparedStatement -> preparedStatement.setArray(1,
+                        preparedStatement.getConnection().createArrayOf("BIGINT", ids)),
+                this::mapRowToUser);
 
-        return users.stream()
-                .sorted(Comparator.comparing(User::getId))
+        Map<Long, User> usersById = new HashMap<>();
+        users.forEach(user -> usersById.put(user.getId(), user));
+
+        return userIds.stream()
+                .map(usersById::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * The sender of a friend request always has the receiver as a friend,
+     * the receiver has the sender as a friend only after the request is confirmed.
+     */
+    @Override
+    public Map<Long, LongSortedSet> findAllFriendIds() {
+
+        Map<Long, LongSortedSet> friendIds = new HashMap<>();
+        jdbcTemplate.query(FIND_ALL_FRIENDSHIPS, (RowCallbackHandler) resultSet -> {
+            long userLow = resultSet.getLong("user_low");
+            long userHigh = resultSet.getLong("user_high");
+            boolean initiatedByLow = resultSet.getBoolean("initiated_by_low");
+            boolean confirmed = resultSet.getBoolean("confirmed");
+            if (initiatedByLow || confirmed) {
+                friendIds.computeIfAbsent(userLow, id -> new LongSortedSet()).add(userHigh);
+            }
+            if (!initiatedByLow || confirmed) {
+                friendIds.computeIfAbsent(userHigh, id -> new LongSortedSet()).add(userLow);
+            }
+        });
+
+        return friendIds;
+    }
+
     @Override
     public boolean deleteFriend(Long userId, Long friendId) {
 
-        int friendDeleted = jdbcTemplate.update(DELETE_FRIEND, userId, friendId, friendId, userId);
+        int friendDeleted = jdbcTemplate.update(DELETE_FRIEND, Math.min(userId, friendId), Math.max(userId, friendId));
 
         return friendDeleted > 0;
     }
 
+    /**
+     * Reads the users in keyset pages of `filmorate.stream.fetch-size` rows, a connection is taken only
+     * for the query of a page, so no connection is held while the consumer writes the users to a slow client.
+     */
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+
+        long afterId = 0L;
+        List<User> page;
+        do {
+            page = findAll(afterId, streamFetchSize);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == streamFetchSize);
+    }
+
+    /**
+     * Reads the user IDs in keyset pages of `filmorate.stream.fetch-size` rows, in ascending order.
+     */
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        long afterId = 0L;
+        List<Long> page;
+        do {
+            page = jdbcTemplate.queryForList(FIND_USER_IDS_PAGE, Long.class, afterId, streamFetchSize);
+            page.forEach(consumer::accept);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1);
+            }
+        } while (page.size() == streamFetchSize);
+    }
+
     private User mapRowToUser(ResultSet resultSet, int rowNum) throws SQLException {
 
         String arrayIds = resultSet.getString("friends_ids");
-        Set<Long> ids = new TreeSet<>();
-        if (arrayIds != null) {
-            String[] split = arrayIds.split(",");
-            ids.addAll(Arrays.stream(split).map(Long::valueOf).collect(Collectors.toList()));
+        LongSortedSet ids = new LongSortedSet();
+        if (arrayIds != null && !arrayIds.isEmpty()) {
+            ids = LongSortedSet.of(Arrays.stream(arrayIds.split(",")).mapToLong(Long::parseLong).toArray());
         }
 
         return User.builder()
@@ -194,7 +382,8 @@ public class UserDaoDBImpl implements UserDao {
                 .login(resultSet.getString("login"))
                 .name(resultSet.getString("name"))
                 .birthday(resultSet.getDate("birthday").toLocalDate())
-                .friends(new TreeSet<>(ids))
+                .friends(ids)
+                .version(resultSet.getLong("version"))
                 .build();
     }
 }
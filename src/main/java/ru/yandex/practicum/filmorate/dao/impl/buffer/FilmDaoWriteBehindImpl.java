@@ -0,0 +1,525 @@
+package ru.yandex.practicum.filmorate.dao.impl.buffer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.dao.FilmDao;
+import ru.yandex.practicum.filmorate.dao.UserDao;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static ru.yandex.practicum.filmorate.constant.UserConstant.USER_DAO_IMPL;
+
+/**
+ * The FilmDaoWriteBehindImpl class is a FilmDao decorator that can acknowledge likes before they are written
+ * to the DB. It is created only when `filmorate.dao.films` selects it and wraps the film cache. The buffering is
+ * switched on by `filmorate.likes.write-behind.enabled`, otherwise every call is passed through.
+ * <p>
+ * A like or an unlike is checked against the existence bitsets and the cached film, and then kept in an
+ * in-memory journal of pending changes, one entry per film and user. An entry always differs from the stored
+ * state, so a like followed by an unlike removes the entry instead of adding a second one.
+ * The journal is written by {@link FilmDao#saveLikes} in JDBC batches every `flush-interval`, or earlier
+ * when `max-pending` entries are waiting, and once more when the application stops.
+ * Changes that are not yet flushed are lost if the process is killed.
+ * <p>
+ * Reads merge the pending changes into the films, like lists and like counts read from the wrapped DAO.
+ * A flush swaps the journal while holding a write lock, so a read sees the stored state either with or
+ * without the changes being flushed, never both. Reads take an optimistic stamp and are repeated under
+ * a read lock only if a flush happened meanwhile. The popular films list is ordered by the stored counts.
+ * The number of pending entries and the flush latency are published as the `filmorate.likes.pending`
+ * and `filmorate.likes.flush` metrics.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.dao.films", havingValue = "filmWriteBehind")
+@Repository(value = "filmWriteBehind")
+public class FilmDaoWriteBehindImpl implements FilmDao {
+    private final FilmDao filmDao;
+    private final UserDao userDao;
+    private final boolean isEnabled;
+    private final Duration flushInterval;
+    private final int maxPending;
+    private final StampedLock lock = new StampedLock();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean isFlushRequested = new AtomicBoolean();
+    private final Timer flushTimer;
+    private volatile Map<Long, Map<Long, Boolean>> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public FilmDaoWriteBehindImpl(@Qualifier(value = "filmCache") FilmDao filmDao,
+                                  @Qualifier(value = USER_DAO_IMPL) UserDao userDao,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${filmorate.likes.write-behind.enabled:false}") boolean isEnabled,
+                                  @Value("${filmorate.likes.write-behind.flush-interval:100ms}")
+                                  Duration flushInterval,
+                                  @Value("${filmorate.likes.write-behind.max-pending:1000}") int maxPending) {
+        this.filmDao = filmDao;
+        this.userDao = userDao;
+        this.isEnabled = isEnabled;
+        this.flushInterval = flushInterval;
+        this.maxPending = maxPending;
+        this.flushTimer = Timer.builder("filmorate.likes.flush")
+                .description("The time of writing the pending likes to the DB.")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.likes.pending", pendingCount, AtomicInteger::get)
+                .description("The number of likes and unlikes not yet written to the DB.")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+
+        if (!isEnabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        log.info("The likes are written behind, flush interval: {}, max pending: {}.", flushInterval, maxPending);
+    }
+
+    /**
+     * Stops the scheduled flushes and writes the remaining pending changes.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("The scheduled flush of likes did not finish in time.");
+        }
+        flush();
+        if (pendingCount.get() > 0) {
+            log.error("The likes are not flushed on shutdown and are lost, pending: {}.", pendingCount.get());
+        } else {
+            log.info("The likes are flushed on shutdown.");
+        }
+    }
+
+    /**
+     * Writes the pending changes to the DB. If the write fails, the changes stay pending for the next flush.
+     */
+    public synchronized void flush() {
+
+        if (pendingCount.get() == 0) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            flushLocked();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean isUserChecked() {
+
+        return isEnabled || filmDao.isUserChecked();
+    }
+
+    @Override
+    public LikeStatus addLike(Long filmId, Long userId) {
+
+        return isEnabled ? changeLike(filmId, userId, true) : filmDao.addLike(filmId, userId);
+    }
+
+    @Override
+    public LikeStatus deleteLike(Long filmId, Long userId) {
+
+        return isEnabled ? changeLike(filmId, userId, false) : filmDao.deleteLike(filmId, userId);
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId, FilmView view) {
+
+        return read(() -> filmDao.findById(filmId, view), film -> film.map(this::merge));
+    }
+
+    @Override
+    public List<Film> findAll(FilmView view) {
+
+        return read(() -> filmDao.findAll(view), this::merge);
+    }
+
+    @Override
+    public List<Film> findAll(Long afterId, int limit, FilmView view) {
+
+        return read(() -> filmDao.findAll(afterId, limit, view), this::merge);
+    }
+
+    @Override
+    public List<Film> findAllByIds(List<Long> filmIds, FilmView view) {
+
+        return read(() -> filmDao.findAllByIds(filmIds, view), this::merge);
+    }
+
+    @Override
+    public List<Film> findPopularFilms(int count) {
+
+        return read(() -> filmDao.findPopularFilms(count), this::merge);
+    }
+
+    /**
+     * The stream is too long to hold a lock or to be repeated, so the pending changes are flushed before it starts.
+     */
+    @Override
+    public void streamAll(Consumer<Film> consumer, FilmView view) {
+
+        flush();
+        filmDao.streamAll(consumer, view);
+    }
+
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        filmDao.streamAllIds(consumer);
+    }
+
+    /**
+     * The stored page is read longer by the number of pending unlikes, so it still has `limit` likes
+     * after they are removed. A pending like is added only if it falls into the range of the stored page.
+     */
+    @Override
+    public List<Long> findLikes(Long filmId, Long afterUserId, int limit) {
+
+        return read(() -> {
+            Map<Long, Boolean> filmPending = pending.getOrDefault(filmId, Map.of());
+            if (filmPending.isEmpty()) {
+                return filmDao.findLikes(filmId, afterUserId, limit);
+            }
+
+            long fromId = afterUserId == null ? 0L : afterUserId;
+            int requested = limit + (int) filmPending.values().stream().filter(isLiked -> !isLiked).count();
+            List<Long> stored = filmDao.findLikes(filmId, afterUserId, requested);
+            long lastId = stored.size() < requested ? Long.MAX_VALUE : stored.get(stored.size() - 1);
+
+            TreeSet<Long> merged = new TreeSet<>(stored);
+            filmPending.forEach((userId, isLiked) -> {
+                if (!isLiked) {
+                    merged.remove(userId);
+                } else if (userId > fromId && userId <= lastId) {
+                    merged.add(userId);
+                }
+            });
+
+            return merged.stream()
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }, UnaryOperator.identity());
+    }
+
+    @Override
+    public List<Long> findLikedFilmIds(Long userId) {
+
+        return read(() -> {
+            Set<Long> filmIds = new HashSet<>(filmDao.findLikedFilmIds(userId));
+            pending.forEach((filmId, filmPending) -> {
+                Boolean isLiked = filmPending.get(userId);
+                if (Boolean.TRUE.equals(isLiked)) {
+                    filmIds.add(filmId);
+                } else if (Boolean.FALSE.equals(isLiked)) {
+                    filmIds.remove(filmId);
+                }
+            });
+
+            return new ArrayList<>(filmIds);
+        }, UnaryOperator.identity());
+    }
+
+    @Override
+    public boolean isLikeExists(Long filmId, Long userId) {
+
+        return read(() -> {
+            Boolean isLiked = pending.getOrDefault(filmId, Map.of()).get(userId);
+            return isLiked != null ? isLiked : filmDao.isLikeExists(filmId, userId);
+        }, UnaryOperator.identity());
+    }
+
+    @Override
+    public Map<Long, Integer> findAllLikeCounts() {
+
+        return read(filmDao::findAllLikeCounts, likeCounts -> {
+            Map<Long, Integer> merged = new HashMap<>(likeCounts);
+            pending.forEach((filmId, filmPending) -> merged.computeIfPresent(filmId,
+                    (id, likeCount) -> likeCount + countDelta(filmPending)));
+            return merged;
+        });
+    }
+
+    @Override
+    public Film save(Film film) {
+
+        return filmDao.save(film);
+    }
+
+    @Override
+    public List<Long> saveAll(List<Film> films) {
+
+        return filmDao.saveAll(films);
+    }
+
+    @Override
+    public Optional<Film> update(Film film) {
+
+        if (!isEnabled) {
+            return filmDao.update(film);
+        }
+
+        long stamp = lock.readLock();
+        try {
+            return filmDao.update(film).map(this::merge);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean deleteById(Long filmId) {
+
+        long stamp = lock.readLock();
+        try {
+            boolean isDeleted = filmDao.deleteById(filmId);
+            Map<Long, Boolean> filmPending = pending.remove(filmId);
+            if (filmPending != null) {
+                pendingCount.addAndGet(-filmPending.size());
+            }
+            return isDeleted;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isExistsById(Long filmId) {
+
+        return filmDao.isExistsById(filmId);
+    }
+
+    /**
+     * The pending changes are written first, so the given changes apply to the stored state they were made for.
+     */
+    @Override
+    public synchronized void saveLikes(List<Like> addedLikes, List<Like> deletedLikes) {
+
+        long stamp = lock.writeLock();
+        try {
+            flushLocked();
+            filmDao.saveLikes(addedLikes, deletedLikes);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * The likes of a deleted user are removed from the DB by the cascade, the pending ones are dropped here.
+     */
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+
+        long stamp = lock.readLock();
+        try {
+            pending.values().forEach(filmPending -> {
+                if (filmPending.remove(event.getUserId()) != null) {
+                    pendingCount.decrementAndGet();
+                }
+            });
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Records a like or an unlike in the journal. The stored state of this one like is read from the wrapped DAO,
+     * not the whole film with all its likes. It does not change until the next flush, which waits for the read lock.
+     */
+    private LikeStatus changeLike(Long filmId, Long userId, boolean isLiked) {
+
+        boolean filmExists = filmDao.isExistsById(filmId);
+        boolean userExists = userDao.isExistsById(userId);
+        if (!filmExists || !userExists) {
+            return !filmExists && !userExists ? LikeStatus.FILM_AND_USER_NOT_FOUND
+                    : !filmExists ? LikeStatus.FILM_NOT_FOUND : LikeStatus.USER_NOT_FOUND;
+        }
+
+        long stamp = lock.readLock();
+        try {
+            boolean isStored = filmDao.isLikeExists(filmId, userId);
+
+            AtomicInteger countChange = new AtomicInteger();
+            AtomicBoolean isChanged = new AtomicBoolean();
+            pending.computeIfAbsent(filmId, id -> new ConcurrentHashMap<>())
+                    .compute(userId, (id, pendingLiked) -> {
+                        boolean current = pendingLiked != null ? pendingLiked : isStored;
+                        if (current == isLiked) {
+                            return pendingLiked;
+                        }
+                        isChanged.set(true);
+                        countChange.set(pendingLiked == null ? 1 : -1);
+                        return pendingLiked == null ? isLiked : null;
+                    });
+
+            if (!isChanged.get()) {
+                return isLiked ? LikeStatus.ALREADY_LIKED : LikeStatus.NOT_LIKED;
+            }
+            if (pendingCount.addAndGet(countChange.get()) >= maxPending) {
+                requestFlush();
+            }
+
+            return LikeStatus.OK;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * After the scheduler is shut down the flush is left to {@link #stop}, the like stays pending until then.
+     */
+    private void requestFlush() {
+
+        if (scheduler != null && isFlushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    isFlushRequested.set(false);
+                    flush();
+                });
+            } catch (RejectedExecutionException exception) {
+                isFlushRequested.set(false);
+                log.debug("The flush of likes is not requested, the scheduler is shut down.");
+            }
+        }
+    }
+
+    private void flushLocked() {
+
+        Map<Long, Map<Long, Boolean>> flushed = pending;
+        List<Like> addedLikes = new ArrayList<>();
+        List<Like> deletedLikes = new ArrayList<>();
+        flushed.forEach((filmId, filmPending) -> filmPending.forEach((userId, isLiked) ->
+                (isLiked ? addedLikes : deletedLikes).add(Like.builder().filmId(filmId).userId(userId).build())));
+        if (addedLikes.isEmpty() && deletedLikes.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            filmDao.saveLikes(addedLikes, deletedLikes);
+            pending = new ConcurrentHashMap<>();
+            pendingCount.addAndGet(-(addedLikes.size() + deletedLikes.size()));
+            log.debug("The likes are flushed, added: {}, deleted: {}.", addedLikes.size(), deletedLikes.size());
+        } catch (RuntimeException exception) {
+            log.error("The likes are not flushed and stay pending, added: {}, deleted: {}. {}",
+                    addedLikes.size(), deletedLikes.size(), exception.getMessage());
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Reads from the wrapped DAO and merges the pending changes without locking. If a flush happened meanwhile,
+     * the read is repeated under the read lock.
+     */
+    private <T> T read(Supplier<T> reader, UnaryOperator<T> merger) {
+
+        if (!isEnabled) {
+            return reader.get();
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = merger.apply(reader.get());
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return merger.apply(reader.get());
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private List<Film> merge(List<Film> films) {
+
+        return films.stream()
+                .map(this::merge)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Applies the pending changes to a copy of the film, the film may be a cached instance.
+     */
+    private Film merge(Film film) {
+
+        Map<Long, Boolean> filmPending = pending.get(film.getId());
+        if (filmPending == null || filmPending.isEmpty()) {
+            return film;
+        }
+
+        LongSortedSet likedUserIds = film.getLikedUserIds() == null ? null
+                : new LongSortedSet(film.getLikedUserIds());
+        if (likedUserIds != null) {
+            filmPending.forEach((userId, isLiked) -> {
+                if (isLiked) {
+                    likedUserIds.add(userId);
+                } else {
+                    likedUserIds.remove(userId);
+                }
+            });
+        }
+
+        return film.toBuilder()
+                .likedUserIds(likedUserIds)
+                .likeCount(film.getLikeCount() == null ? null : film.getLikeCount() + countDelta(filmPending))
+                .build();
+    }
+
+    private int countDelta(Map<Long, Boolean> filmPending) {
+
+        int delta = 0;
+        for (Boolean isLiked : filmPending.values()) {
+            delta += isLiked ? 1 : -1;
+        }
+
+        return delta;
+    }
+}
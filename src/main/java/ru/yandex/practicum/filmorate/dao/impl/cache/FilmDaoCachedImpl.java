@@ -0,0 +1,331 @@
+package ru.yandex.practicum.filmorate.dao.impl.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.collection.ConcurrentBitSet;
+import ru.yandex.practicum.filmorate.dao.FilmDao;
+import ru.yandex.practicum.filmorate.event.ReferenceDataChangedEvent;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * The FilmDaoCachedImpl class is a FilmDao decorator that keeps recently and frequently read films in a size-bounded
+ * Caffeine cache (W-TinyLFU eviction). Single film reads and existence checks are served from the cache,
+ * the write methods invalidate the films they change. Lists and pages are always read from the wrapped DAO.
+ * The cache keeps the FULL view, a SUMMARY view is served from a cached film when it is present
+ * and read from the wrapped DAO without caching otherwise.
+ * Hit, miss and eviction counters are published as the `cache.*` metrics with the tag `cache=films`.
+ * The IDs of all stored films are kept in a bitset, read when the decorator is created and maintained by the write
+ * methods, so the existence of a stored film is checked without the DB. An ID missing from the bitset (a film
+ * written past the decorator or an ID above ConcurrentBitSet.MAX_VALUE) is checked in the wrapped DAO
+ * and added to the bitset when the film exists.
+ * The decorator is opt-in, it is created only when `filmorate.dao.films` selects it or the write-behind
+ * decorator that wraps it.
+ */
+@ConditionalOnExpression("'${filmorate.dao.films:filmDB}' matches 'filmCache|filmWriteBehind'")
+@Repository(value = "filmCache")
+public class FilmDaoCachedImpl implements FilmDao {
+    private final FilmDao filmDao;
+    private final Cache<Long, Optional<Film>> films;
+    private final ConcurrentBitSet filmIds = new ConcurrentBitSet();
+    private final AtomicLong deletedCount = new AtomicLong();
+
+    @Autowired
+    public FilmDaoCachedImpl(@Qualifier(value = "filmDB") FilmDao filmDao,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.cache.films.maximum-size:10000}") long maximumSize) {
+        this.filmDao = filmDao;
+        this.films = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, films, "films");
+        filmDao.streamAllIds(this::addId);
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId, FilmView view) {
+
+        if (!filmIds.get(filmId)) {
+            long deletions = deletedCount.get();
+            Optional<Film> film = filmDao.findById(filmId, view);
+            film.ifPresent(found -> addCheckedId(filmId, deletions));
+            return film;
+        }
+        if (view == FilmView.SUMMARY) {
+            Optional<Film> film = films.getIfPresent(filmId);
+            return film != null ? film.map(this::toSummary) : filmDao.findById(filmId, view);
+        }
+
+        return films.get(filmId, filmDao::findById);
+    }
+
+    @Override
+    public boolean isExistsById(Long filmId) {
+
+        if (filmIds.get(filmId)) {
+            return true;
+        }
+
+        long deletions = deletedCount.get();
+        boolean isExists = filmDao.isExistsById(filmId);
+        if (isExists) {
+            addCheckedId(filmId, deletions);
+        }
+
+        return isExists;
+    }
+
+    @Override
+    public List<Film> findAllByIds(List<Long> filmIds, FilmView view) {
+
+        if (view == FilmView.SUMMARY) {
+            return findAllSummariesByIds(filmIds);
+        }
+
+        Map<Long, Optional<Film>> cached = films.getAllPresent(filmIds);
+        if (cached.size() < filmIds.size()) {
+            List<Long> missedIds = new ArrayList<>(filmIds.size() - cached.size());
+            for (Long filmId : filmIds) {
+                if (!cached.containsKey(filmId)) {
+                    missedIds.add(filmId);
+                }
+            }
+            cached = new HashMap<>(cached);
+            for (Film film : filmDao.findAllByIds(missedIds)) {
+                films.put(film.getId(), Optional.of(film));
+                cached.put(film.getId(), Optional.of(film));
+            }
+        }
+
+        List<Film> result = new ArrayList<>(filmIds.size());
+        for (Long filmId : filmIds) {
+            Optional<Film> film = cached.get(filmId);
+            if (film != null) {
+                film.ifPresent(result::add);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<Film> findAll(FilmView view) {
+
+        return filmDao.findAll(view);
+    }
+
+    @Override
+    public List<Film> findAll(Long afterId, int limit, FilmView view) {
+
+        return filmDao.findAll(afterId, limit, view);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer, FilmView view) {
+
+        filmDao.streamAll(consumer, view);
+    }
+
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        filmDao.streamAllIds(consumer);
+    }
+
+    @Override
+    public List<Long> findLikes(Long filmId, Long afterUserId, int limit) {
+
+        return filmDao.findLikes(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public List<Long> findLikedFilmIds(Long userId) {
+
+        return filmDao.findLikedFilmIds(userId);
+    }
+
+    @Override
+    public boolean isLikeExists(Long filmId, Long userId) {
+
+        return filmDao.isLikeExists(filmId, userId);
+    }
+
+    @Override
+    public List<Film> findPopularFilms(int count) {
+
+        return filmDao.findPopularFilms(count);
+    }
+
+    @Override
+    public Map<Long, Integer> findAllLikeCounts() {
+
+        return filmDao.findAllLikeCounts();
+    }
+
+    @Override
+    public Film save(Film film) {
+
+        Film savedFilm = filmDao.save(film);
+        addId(savedFilm.getId());
+        films.invalidate(savedFilm.getId());
+
+        return savedFilm;
+    }
+
+    @Override
+    public List<Long> saveAll(List<Film> newFilms) {
+
+        List<Long> savedIds = filmDao.saveAll(newFilms);
+        savedIds.forEach(this::addId);
+        films.invalidateAll(savedIds);
+
+        return savedIds;
+    }
+
+    @Override
+    public Optional<Film> update(Film film) {
+
+        try {
+            return filmDao.update(film);
+        } finally {
+            films.invalidate(film.getId());
+        }
+    }
+
+    @Override
+    public boolean deleteById(Long filmId) {
+
+        try {
+            boolean isDeleted = filmDao.deleteById(filmId);
+            if (isDeleted) {
+                deletedCount.incrementAndGet();
+                filmIds.clear(filmId);
+            }
+            return isDeleted;
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public boolean isUserChecked() {
+
+        return filmDao.isUserChecked();
+    }
+
+    @Override
+    public LikeStatus addLike(Long filmId, Long userId) {
+
+        try {
+            return filmDao.addLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public LikeStatus deleteLike(Long filmId, Long userId) {
+
+        try {
+            return filmDao.deleteLike(filmId, userId);
+        } finally {
+            films.invalidate(filmId);
+        }
+    }
+
+    @Override
+    public void saveLikes(List<Like> addedLikes, List<Like> deletedLikes) {
+
+        try {
+            filmDao.saveLikes(addedLikes, deletedLikes);
+        } finally {
+            addedLikes.forEach(like -> films.invalidate(like.getFilmId()));
+            deletedLikes.forEach(like -> films.invalidate(like.getFilmId()));
+        }
+    }
+
+    private List<Film> findAllSummariesByIds(List<Long> filmIds) {
+
+        Map<Long, Optional<Film>> cached = films.getAllPresent(filmIds);
+        Map<Long, Film> loaded = new HashMap<>();
+        if (cached.size() < filmIds.size()) {
+            List<Long> missedIds = new ArrayList<>(filmIds.size() - cached.size());
+            for (Long filmId : filmIds) {
+                if (!cached.containsKey(filmId)) {
+                    missedIds.add(filmId);
+                }
+            }
+            filmDao.findAllByIds(missedIds, FilmView.SUMMARY).forEach(film -> loaded.put(film.getId(), film));
+        }
+
+        List<Film> result = new ArrayList<>(filmIds.size());
+        for (Long filmId : filmIds) {
+            Optional<Film> film = cached.get(filmId);
+            if (film != null) {
+                film.map(this::toSummary).ifPresent(result::add);
+            } else if (loaded.containsKey(filmId)) {
+                result.add(loaded.get(filmId));
+            }
+        }
+
+        return result;
+    }
+
+    private void addId(long filmId) {
+
+        if (filmId <= ConcurrentBitSet.MAX_VALUE) {
+            filmIds.set(filmId);
+        }
+    }
+
+    /**
+     * Adds the ID of a film found in the wrapped DAO. A film deleted during the check may be added after
+     * the delete cleared its bit, so the bit is cleared again when any film was deleted since `deletions` was read.
+     */
+    private void addCheckedId(long filmId, long deletions) {
+
+        addId(filmId);
+        if (deletedCount.get() != deletions) {
+            filmIds.clear(filmId);
+        }
+    }
+
+    private Film toSummary(Film film) {
+
+        return film.toBuilder()
+                .likedUserIds(null)
+                .build();
+    }
+
+    /**
+     * The likes of a deleted user are removed by the DB cascade, the films they belonged to are not known here.
+     */
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+
+        films.invalidateAll();
+    }
+
+    @EventListener
+    public void onReferenceDataChanged(ReferenceDataChangedEvent event) {
+
+        films.invalidateAll();
+    }
+}
@@ -0,0 +1,292 @@
+package ru.yandex.practicum.filmorate.dao.impl.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.collection.ConcurrentBitSet;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.dao.UserDao;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * The UserDaoCachedImpl class is a UserDao decorator that keeps recently and frequently read users in a size-bounded
+ * Caffeine cache (W-TinyLFU eviction). Single user reads and existence checks are served from the cache,
+ * the write methods invalidate the users they change. Lists and pages are always read from the wrapped DAO.
+ * Hit, miss and eviction counters are published as the `cache.*` metrics with the tag `cache=users`.
+ * The IDs of all stored users are kept in a bitset, read when the decorator is created and maintained by the write
+ * methods, so the existence of a stored user is checked without the DB. An ID missing from the bitset (a user
+ * written past the decorator or an ID above ConcurrentBitSet.MAX_VALUE) is checked in the wrapped DAO
+ * and added to the bitset when the user exists.
+ * The decorator is opt-in, it is created only when `filmorate.dao.users` selects it.
+ */
+@ConditionalOnProperty(name = "filmorate.dao.users", havingValue = "userCache")
+@Repository(value = "userCache")
+public class UserDaoCachedImpl implements UserDao {
+    private final UserDao userDao;
+    private final Cache<Long, Optional<User>> users;
+    private final ConcurrentBitSet userIds = new ConcurrentBitSet();
+    private final AtomicLong deletedCount = new AtomicLong();
+
+    @Autowired
+    public UserDaoCachedImpl(@Qualifier(value = "userDB") UserDao userDao,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.cache.users.maximum-size:10000}") long maximumSize) {
+        this.userDao = userDao;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "users");
+        userDao.streamAllIds(this::addId);
+    }
+
+    @Override
+    public Optional<User> findById(Long userId) {
+
+        if (!userIds.get(userId)) {
+            long deletions = deletedCount.get();
+            Optional<User> user = userDao.findById(userId);
+            user.ifPresent(found -> addCheckedId(userId, deletions));
+            return user;
+        }
+
+        return users.get(userId, userDao::findById);
+    }
+
+    @Override
+    public boolean isExistsById(Long userId) {
+
+        if (userIds.get(userId)) {
+            return true;
+        }
+
+        long deletions = deletedCount.get();
+        boolean isExists = userDao.isExistsById(userId);
+        if (isExists) {
+            addCheckedId(userId, deletions);
+        }
+
+        return isExists;
+    }
+
+    @Override
+    public List<User> findAll() {
+
+        return userDao.findAll();
+    }
+
+    @Override
+    public List<User> findAll(Long afterId, int limit) {
+
+        return userDao.findAll(afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+
+        userDao.streamAll(consumer);
+    }
+
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        userDao.streamAllIds(consumer);
+    }
+
+    @Override
+    public List<User> findAllFriends(Long userId) {
+
+        return userDao.findAllFriends(userId);
+    }
+
+    @Override
+    public List<User> findAllFriends(Long userId, Long afterId, int limit) {
+
+        return userDao.findAllFriends(userId, afterId, limit);
+    }
+
+    @Override
+    public List<User> findCommonFriends(Long userId, Long otherId) {
+
+        return userDao.findCommonFriends(userId, otherId);
+    }
+
+    @Override
+    public List<User> findAllByIds(List<Long> userIds) {
+
+        Map<Long, Optional<User>> cached = users.getAllPresent(userIds);
+        if (cached.size() < userIds.size()) {
+            List<Long> missedIds = new ArrayList<>(userIds.size() - cached.size());
+            for (Long userId : userIds) {
+                if (!cached.containsKey(userId)) {
+                    missedIds.add(userId);
+                }
+            }
+            cached = new HashMap<>(cached);
+            for (User user : userDao.findAllByIds(missedIds)) {
+                users.put(user.getId(), Optional.of(user));
+                cached.put(user.getId(), Optional.of(user));
+            }
+        }
+
+        List<User> result = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            Optional<User> user = cached.get(userId);
+            if (user != null) {
+                user.ifPresent(result::add);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Map<Long, LongSortedSet> findAllFriendIds() {
+
+        return userDao.findAllFriendIds();
+    }
+
+    @Override
+    public User save(User user) {
+
+        User savedUser = userDao.save(user);
+        addId(savedUser.getId());
+        users.invalidate(savedUser.getId());
+
+        return savedUser;
+    }
+
+    @Override
+    public Optional<User> update(User user) {
+
+        try {
+            return userDao.update(user);
+        } finally {
+            users.invalidate(user.getId());
+        }
+    }
+
+    @Override
+    public boolean deleteById(Long userId) {
+
+        try {
+            boolean isDeleted = userDao.deleteById(userId);
+            if (isDeleted) {
+                deletedCount.incrementAndGet();
+                userIds.clear(userId);
+            }
+            return isDeleted;
+        } finally {
+            users.invalidate(userId);
+        }
+    }
+
+    /**
+     * A friend request changes the friend list of the user, its confirmation changes the friend list of both users.
+     */
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+
+        try {
+            return userDao.addFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    @Override
+    public boolean isFriendshipMutual() {
+
+        return userDao.isFriendshipMutual();
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+
+        try {
+            return userDao.addFriends(friendships);
+        } finally {
+            Set<Long> userIds = new HashSet<>();
+            friendships.forEach(friendship -> {
+                userIds.add(friendship.getUserId());
+                userIds.add(friendship.getFriendId());
+            });
+            users.invalidateAll(userIds);
+        }
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> ids) {
+
+        Set<Long> existingIds = new HashSet<>();
+        List<Long> missedIds = new ArrayList<>();
+        for (Long userId : ids) {
+            if (userIds.get(userId)) {
+                existingIds.add(userId);
+            } else {
+                missedIds.add(userId);
+            }
+        }
+        if (!missedIds.isEmpty()) {
+            long deletions = deletedCount.get();
+            for (Long userId : userDao.findExistingIds(missedIds)) {
+                addCheckedId(userId, deletions);
+                existingIds.add(userId);
+            }
+        }
+
+        return existingIds;
+    }
+
+    @Override
+    public boolean deleteFriend(Long userId, Long friendId) {
+
+        try {
+            return userDao.deleteFriend(userId, friendId);
+        } finally {
+            users.invalidateAll(List.of(userId, friendId));
+        }
+    }
+
+    private void addId(long userId) {
+
+        if (userId <= ConcurrentBitSet.MAX_VALUE) {
+            userIds.set(userId);
+        }
+    }
+
+    /**
+     * Adds the ID of a user found in the wrapped DAO. A user deleted during the check may be added after
+     * the delete cleared its bit, so the bit is cleared again when any user was deleted since `deletions` was read.
+     */
+    private void addCheckedId(long userId, long deletions) {
+
+        addId(userId);
+        if (deletedCount.get() != deletions) {
+            userIds.clear(userId);
+        }
+    }
+
+    /**
+     * The friendships of a deleted user are removed by the DB cascade, the users they belonged to are not known here.
+     */
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+
+        users.invalidateAll();
+    }
+}
@@ -0,0 +1,669 @@
+package ru.yandex.practicum.filmorate.dao.impl.mapped;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.dao.FilmDao;
+import ru.yandex.practicum.filmorate.dao.impl.Likes;
+import ru.yandex.practicum.filmorate.dao.impl.ReferenceData;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.model.*;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * The FilmDaoMappedImpl class keeps films in memory-mapped files in `filmorate.mapped.directory`, so a restart
+ * only maps the files instead of loading the films, and a read decodes one record and its strings into a new Film
+ * without SQL; the strings are copied out of the mapping, a Java String cannot reference it.
+ * <p>
+ * `films.dat` holds a fixed-width record per film at the position given by the film ID, so the file is its own
+ * ID index. A record holds the scalar fields, the genres as a 64-bit mask of genre IDs and the positions of the name
+ * and the description in `films.heap`, where the strings are stored as UTF-8. A string that fits in its old place
+ * is overwritten, otherwise it is appended; the space of replaced and deleted strings is not reclaimed.
+ * The mask holds the genre IDs from 1 to 63, a film with a greater genre ID is rejected.
+ * The likes are kept in memory like in {@link ru.yandex.practicum.filmorate.dao.impl.memory.FilmDaoInMemoryImpl}
+ * and appended to `likes.log`, which is replayed on startup.
+ * <p>
+ * Writes are serialized by a write lock. Reads decode the films from the mapped files under an
+ * optimistic stamp and are repeated under a read lock only if a write happened meanwhile.
+ * The files are written through the page cache and forced to the disk when the application stops,
+ * so the films survive a crash of the process but not a crash of the OS.
+ * The users are not known to this DAO, any user ID is accepted and the caller checks the users.
+ * The DAO is opt-in, it is created and maps the files only when `filmorate.dao.films` selects it.
+ */
+@Slf4j
+@ConditionalOnProperty(name = "filmorate.dao.films", havingValue = "filmMapped")
+@Repository(value = "filmMapped")
+public class FilmDaoMappedImpl implements FilmDao {
+    private static final int MAGIC = 0x464C4D31;
+    private static final int HEADER_SIZE = 64;
+    private static final int HEADER_MAX_ID = 8;
+    private static final int HEAP_HEADER_SIZE = 16;
+    private static final int HEAP_END = 8;
+    private static final int AVERAGE_STRINGS_SIZE = 256;
+    private static final int LIKE_SIZE = 16;
+    private static final long MAX_GENRE_ID = 63;
+
+    private static final int RECORD_SIZE = 64;
+    private static final int STATE = 0;
+    private static final int DURATION = 4;
+    private static final int VERSION = 8;
+    private static final int RELEASE_DATE = 16;
+    private static final int MPA_ID = 24;
+    private static final int GENRES = 32;
+    private static final int NAME_POSITION = 40;
+    private static final int DESCRIPTION_POSITION = 48;
+    private static final int NAME_LENGTH = 56;
+    private static final int DESCRIPTION_LENGTH = 60;
+
+    private static final int LIVE = 1;
+    private static final int DELETED = 2;
+
+    private final ReferenceData referenceData;
+    private final StampedLock lock = new StampedLock();
+    private final ConcurrentMap<Long, Likes> likes = new ConcurrentHashMap<>();
+    private final MappedFile records;
+    private final MappedFile heap;
+    private final FileChannel likeLog;
+    private volatile long maxId;
+    private long heapEnd;
+
+    public FilmDaoMappedImpl(ReferenceData referenceData,
+                             @Value("${filmorate.mapped.directory:./db/mapped}") String directory,
+                             @Value("${filmorate.mapped.initial-capacity:10000}") int initialCapacity) {
+        this.referenceData = referenceData;
+
+        long start = System.nanoTime();
+        try {
+            Path path = Files.createDirectories(Paths.get(directory));
+            records = MappedFile.open(path.resolve("films.dat"), HEADER_SIZE + (long) initialCapacity * RECORD_SIZE);
+            heap = MappedFile.open(path.resolve("films.heap"),
+                    HEAP_HEADER_SIZE + (long) initialCapacity * AVERAGE_STRINGS_SIZE);
+            likeLog = FileChannel.open(path.resolve("likes.log"), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            maxId = checkHeader(records, 0L);
+            heapEnd = checkHeader(heap, HEAP_HEADER_SIZE);
+            for (long filmId = 1; filmId <= maxId; filmId++) {
+                if (records.buffer.getInt(recordPosition(filmId) + STATE) == LIVE) {
+                    likes.put(filmId, new Likes());
+                }
+            }
+            long likeCount = replayLikes();
+
+            log.info("The mapped films are opened from {}: {} films, {} likes, {} ms.", path.toAbsolutePath(),
+                    likes.size(), likeCount, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Error opening the mapped films.", exception);
+        }
+    }
+
+    @Override
+    public Film save(Film newObject) {
+
+        long stamp = lock.writeLock();
+        try {
+            return readFilm(insert(newObject), FilmView.FULL);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public List<Long> saveAll(List<Film> films) {
+
+        long stamp = lock.writeLock();
+        try {
+            return films.stream()
+                    .map(this::insert)
+                    .collect(Collectors.toList());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId, FilmView view) {
+
+        return Optional.ofNullable(read(() -> readFilm(filmId, view)));
+    }
+
+    @Override
+    public List<Film> findAll(FilmView view) {
+
+        return findAll(null, Integer.MAX_VALUE, view);
+    }
+
+    @Override
+    public List<Film> findAll(Long afterId, int limit, FilmView view) {
+
+        long fromId = afterId == null ? 1L : afterId + 1;
+
+        return read(() -> {
+            List<Film> films = new ArrayList<>();
+            for (long filmId = fromId; filmId <= maxId && films.size() < limit; filmId++) {
+                Film film = readFilm(filmId, view);
+                if (film != null) {
+                    films.add(film);
+                }
+            }
+            return films;
+        });
+    }
+
+    /**
+     * Rewrites the record of the film, its likes are kept. If the genres of the given film are null,
+     * the stored genres are kept. An update with a version other than the stored one changes nothing.
+     */
+    @Override
+    public Optional<Film> update(Film updateObject) {
+
+        Long filmId = updateObject.getId();
+        long stamp = lock.writeLock();
+        try {
+            if (!isLive(filmId)) {
+                return Optional.empty();
+            }
+
+            int position = recordPosition(filmId);
+            long version = records.buffer.getLong(position + VERSION);
+            if (updateObject.getVersion() != null && updateObject.getVersion() != version) {
+                return Optional.empty();
+            }
+
+            long genreMask = updateObject.getGenres() == null
+                    ? records.buffer.getLong(position + GENRES)
+                    : genreMask(updateObject.getGenres());
+            updateObject.setVersion(version + 1);
+            writeRecord(filmId, updateObject, genreMask);
+
+            return Optional.of(readFilm(filmId, FilmView.FULL));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean deleteById(Long filmId) {
+
+        long stamp = lock.writeLock();
+        try {
+            if (!isLive(filmId)) {
+                return false;
+            }
+
+            records.buffer.putInt(recordPosition(filmId) + STATE, DELETED);
+            likes.remove(filmId);
+
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean isExistsById(Long filmId) {
+
+        return read(() -> isLive(filmId));
+    }
+
+    @Override
+    public boolean isUserChecked() {
+
+        return false;
+    }
+
+    @Override
+    public LikeStatus addLike(Long filmId, Long userId) {
+
+        Likes filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            return LikeStatus.FILM_NOT_FOUND;
+        }
+
+        synchronized (filmLikes) {
+            if (!filmLikes.add(userId)) {
+                return LikeStatus.ALREADY_LIKED;
+            }
+            appendLike(filmId, userId);
+        }
+
+        return LikeStatus.OK;
+    }
+
+    @Override
+    public LikeStatus deleteLike(Long filmId, Long userId) {
+
+        Likes filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            return LikeStatus.FILM_NOT_FOUND;
+        }
+
+        synchronized (filmLikes) {
+            if (!filmLikes.remove(userId)) {
+                return LikeStatus.NOT_LIKED;
+            }
+            appendLike(filmId, -userId);
+        }
+
+        return LikeStatus.OK;
+    }
+
+    @Override
+    public void saveLikes(List<Like> addedLikes, List<Like> deletedLikes) {
+
+        addedLikes.forEach(like -> addLike(like.getFilmId(), like.getUserId()));
+        deletedLikes.forEach(like -> deleteLike(like.getFilmId(), like.getUserId()));
+    }
+
+    @Override
+    public List<Film> findPopularFilms(int count) {
+
+        List<Long> filmIds = likes.entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<Long, Likes> entry) -> -entry.getValue().count())
+                        .thenComparing(Map.Entry::getKey))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        return findAllByIds(filmIds, FilmView.FULL);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer, FilmView view) {
+
+        for (long filmId = 1; filmId <= maxId; filmId++) {
+            long id = filmId;
+            Film film = read(() -> readFilm(id, view));
+            if (film != null) {
+                consumer.accept(film);
+            }
+        }
+    }
+
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        likes.keySet().forEach(consumer::accept);
+    }
+
+    @Override
+    public List<Film> findAllByIds(List<Long> filmIds, FilmView view) {
+
+        return read(() -> filmIds.stream()
+                .map(filmId -> readFilm(filmId, view))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public List<Long> findLikes(Long filmId, Long afterUserId, int limit) {
+
+        long fromId = afterUserId == null ? 0L : afterUserId;
+        Likes filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            return List.of();
+        }
+
+        return filmLikes.findAfter(fromId, limit);
+    }
+
+    @Override
+    public List<Long> findLikedFilmIds(Long userId) {
+
+        return likes.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(userId))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isLikeExists(Long filmId, Long userId) {
+
+        Likes filmLikes = likes.get(filmId);
+
+        return filmLikes != null && filmLikes.contains(userId);
+    }
+
+    @Override
+    public Map<Long, Integer> findAllLikeCounts() {
+
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        likes.forEach((filmId, filmLikes) -> likeCounts.put(filmId, filmLikes.count()));
+
+        return likeCounts;
+    }
+
+    @PreDestroy
+    public void close() {
+
+        long stamp = lock.writeLock();
+        try {
+            records.close();
+            heap.close();
+            likeLog.force(true);
+            likeLog.close();
+        } catch (IOException exception) {
+            log.error("Error closing the mapped films.", exception);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reads without locking and repeats the read under the read lock if a write happened meanwhile.
+     * A read that races with a write may see a half-written record and fail, it is repeated as well.
+     */
+    private <T> T read(Supplier<T> reader) {
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException exception) {
+                if (lock.validate(stamp)) {
+                    throw exception;
+                }
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Writes the record of a new film under the write lock, the ID is published after the record is written.
+     */
+    private long insert(Film film) {
+
+        long filmId = maxId + 1;
+        records.ensureCapacity(recordPosition(filmId) + RECORD_SIZE);
+        film.setId(filmId);
+        film.setVersion(0L);
+        writeRecord(filmId, film, genreMask(film.getGenres()));
+        records.buffer.putLong(HEADER_MAX_ID, filmId);
+        likes.put(filmId, new Likes());
+        maxId = filmId;
+
+        return filmId;
+    }
+
+    private boolean isLive(Long filmId) {
+
+        return filmId != null && filmId >= 1 && filmId <= maxId
+                && records.buffer.getInt(recordPosition(filmId) + STATE) == LIVE;
+    }
+
+    private Film readFilm(Long filmId, FilmView view) {
+
+        if (!isLive(filmId)) {
+            return null;
+        }
+
+        MappedByteBuffer buffer = records.buffer;
+        int position = recordPosition(filmId);
+        Likes filmLikes = likes.get(filmId);
+        LongSortedSet likedUserIds = filmLikes == null ? new LongSortedSet() : filmLikes.snapshot();
+
+        return Film.builder()
+                .id(filmId)
+                .name(readString(buffer.getLong(position + NAME_POSITION), buffer.getInt(position + NAME_LENGTH)))
+                .description(readString(buffer.getLong(position + DESCRIPTION_POSITION),
+                        buffer.getInt(position + DESCRIPTION_LENGTH)))
+                .releaseDate(LocalDate.ofEpochDay(buffer.getLong(position + RELEASE_DATE)))
+                .duration(buffer.getInt(position + DURATION))
+                .mpa(referenceData.getMpa(buffer.getLong(position + MPA_ID)))
+                .genres(readGenres(buffer.getLong(position + GENRES)))
+                .likedUserIds(view == FilmView.SUMMARY ? null : likedUserIds)
+                .likeCount(likedUserIds.size())
+                .version(buffer.getLong(position + VERSION))
+                .build();
+    }
+
+    private Set<Genre> readGenres(long genreMask) {
+
+        Set<Genre> genres = new TreeSet<>(Comparator.comparing(Genre::getId));
+        for (long mask = genreMask; mask != 0; mask &= mask - 1) {
+            genres.add(referenceData.getGenre((long) Long.numberOfTrailingZeros(mask)));
+        }
+
+        return genres;
+    }
+
+    private String readString(long position, int length) {
+
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        ByteBuffer view = heap.buffer.duplicate();
+        view.position((int) position);
+        view.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the record of the film, the strings are written first, so the record never points
+     * to a string that is not there yet. The state is written last.
+     */
+    private void writeRecord(long filmId, Film film, long genreMask) {
+
+        int position = recordPosition(filmId);
+        boolean isLive = isLive(filmId);
+        byte[] name = toBytes(film.getName());
+        byte[] description = toBytes(film.getDescription());
+        long namePosition = writeString(name, isLive ? records.buffer.getLong(position + NAME_POSITION) : -1,
+                isLive ? records.buffer.getInt(position + NAME_LENGTH) : -1);
+        long descriptionPosition = writeString(description,
+                isLive ? records.buffer.getLong(position + DESCRIPTION_POSITION) : -1,
+                isLive ? records.buffer.getInt(position + DESCRIPTION_LENGTH) : -1);
+
+        MappedByteBuffer buffer = records.buffer;
+        buffer.putInt(position + DURATION, film.getDuration());
+        buffer.putLong(position + VERSION, film.getVersion());
+        buffer.putLong(position + RELEASE_DATE, film.getReleaseDate().toEpochDay());
+        buffer.putLong(position + MPA_ID, film.getMpa().getId());
+        buffer.putLong(position + GENRES, genreMask);
+        buffer.putLong(position + NAME_POSITION, namePosition);
+        buffer.putLong(position + DESCRIPTION_POSITION, descriptionPosition);
+        buffer.putInt(position + NAME_LENGTH, name == null ? -1 : name.length);
+        buffer.putInt(position + DESCRIPTION_LENGTH, description == null ? -1 : description.length);
+        buffer.putInt(position + STATE, LIVE);
+    }
+
+    private long writeString(byte[] bytes, long oldPosition, int oldLength) {
+
+        if (bytes == null) {
+            return -1;
+        }
+
+        long position = oldPosition;
+        if (bytes.length > oldLength) {
+            position = heapEnd;
+            heap.ensureCapacity(position + bytes.length);
+            heapEnd = position + bytes.length;
+        }
+
+        ByteBuffer view = heap.buffer.duplicate();
+        view.position((int) position);
+        view.put(bytes);
+        heap.buffer.putLong(HEAP_END, heapEnd);
+
+        return position;
+    }
+
+    private long genreMask(Set<Genre> genres) {
+
+        long genreMask = 0;
+        if (genres == null) {
+            return genreMask;
+        }
+
+        for (Genre genre : genres) {
+            if (genre.getId() == null || genre.getId() < 1 || genre.getId() > MAX_GENRE_ID) {
+                throw BadRequestException.builder()
+                        .message(String.format("The mapped films support the genre IDs from 1 to %d, " +
+                                "but the ID is `%d`.", MAX_GENRE_ID, genre.getId()))
+                        .httpStatus(BAD_REQUEST)
+                        .build();
+            }
+            genreMask |= 1L << genre.getId();
+        }
+
+        return genreMask;
+    }
+
+    private void appendLike(long filmId, long signedUserId) {
+
+        ByteBuffer like = ByteBuffer.allocate(LIKE_SIZE)
+                .putLong(filmId)
+                .putLong(signedUserId)
+                .flip();
+        try {
+            synchronized (likeLog) {
+                while (like.hasRemaining()) {
+                    likeLog.write(like);
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Error writing a like of the mapped films.", exception);
+        }
+    }
+
+    /**
+     * Applies the likes log in order, an unlike is logged with the negated user ID. The likes of deleted films
+     * are skipped, a record cut by a crash at the end of the log is dropped.
+     */
+    private long replayLikes() throws IOException {
+
+        long size = likeLog.size() - likeLog.size() % LIKE_SIZE;
+        if (size > 0) {
+            MappedByteBuffer entries = likeLog.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            while (entries.hasRemaining()) {
+                long filmId = entries.getLong();
+                long signedUserId = entries.getLong();
+                Likes filmLikes = likes.get(filmId);
+                if (filmLikes == null) {
+                    continue;
+                }
+                if (signedUserId > 0) {
+                    filmLikes.add(signedUserId);
+                } else {
+                    filmLikes.remove(-signedUserId);
+                }
+            }
+        }
+        likeLog.truncate(size);
+        likeLog.position(size);
+
+        return likes.values().stream()
+                .mapToLong(Likes::count)
+                .sum();
+    }
+
+    private static long checkHeader(MappedFile file, long emptyValue) {
+
+        int magic = file.buffer.getInt(0);
+        if (magic == 0) {
+            file.buffer.putInt(0, MAGIC);
+            file.buffer.putLong(8, emptyValue);
+        } else if (magic != MAGIC) {
+            throw new IllegalStateException(String.format("The file `%s` does not hold mapped films.", file.path));
+        }
+
+        return file.buffer.getLong(8);
+    }
+
+    private static int recordPosition(long filmId) {
+
+        return (int) (HEADER_SIZE + (filmId - 1) * RECORD_SIZE);
+    }
+
+    private static byte[] toBytes(String value) {
+
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A file mapped as a whole. The mapping grows twice at a time up to 2 GB, the limit of one mapping;
+     * readers holding the previous mapping still read the same pages of the file.
+     */
+    private static class MappedFile {
+        private final Path path;
+        private final RandomAccessFile file;
+        private volatile MappedByteBuffer buffer;
+
+        private MappedFile(Path path, RandomAccessFile file) throws IOException {
+            this.path = path;
+            this.file = file;
+            this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, file.length());
+        }
+
+        private static MappedFile open(Path path, long initialSize) throws IOException {
+
+            RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+            if (file.length() < initialSize) {
+                file.setLength(initialSize);
+            }
+
+            return new MappedFile(path, file);
+        }
+
+        private void ensureCapacity(long size) {
+
+            if (size <= buffer.capacity()) {
+                return;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalStateException(String.format("The file `%s` is full.", path));
+            }
+
+            long newSize = Math.min(Math.max(size, 2L * buffer.capacity()), Integer.MAX_VALUE);
+            try {
+                file.setLength(newSize);
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(String.format("Error growing the file `%s`.", path), exception);
+            }
+        }
+
+        private void close() throws IOException {
+
+            buffer.force();
+            file.close();
+        }
+    }
+}
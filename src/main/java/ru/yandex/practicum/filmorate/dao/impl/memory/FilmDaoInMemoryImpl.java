@@ -1,85 +1,482 @@
 package ru.yandex.practicum.filmorate.dao.impl.memory;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.dao.FilmDao;
+import ru.yandex.practicum.filmorate.dao.impl.Likes;
+import ru.yandex.practicum.filmorate.journal.Journal;
+import ru.yandex.practicum.filmorate.journal.Journaled;
+import ru.yandex.practicum.filmorate.journal.Journals;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.Mpa;
 
+import javax.annotation.PostConstruct;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+import static ru.yandex.practicum.filmorate.journal.JournalCodec.*;
+
+/**
+ * The FilmDaoInMemoryImpl class keeps films in concurrent maps and is safe for concurrent requests.
+ * The likes of a film are kept apart from the film in a lock-free sorted set with a counter, so likes
+ * of the same film are added in parallel and a like never waits for likes of other films.
+ * The stored films are never returned, readers get copies with a snapshot of the likes.
+ * <p>
+ * The changes are written to the {@link Journal} created by {@link Journals}, so the films and likes
+ * survive a restart when the journal is switched on. The changes of one film are logged under one
+ * of a fixed number of striped locks to keep their order in the log, a new film is logged before
+ * it becomes visible. A like is ordered only against the likes of the same user for the same film,
+ * so it takes the stripe of the film and user pair and likes of a popular film do not wait for each other.
+ */
 @Repository(value = "filmMemory")
-public class FilmDaoInMemoryImpl implements FilmDao {
+public class FilmDaoInMemoryImpl implements FilmDao, Journaled {
+    private static final int LOCK_STRIPES = 64;
+    private static final byte SAVE = 1;
+    private static final byte UPDATE = 2;
+    private static final byte DELETE = 3;
+    private static final byte LIKE = 4;
+    private static final byte UNLIKE = 5;
+
+    private final ConcurrentMap<Long, Film> films = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Likes> likes = new ConcurrentHashMap<>();
+    private final AtomicLong id = new AtomicLong();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Journal journal;
+
+    public FilmDaoInMemoryImpl() {
+        this(Journal.disabled());
+    }
+
+    @Autowired
+    public FilmDaoInMemoryImpl(Journals journals) {
+        this(journals.create("films"));
+    }
+
+    public FilmDaoInMemoryImpl(Journal journal) {
+        this.journal = journal;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void recover() {
 
-    public static final Map<Long, Film> FILMS = new HashMap<>();
-    private Long id = 0L;
+        journal.recover(this);
+    }
 
     @Override
     public Film save(Film newObject) {
 
-        newObject.setId(generateId());
-        FILMS.put(newObject.getId(), newObject);
+        Long filmId = id.incrementAndGet();
+        Likes filmLikes = new Likes();
+        if (newObject.getLikedUserIds() != null) {
+            newObject.getLikedUserIds().forEach(filmLikes::add);
+        }
+
+        newObject.setId(filmId);
+        newObject.setVersion(0L);
+        Film stored = copy(newObject);
+        journal.append(null, out -> {
+            out.writeByte(SAVE);
+            writeFilm(out, stored);
+            writeIds(out, filmLikes.snapshot());
+        }, () -> {
+            likes.put(filmId, filmLikes);
+            films.put(filmId, stored);
+        });
         return newObject;
     }
 
     @Override
-    public Optional<Film> findById(Long filmId) {
+    public List<Long> saveAll(List<Film> films) {
+
+        return films.stream()
+                .map(film -> save(film).getId())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<Film> findById(Long filmId, FilmView view) {
+
+        return Optional.ofNullable(films.get(filmId)).map(film -> toView(film, view));
+    }
+
+    @Override
+    public List<Film> findAll(FilmView view) {
 
-        return Optional.ofNullable(FILMS.get(filmId));
+        return films.values().stream()
+                .map(film -> toView(film, view))
+                .collect(Collectors.toList());
     }
 
     @Override
-    public List<Film> findAll() {
+    public List<Film> findAll(Long afterId, int limit, FilmView view) {
+
+        long fromId = afterId == null ? 0L : afterId;
 
-        return new ArrayList<>(FILMS.values());
+        return films.values().stream()
+                .filter(film -> film.getId() > fromId)
+                .sorted(Comparator.comparing(Film::getId))
+                .limit(limit)
+                .map(film -> toView(film, view))
+                .collect(Collectors.toList());
     }
 
+    /**
+     * Replaces the film, its likes are kept. The version of the stored film is incremented
+     * by a compare-and-set, so concurrent updates never take locks and an update with a stale version
+     * leaves the stored film as it is.
+     */
     @Override
     public Optional<Film> update(Film updateObject) {
+
         Long id = updateObject.getId();
+        Long version = updateObject.getVersion();
+
+        Film updated = journal.write(lockOf(id), () -> {
+            for (Film stored = films.get(id); stored != null; stored = films.get(id)) {
+                if (version != null && !version.equals(stored.getVersion())) {
+                    return null;
+                }
+
+                Film replacement = copy(updateObject).toBuilder()
+                        .version(stored.getVersion() + 1)
+                        .build();
+                if (films.replace(id, stored, replacement)) {
+                    return replacement;
+                }
+            }
 
-        if (FILMS.containsKey(id)) {
-            FILMS.put(id, updateObject);
-            return Optional.of(updateObject);
+            return null;
+        }, film -> film == null ? null : out -> {
+            out.writeByte(UPDATE);
+            writeFilm(out, film);
+        });
+
+        if (updated == null) {
+            return Optional.empty();
         }
+        updateObject.setVersion(updated.getVersion());
 
-        return Optional.empty();
+        return Optional.of(updateObject);
     }
 
     @Override
     public boolean deleteById(Long filmId) {
 
-        return FILMS.remove(filmId) != null;
+        return journal.write(lockOf(filmId), () -> delete(filmId), isDeleted -> isDeleted ? out -> {
+            out.writeByte(DELETE);
+            writeId(out, filmId);
+        } : null);
     }
 
     @Override
     public boolean isExistsById(Long filmId) {
 
-        return FILMS.containsKey(filmId);
+        return films.containsKey(filmId);
     }
 
+    /**
+     * The users are not known to this DAO, any user ID is accepted and the caller checks the users.
+     */
     @Override
-    public boolean addLike(Long filmId, Long userId) {
+    public boolean isUserChecked() {
 
-        return FILMS.get(filmId).getLikedUserIds().add(userId);
+        return false;
+    }
+
+    @Override
+    public LikeStatus addLike(Long filmId, Long userId) {
+
+        Likes filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            return LikeStatus.FILM_NOT_FOUND;
+        }
+
+        return journal.write(lockOf(filmId, userId),
+                () -> filmLikes.add(userId) ? LikeStatus.OK : LikeStatus.ALREADY_LIKED,
+                status -> status == LikeStatus.OK ? out -> writeLike(out, LIKE, filmId, userId) : null);
+    }
+
+    @Override
+    public void saveLikes(List<Like> addedLikes, List<Like> deletedLikes) {
+
+        addedLikes.forEach(like -> addLike(like.getFilmId(), like.getUserId()));
+        deletedLikes.forEach(like -> deleteLike(like.getFilmId(), like.getUserId()));
     }
 
     @Override
     public List<Film> findPopularFilms(int count) {
 
-        return FILMS.values().stream()
-                .sorted(Comparator.comparingInt(f -> -f.getLikedUserIds().size()))
+        return films.values().stream()
+                .sorted(Comparator.comparingInt((Film film) -> -countLikes(film.getId()))
+                        .thenComparing(Film::getId))
                 .limit(count)
+                .map(film -> toView(film, FilmView.FULL))
                 .collect(Collectors.toList());
     }
 
     @Override
-    public boolean deleteLike(Long filmId, Long userId) {
+    public LikeStatus deleteLike(Long filmId, Long userId) {
+
+        Likes filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            return LikeStatus.FILM_NOT_FOUND;
+        }
+
+        return journal.write(lockOf(filmId, userId),
+                () -> filmLikes.remove(userId) ? LikeStatus.OK : LikeStatus.NOT_LIKED,
+                status -> status == LikeStatus.OK ? out -> writeLike(out, UNLIKE, filmId, userId) : null);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer, FilmView view) {
+
+        films.values().stream()
+                .sorted(Comparator.comparing(Film::getId))
+                .map(film -> toView(film, view))
+                .forEach(consumer);
+    }
+
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        films.keySet().forEach(consumer::accept);
+    }
+
+    @Override
+    public List<Film> findAllByIds(List<Long> filmIds, FilmView view) {
+
+        return filmIds.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(film -> toView(film, view))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Long> findLikes(Long filmId, Long afterUserId, int limit) {
+
+        long fromId = afterUserId == null ? 0L : afterUserId;
+        Likes filmLikes = likes.get(filmId);
+        if (filmLikes == null) {
+            return List.of();
+        }
+
+        return filmLikes.findAfter(fromId, limit);
+    }
+
+    @Override
+    public List<Long> findLikedFilmIds(Long userId) {
+
+        return likes.entrySet().stream()
+                .filter(entry -> entry.getValue().contains(userId))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean isLikeExists(Long filmId, Long userId) {
+
+        Likes filmLikes = likes.get(filmId);
+
+        return filmLikes != null && filmLikes.contains(userId);
+    }
+
+    @Override
+    public Map<Long, Integer> findAllLikeCounts() {
+
+        Map<Long, Integer> likeCounts = new HashMap<>();
+        films.keySet().forEach(filmId -> likeCounts.put(filmId, countLikes(filmId)));
+
+        return likeCounts;
+    }
+
+    /**
+     * Writes the ID counter and then every film with its likes, a film saved meanwhile may be missed,
+     * it is restored from the log.
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+
+        out.writeLong(id.get());
+        for (Film film : films.values()) {
+            Likes filmLikes = likes.get(film.getId());
+            out.writeBoolean(true);
+            writeFilm(out, film);
+            writeIds(out, filmLikes == null ? new LongSortedSet() : filmLikes.snapshot());
+        }
+        out.writeBoolean(false);
+    }
+
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+
+        id.set(in.readLong());
+        while (in.readBoolean()) {
+            restore(readFilm(in), in);
+        }
+    }
+
+    @Override
+    public void replay(DataInput record) throws IOException {
+
+        byte operation = record.readByte();
+        switch (operation) {
+            case SAVE:
+                restore(readFilm(record), record);
+                break;
+            case UPDATE:
+                Film film = readFilm(record);
+                films.computeIfPresent(film.getId(), (filmId, stored) -> film);
+                break;
+            case DELETE:
+                delete(readId(record));
+                break;
+            case LIKE:
+            case UNLIKE:
+                Likes filmLikes = likes.get(readId(record));
+                Long userId = readId(record);
+                if (filmLikes != null && operation == LIKE) {
+                    filmLikes.add(userId);
+                } else if (filmLikes != null) {
+                    filmLikes.remove(userId);
+                }
+                break;
+            default:
+                throw new IOException(String.format("Unknown film journal operation `%d`.", operation));
+        }
+    }
+
+    private boolean delete(Long filmId) {
+
+        boolean isDeleted = films.remove(filmId) != null;
+        likes.remove(filmId);
+
+        return isDeleted;
+    }
+
+    /**
+     * Puts a film read from a snapshot or from the log, the likes follow the film in the input.
+     */
+    private void restore(Film film, DataInput in) throws IOException {
+
+        Likes filmLikes = new Likes();
+        readIds(in, filmLikes::add);
+        likes.put(film.getId(), filmLikes);
+        films.put(film.getId(), film);
+        id.accumulateAndGet(film.getId(), Math::max);
+    }
+
+    private static void writeFilm(DataOutput out, Film film) throws IOException {
+
+        writeId(out, film.getId());
+        writeString(out, film.getName());
+        writeString(out, film.getDescription());
+        writeDate(out, film.getReleaseDate());
+        writeInteger(out, film.getDuration());
+        out.writeBoolean(film.getMpa() != null);
+        if (film.getMpa() != null) {
+            writeId(out, film.getMpa().getId());
+            writeString(out, film.getMpa().getName());
+        }
+        writeId(out, film.getGenres() == null ? null : (long) film.getGenres().size());
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                writeId(out, genre.getId());
+                writeString(out, genre.getName());
+            }
+        }
+        writeId(out, film.getVersion());
+    }
+
+    private static Film readFilm(DataInput in) throws IOException {
+
+        Film.FilmBuilder film = Film.builder()
+                .id(readId(in))
+                .name(readString(in))
+                .description(readString(in))
+                .releaseDate(readDate(in))
+                .duration(readInteger(in));
+        if (in.readBoolean()) {
+            film.mpa(Mpa.builder()
+                    .id(readId(in))
+                    .name(readString(in))
+                    .build());
+        }
+        Long genreCount = readId(in);
+        if (genreCount != null) {
+            Set<Genre> genres = new TreeSet<>(Comparator.comparing(Genre::getId));
+            for (long i = 0; i < genreCount; i++) {
+                genres.add(Genre.builder()
+                        .id(readId(in))
+                        .name(readString(in))
+                        .build());
+            }
+            film.genres(genres);
+        }
+
+        return film.version(readId(in)).build();
+    }
+
+    private static void writeLike(DataOutput out, byte operation, Long filmId, Long userId) throws IOException {
+
+        out.writeByte(operation);
+        writeId(out, filmId);
+        writeId(out, userId);
+    }
+
+    private Object lockOf(Long filmId) {
+
+        return locks[(int) (filmId & (LOCK_STRIPES - 1))];
+    }
+
+    /**
+     * The lock of a like. The likes of different users commute, only the like and the unlike of the same user
+     * must reach the log in the order they were applied. Without the journal no lock is taken at all.
+     */
+    private Object lockOf(Long filmId, Long userId) {
+
+        return locks[(int) ((filmId * 31 + userId) & (LOCK_STRIPES - 1))];
+    }
+
+    private Film toView(Film film, FilmView view) {
+
+        Likes filmLikes = likes.get(film.getId());
+        LongSortedSet likedUserIds = filmLikes == null ? new LongSortedSet() : filmLikes.snapshot();
+
+        return film.toBuilder()
+                .likedUserIds(view == FilmView.SUMMARY ? null : likedUserIds)
+                .likeCount(likedUserIds.size())
+                .build();
+    }
+
+    private int countLikes(Long filmId) {
+
+        Likes filmLikes = likes.get(filmId);
 
-        return FILMS.get(filmId).getLikedUserIds().remove(userId);
+        return filmLikes == null ? 0 : filmLikes.count();
     }
 
-    private Long generateId() {
+    private Film copy(Film film) {
 
-        return ++id;
+        return film.toBuilder()
+                .likedUserIds(null)
+                .likeCount(null)
+                .build();
     }
 }
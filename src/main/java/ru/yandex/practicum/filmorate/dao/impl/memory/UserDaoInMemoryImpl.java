@@ -1,22 +1,93 @@
 package ru.yandex.practicum.filmorate.dao.impl.memory;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.dao.UserDao;
+import ru.yandex.practicum.filmorate.journal.Journal;
+import ru.yandex.practicum.filmorate.journal.Journaled;
+import ru.yandex.practicum.filmorate.journal.Journals;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
+import javax.annotation.PostConstruct;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
+import static ru.yandex.practicum.filmorate.journal.JournalCodec.*;
+
+/**
+ * The UserDaoInMemoryImpl class keeps users in concurrent maps and is safe for concurrent requests.
+ * The friends of a user are kept apart from the user in a lock-free sorted set, readers never take locks.
+ * A friendship changes the sets of both users, so writes of the same pair of users are serialized
+ * by one of a fixed number of striped locks, writes of other pairs mostly take other locks.
+ * The stored users are never returned, readers get copies with a snapshot of the friends.
+ * <p>
+ * The changes are written to the {@link Journal} created by {@link Journals}, so the users and friendships
+ * survive a restart when the journal is switched on. A friendship is logged under the lock of its pair,
+ * an update under the lock of the pair of the user with itself, a new user is logged before it becomes visible.
+ */
 @Repository(value = "userMemory")
-public class UserDaoInMemoryImpl implements UserDao {
-    private static final Map<Long, User> USERS = new HashMap<>();
-    private Long id = 0L;
+public class UserDaoInMemoryImpl implements UserDao, Journaled {
+    private static final int LOCK_STRIPES = 64;
+    private static final byte SAVE = 1;
+    private static final byte UPDATE = 2;
+    private static final byte DELETE = 3;
+    private static final byte FRIEND = 4;
+    private static final byte UNFRIEND = 5;
+
+    private final ConcurrentMap<Long, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ConcurrentSkipListSet<Long>> friends = new ConcurrentHashMap<>();
+    private final AtomicLong id = new AtomicLong();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Journal journal;
+
+    public UserDaoInMemoryImpl() {
+        this(Journal.disabled());
+    }
+
+    @Autowired
+    public UserDaoInMemoryImpl(Journals journals) {
+        this(journals.create("users"));
+    }
+
+    public UserDaoInMemoryImpl(Journal journal) {
+        this.journal = journal;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void recover() {
+
+        journal.recover(this);
+    }
 
     @Override
     public User save(User newObject) {
 
-        newObject.setId(generateId());
-        USERS.put(newObject.getId(), newObject);
+        Long userId = id.incrementAndGet();
+
+        newObject.setId(userId);
+        newObject.setVersion(0L);
+        User stored = copy(newObject);
+        journal.append(null, out -> {
+            out.writeByte(SAVE);
+            writeUser(out, stored);
+        }, () -> {
+            friends.put(userId, new ConcurrentSkipListSet<>());
+            users.put(userId, stored);
+        });
 
         return newObject;
     }
@@ -24,75 +95,366 @@ public class UserDaoInMemoryImpl implements UserDao {
     @Override
     public Optional<User> findById(Long userId) {
 
-        return Optional.ofNullable(USERS.get(userId));
+        return Optional.ofNullable(users.get(userId)).map(this::toView);
     }
 
     @Override
     public List<User> findAll() {
 
-        return new ArrayList<>(USERS.values());
+        return users.values().stream()
+                .map(this::toView)
+                .collect(Collectors.toList());
     }
 
+    @Override
+    public List<User> findAll(Long afterId, int limit) {
+
+        long fromId = afterId == null ? 0L : afterId;
+
+        return users.values().stream()
+                .filter(user -> user.getId() > fromId)
+                .sorted(Comparator.comparing(User::getId))
+                .limit(limit)
+                .map(this::toView)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Replaces the user, its friendships are kept. The version of the stored user is incremented
+     * by a compare-and-set, so concurrent updates never take locks and an update with a stale version
+     * leaves the stored user as it is.
+     */
     @Override
     public Optional<User> update(User updateObject) {
 
         Long id = updateObject.getId();
+        Long version = updateObject.getVersion();
+
+        User updated = journal.write(lockOf(id, id), () -> {
+            for (User stored = users.get(id); stored != null; stored = users.get(id)) {
+                if (version != null && !version.equals(stored.getVersion())) {
+                    return null;
+                }
+
+                User replacement = copy(updateObject).toBuilder()
+                        .version(stored.getVersion() + 1)
+                        .build();
+                if (users.replace(id, stored, replacement)) {
+                    return replacement;
+                }
+            }
 
-        if (USERS.containsKey(id)) {
-            USERS.put(id, updateObject);
-            return Optional.of(updateObject);
+            return null;
+        }, user -> user == null ? null : out -> {
+            out.writeByte(UPDATE);
+            writeUser(out, user);
+        });
+
+        if (updated == null) {
+            return Optional.empty();
         }
+        updateObject.setVersion(updated.getVersion());
 
-        return Optional.empty();
+        return Optional.of(updateObject);
     }
 
+    /**
+     * The friendships of the user are removed under the locks of their pairs, so the deletion is logged
+     * without a lock, a later change of the deleted user does not find it and is not logged.
+     */
     @Override
     public boolean deleteById(Long userId) {
 
-        return USERS.remove(userId) != null;
+        return journal.write(null, () -> delete(userId), isDeleted -> isDeleted ? out -> {
+            out.writeByte(DELETE);
+            writeId(out, userId);
+        } : null);
+    }
+
+    private boolean delete(Long userId) {
+
+        boolean isDeleted = users.remove(userId) != null;
+        Set<Long> friendIds = friends.remove(userId);
+
+        if (friendIds != null) {
+            friendIds.forEach(friendId -> {
+                synchronized (lockOf(userId, friendId)) {
+                    Set<Long> friendFriendIds = friends.get(friendId);
+                    if (friendFriendIds != null) {
+                        friendFriendIds.remove(userId);
+                    }
+                }
+            });
+        }
+
+        return isDeleted;
     }
 
     @Override
     public boolean isExistsById(Long userId) {
 
-        return USERS.containsKey(userId);
+        return users.containsKey(userId);
     }
 
     @Override
     public boolean addFriend(Long userId, Long friendId) {
 
-        USERS.get(userId).getFriends().add(friendId);
-        return USERS.get(friendId).getFriends().add(userId);
+        return journal.write(lockOf(userId, friendId), () -> link(userId, friendId),
+                isAdded -> isAdded ? out -> writeFriendship(out, FRIEND, userId, friendId) : null);
+    }
+
+    /**
+     * A friendship links both users at once, there are no unconfirmed requests.
+     */
+    @Override
+    public boolean isFriendshipMutual() {
+
+        return true;
+    }
+
+    @Override
+    public boolean[] addFriends(List<Friendship> friendships) {
+
+        boolean[] added = new boolean[friendships.size()];
+        for (int i = 0; i < friendships.size(); i++) {
+            Friendship friendship = friendships.get(i);
+            added[i] = addFriend(friendship.getUserId(), friendship.getFriendId());
+        }
+
+        return added;
+    }
+
+    @Override
+    public Set<Long> findExistingIds(Collection<Long> userIds) {
+
+        return userIds.stream()
+                .filter(users::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public List<User> findAllFriends(Long userId) {
 
-        return USERS.get(userId).getFriends().stream()
-                .map(USERS::get)
+        return friendIdsOf(userId).stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(this::toView)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findAllFriends(Long userId, Long afterId, int limit) {
+
+        long fromId = afterId == null ? 0L : afterId;
+
+        return friendIdsOf(userId).tailSet(fromId, false).stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .limit(limit)
+                .map(this::toView)
                 .collect(Collectors.toList());
     }
 
     @Override
     public List<User> findCommonFriends(Long userId, Long otherId) {
 
-        Set<Long> userFriends = USERS.get(userId).getFriends();
+        Set<Long> userFriendIds = friendIdsOf(userId);
+
+        return friendIdsOf(otherId).stream()
+                .filter(userFriendIds::contains)
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(this::toView)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findAllByIds(List<Long> userIds) {
 
-        return USERS.get(otherId).getFriends().stream()
-                .filter(userFriends::contains)
-                .map(USERS::get)
+        return userIds.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .map(this::toView)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public Map<Long, LongSortedSet> findAllFriendIds() {
+
+        Map<Long, LongSortedSet> friendIds = new HashMap<>();
+        friends.forEach((userId, ids) -> {
+            if (!ids.isEmpty()) {
+                friendIds.put(userId, new LongSortedSet(ids));
+            }
+        });
+
+        return friendIds;
+    }
+
     @Override
     public boolean deleteFriend(Long userId, Long friendId) {
 
-        USERS.get(userId).getFriends().remove(friendId);
-        return USERS.get(friendId).getFriends().remove(userId);
+        return journal.write(lockOf(userId, friendId), () -> unlink(userId, friendId),
+                isDeleted -> isDeleted ? out -> writeFriendship(out, UNFRIEND, userId, friendId) : null);
+    }
+
+    @Override
+    public void streamAll(Consumer<User> consumer) {
+
+        users.values().stream()
+                .sorted(Comparator.comparing(User::getId))
+                .map(this::toView)
+                .forEach(consumer);
+    }
+
+    @Override
+    public void streamAllIds(LongConsumer consumer) {
+
+        users.keySet().forEach(consumer::accept);
+    }
+
+    /**
+     * Writes the ID counter and then every user with its friends, a user saved meanwhile may be missed,
+     * it is restored from the log.
+     */
+    @Override
+    public void writeSnapshot(DataOutput out) throws IOException {
+
+        out.writeLong(id.get());
+        for (User user : users.values()) {
+            out.writeBoolean(true);
+            writeUser(out, user);
+            writeIds(out, new LongSortedSet(friendIdsOf(user.getId())));
+        }
+        out.writeBoolean(false);
+    }
+
+    @Override
+    public void readSnapshot(DataInput in) throws IOException {
+
+        id.set(in.readLong());
+        while (in.readBoolean()) {
+            User user = readUser(in);
+            ConcurrentSkipListSet<Long> friendIds = new ConcurrentSkipListSet<>();
+            readIds(in, friendIds::add);
+            restore(user, friendIds);
+        }
+    }
+
+    @Override
+    public void replay(DataInput record) throws IOException {
+
+        byte operation = record.readByte();
+        switch (operation) {
+            case SAVE:
+                restore(readUser(record), new ConcurrentSkipListSet<>());
+                break;
+            case UPDATE:
+                User user = readUser(record);
+                users.computeIfPresent(user.getId(), (userId, stored) -> user);
+                break;
+            case DELETE:
+                delete(readId(record));
+                break;
+            case FRIEND:
+                link(readId(record), readId(record));
+                break;
+            case UNFRIEND:
+                unlink(readId(record), readId(record));
+                break;
+            default:
+                throw new IOException(String.format("Unknown user journal operation `%d`.", operation));
+        }
+    }
+
+    private boolean link(Long userId, Long friendId) {
+
+        synchronized (lockOf(userId, friendId)) {
+            Set<Long> userFriendIds = friends.get(userId);
+            Set<Long> friendFriendIds = friends.get(friendId);
+            if (userFriendIds == null || friendFriendIds == null) {
+                return false;
+            }
+
+            userFriendIds.add(friendId);
+            return friendFriendIds.add(userId);
+        }
+    }
+
+    private boolean unlink(Long userId, Long friendId) {
+
+        synchronized (lockOf(userId, friendId)) {
+            friendIdsOf(userId).remove(friendId);
+            return friendIdsOf(friendId).remove(userId);
+        }
+    }
+
+    private void restore(User user, ConcurrentSkipListSet<Long> friendIds) {
+
+        friends.put(user.getId(), friendIds);
+        users.put(user.getId(), user);
+        id.accumulateAndGet(user.getId(), Math::max);
+    }
+
+    private static void writeUser(DataOutput out, User user) throws IOException {
+
+        writeId(out, user.getId());
+        writeString(out, user.getEmail());
+        writeString(out, user.getLogin());
+        writeString(out, user.getName());
+        writeDate(out, user.getBirthday());
+        writeId(out, user.getVersion());
+    }
+
+    private static User readUser(DataInput in) throws IOException {
+
+        return User.builder()
+                .id(readId(in))
+                .email(readString(in))
+                .login(readString(in))
+                .name(readString(in))
+                .birthday(readDate(in))
+                .version(readId(in))
+                .build();
+    }
+
+    private static void writeFriendship(DataOutput out, byte operation, Long userId, Long friendId)
+            throws IOException {
+
+        out.writeByte(operation);
+        writeId(out, userId);
+        writeId(out, friendId);
+    }
+
+    private ConcurrentSkipListSet<Long> friendIdsOf(Long userId) {
+
+        ConcurrentSkipListSet<Long> friendIds = friends.get(userId);
+
+        return friendIds == null ? new ConcurrentSkipListSet<>() : friendIds;
+    }
+
+    /**
+     * The lock of an unordered pair of users, the same for (a, b) and (b, a).
+     */
+    private Object lockOf(Long userId, Long otherId) {
+
+        long low = Math.min(userId, otherId);
+        long high = Math.max(userId, otherId);
+
+        return locks[(int) ((low * 31 + high) & (LOCK_STRIPES - 1))];
+    }
+
+    private User toView(User user) {
+
+        return user.toBuilder()
+                .friends(new LongSortedSet(friendIdsOf(user.getId())))
+                .build();
     }
 
-    private Long generateId() {
+    private User copy(User user) {
 
-        return ++id;
+        return user.toBuilder()
+                .friends(null)
+                .build();
     }
 }
@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.validation.Marker;
@@ -38,7 +40,12 @@ public class FilmDTO {
     @NotNull(message = "The MPA rating of the film must not be empty.")
     private Mpa mpa;
 
-    private Set<Long> likedUserIds;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LongSortedSet likedUserIds;
+
+    private Integer likeCount;
 
     private Set<Genre> genres;
+
+    private Long version;
 }
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class FilmRankDTO {
+
+    private Long filmId;
+
+    private Long rank;
+
+    private Integer likeCount;
+}
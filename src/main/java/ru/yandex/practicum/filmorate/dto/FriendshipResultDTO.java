@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class FriendshipResultDTO {
+
+    private Long userId;
+
+    private Long friendId;
+
+    private Status status;
+
+    /**
+     * The outcome of importing a friendship.
+     */
+    public enum Status {
+        /**
+         * The friend request is added.
+         */
+        ADDED,
+        /**
+         * The users are already linked by a friend request in either direction.
+         */
+        ALREADY_EXISTS,
+        /**
+         * The same pair of users occurs earlier in the request, in either direction.
+         */
+        DUPLICATE,
+        /**
+         * The user or the friend is not found.
+         */
+        USER_NOT_FOUND,
+        /**
+         * An ID is missing, or the user and the friend are the same user.
+         */
+        INVALID
+    }
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class RecommendationDTO {
+
+    private UserDTO user;
+
+    private Integer mutualFriends;
+}
@@ -2,11 +2,11 @@ package ru.yandex.practicum.filmorate.dto;
 
 import lombok.Builder;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.validation.Marker;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
-import java.util.Set;
 
 import static ru.yandex.practicum.filmorate.constant.UserConstant.EMAIL_REGEX;
 import static ru.yandex.practicum.filmorate.constant.UserConstant.LOGIN_REGEX;
@@ -33,5 +33,7 @@ public class UserDTO {
     @PastOrPresent(message = "The date of birth cannot be in the future.")
     private LocalDate birthday;
 
-    private Set<Long> friends;
+    private LongSortedSet friends;
+
+    private Long version;
 }
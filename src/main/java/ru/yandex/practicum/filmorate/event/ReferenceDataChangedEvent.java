@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.event;
+
+/**
+ * Published after a genre or an MPA rating is created, updated or deleted, films referencing it are changed as well.
+ */
+public class ReferenceDataChangedEvent {
+}
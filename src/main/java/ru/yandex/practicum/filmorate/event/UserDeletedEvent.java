@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Published after a user is deleted. The likes and friendships of the user are removed together with the user,
+ * so films and users that referenced the deleted user are changed as well.
+ * The films the user liked are read before the deletion, the cascade removes their likes unseen.
+ */
+@Getter
+@RequiredArgsConstructor
+public class UserDeletedEvent {
+    private final Long userId;
+    private final List<Long> likedFilmIds;
+}
@@ -0,0 +1,368 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.FilmDao;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.yandex.practicum.filmorate.constant.FilmConstant.FILM_DAO_IMPL;
+
+/**
+ * The FilmPopularityIndex class keeps films ordered by popularity in memory.
+ * Films are ordered by the number of likes in descending order, films with the same number of likes
+ * are ordered by ID. The order is stored in a treap augmented with subtree sizes (an order-statistics tree),
+ * so a like or unlike costs O(log n), the rank of a film is found in O(log n),
+ * and a page of the most popular films is read in O(log n + count).
+ * The index is built from the stored like counters at startup and then kept up to date by the film service.
+ */
+@Slf4j
+@Component
+public class FilmPopularityIndex {
+    private final FilmDao filmDao;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> likesByFilmId = new HashMap<>();
+    private final Random random = new Random();
+    private Node root;
+
+    public FilmPopularityIndex(@Qualifier(value = FILM_DAO_IMPL) FilmDao filmDao) {
+        this.filmDao = filmDao;
+    }
+
+    /**
+     * Builds the index from the like counters of all stored films.
+     */
+    @PostConstruct
+    public void load() {
+
+        Map<Long, Integer> likeCounts = filmDao.findAllLikeCounts();
+        rebuild(likeCounts);
+        log.info("The film popularity index is built, films: {}.", likeCounts.size());
+    }
+
+    /**
+     * The likes of a deleted user are removed by the DB cascade, the films the user liked lose one like each.
+     * Only these films are changed, so concurrent likes of other films are never overwritten by a reload.
+     */
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+
+        event.getLikedFilmIds().forEach(this::decrementLikes);
+    }
+
+    /**
+     * Replaces the content of the index.
+     *
+     * @param likeCounts The number of likes keyed by film ID.
+     */
+    public void rebuild(Map<Long, Integer> likeCounts) {
+
+        lock.writeLock().lock();
+        try {
+            root = null;
+            likesByFilmId.clear();
+            likeCounts.forEach(this::insert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a film without likes to the index, if it is not indexed yet.
+     *
+     * @param filmId The ID of the film.
+     */
+    public void add(long filmId) {
+
+        lock.writeLock().lock();
+        try {
+            if (!likesByFilmId.containsKey(filmId)) {
+                insert(filmId, 0);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a film from the index.
+     *
+     * @param filmId The ID of the film.
+     */
+    public void remove(long filmId) {
+
+        lock.writeLock().lock();
+        try {
+            Integer likes = likesByFilmId.remove(filmId);
+            if (likes != null) {
+                root = erase(root, likes, filmId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Increases the number of likes of the film by one.
+     *
+     * @param filmId The ID of the film.
+     */
+    public void incrementLikes(long filmId) {
+
+        changeLikes(filmId, 1);
+    }
+
+    /**
+     * Decreases the number of likes of the film by one.
+     *
+     * @param filmId The ID of the film.
+     */
+    public void decrementLikes(long filmId) {
+
+        changeLikes(filmId, -1);
+    }
+
+    /**
+     * Retrieves a page of the most popular films.
+     *
+     * @param after The position after which the page starts, or null to start from the most popular film.
+     * @param count The maximum number of films in the page.
+     * @return The entries of the page in popularity order.
+     */
+    public List<Entry> findPage(Entry after, int count) {
+
+        lock.readLock().lock();
+        try {
+            List<Entry> page = new ArrayList<>(Math.min(count, likesByFilmId.size()));
+            collect(root, after, count, page);
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the position of a film in popularity order.
+     *
+     * @param filmId The ID of the film.
+     * @return The rank of the film (starting from 1) and its number of likes, or empty if the film is not indexed.
+     */
+    public Optional<Rank> findRank(long filmId) {
+
+        lock.readLock().lock();
+        try {
+            Integer likes = likesByFilmId.get(filmId);
+            if (likes == null) {
+                return Optional.empty();
+            }
+
+            long rank = 1;
+            Node node = root;
+            while (node != null) {
+                int compare = compare(likes, filmId, node.likes, node.filmId);
+                if (compare < 0) {
+                    node = node.left;
+                } else if (compare > 0) {
+                    rank += size(node.left) + 1;
+                    node = node.right;
+                } else {
+                    rank += size(node.left);
+                    break;
+                }
+            }
+
+            return Optional.of(new Rank(rank, likes));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void changeLikes(long filmId, int delta) {
+
+        lock.writeLock().lock();
+        try {
+            Integer likes = likesByFilmId.get(filmId);
+            if (likes == null) {
+                return;
+            }
+            root = erase(root, likes, filmId);
+            likesByFilmId.remove(filmId);
+            insert(filmId, Math.max(0, likes + delta));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(long filmId, int likes) {
+
+        likesByFilmId.put(filmId, likes);
+        root = insert(root, new Node(filmId, likes, random.nextInt()));
+    }
+
+    private Node insert(Node node, Node item) {
+
+        if (node == null) {
+            return item;
+        }
+
+        if (item.priority > node.priority) {
+            Node[] parts = split(node, item.likes, item.filmId);
+            item.left = parts[0];
+            item.right = parts[1];
+            return update(item);
+        }
+
+        if (compare(item.likes, item.filmId, node.likes, node.filmId) < 0) {
+            node.left = insert(node.left, item);
+        } else {
+            node.right = insert(node.right, item);
+        }
+
+        return update(node);
+    }
+
+    private Node erase(Node node, int likes, long filmId) {
+
+        if (node == null) {
+            return null;
+        }
+
+        int compare = compare(likes, filmId, node.likes, node.filmId);
+        if (compare == 0) {
+            return merge(node.left, node.right);
+        }
+
+        if (compare < 0) {
+            node.left = erase(node.left, likes, filmId);
+        } else {
+            node.right = erase(node.right, likes, filmId);
+        }
+
+        return update(node);
+    }
+
+    /**
+     * Splits the tree into the nodes ordered before the given key and the rest.
+     */
+    private Node[] split(Node node, int likes, long filmId) {
+
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+
+        if (compare(node.likes, node.filmId, likes, filmId) < 0) {
+            Node[] parts = split(node.right, likes, filmId);
+            node.right = parts[0];
+            parts[0] = update(node);
+            return parts;
+        }
+
+        Node[] parts = split(node.left, likes, filmId);
+        node.left = parts[1];
+        parts[1] = update(node);
+        return parts;
+    }
+
+    private Node merge(Node left, Node right) {
+
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private void collect(Node node, Entry after, int count, List<Entry> page) {
+
+        if (node == null || page.size() >= count) {
+            return;
+        }
+
+        if (after != null && compare(node.likes, node.filmId, after.getLikes(), after.getFilmId()) <= 0) {
+            collect(node.right, after, count, page);
+            return;
+        }
+
+        collect(node.left, after, count, page);
+        if (page.size() < count) {
+            page.add(new Entry(node.filmId, node.likes));
+            collect(node.right, after, count, page);
+        }
+    }
+
+    private static Node update(Node node) {
+
+        node.size = size(node.left) + size(node.right) + 1;
+        return node;
+    }
+
+    private static int size(Node node) {
+
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Compares two keys in popularity order: more likes first, then the smaller ID first.
+     */
+    private static int compare(int likes, long filmId, int otherLikes, long otherFilmId) {
+
+        if (likes != otherLikes) {
+            return likes > otherLikes ? -1 : 1;
+        }
+
+        return Long.compare(filmId, otherFilmId);
+    }
+
+    /**
+     * A position in the popularity order: the film ID and the number of likes at the moment of reading.
+     * It is also used as a pagination cursor, which stays valid when films before it gain or lose likes.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Entry {
+        private final long filmId;
+        private final int likes;
+    }
+
+    /**
+     * The rank of a film in popularity order and its number of likes.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Rank {
+        private final long rank;
+        private final int likes;
+    }
+
+    private static class Node {
+        private final long filmId;
+        private final int likes;
+        private final int priority;
+        private int size = 1;
+        private Node left;
+        private Node right;
+
+        private Node(long filmId, int likes, int priority) {
+            this.filmId = filmId;
+            this.likes = likes;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.dao.UserDao;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static ru.yandex.practicum.filmorate.constant.UserConstant.USER_DAO_IMPL;
+
+/**
+ * The FriendGraph class keeps the friend IDs of every user in memory, one sorted primitive array per user.
+ * The friend list of a user is read in O(1), a page of it in O(log n + limit), and the common friends
+ * of two users are found by a merge or galloping intersection of their arrays.
+ * The arrays are never modified: a change replaces the array of the user, so readers do not take locks.
+ * The graph is built from the stored friendships at startup and then kept up to date by the user service.
+ * <p>
+ * A change of a friendship inserts or removes one ID in a copy of the array of the user, without the DB.
+ * The copy is made inside an atomic compute of the map, so concurrent changes of the same user are applied
+ * one after another and none of them is lost. A full load holds the write lock of the graph from the DB read
+ * to the swap, the changes wait for it.
+ */
+@Slf4j
+@Component
+public class FriendGraph {
+    private static final LongSortedSet NO_FRIENDS = new LongSortedSet();
+
+    private final UserDao userDao;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<Long, LongSortedSet> friendIdsByUserId = new ConcurrentHashMap<>();
+
+    public FriendGraph(@Qualifier(value = USER_DAO_IMPL) UserDao userDao) {
+        this.userDao = userDao;
+    }
+
+    /**
+     * Builds the graph from the friendships of all stored users.
+     */
+    @PostConstruct
+    public void load() {
+
+        lock.writeLock().lock();
+        try {
+            Map<Long, LongSortedSet> friendIds = userDao.findAllFriendIds();
+            rebuild(friendIds);
+            log.info("The friend graph is built, users with friends: {}.", friendIds.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The friendships of a deleted user are removed by the DB cascade, so the user is removed from the graph
+     * the same way. The users that added the deleted user are not in its friend list, so every list is probed
+     * by a binary search and only the lists that hold the user are copied.
+     */
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+
+        Long userId = event.getUserId();
+        lock.readLock().lock();
+        try {
+            friendIdsByUserId.remove(userId);
+            friendIdsByUserId.keySet().forEach(friendId -> change(friendId, userId, false));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the content of the graph.
+     *
+     * @param friendIds The friend IDs keyed by user ID.
+     */
+    public void rebuild(Map<Long, LongSortedSet> friendIds) {
+
+        Map<Long, LongSortedSet> loaded = new ConcurrentHashMap<>();
+        friendIds.forEach((userId, ids) -> {
+            if (!ids.isEmpty()) {
+                loaded.put(userId, new LongSortedSet(ids));
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            friendIdsByUserId = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a friend to the list of a user after the user added the friend. The list of the friend is changed
+     * only if the DAO makes friendships mutual, otherwise the friend sees the user after a confirmation.
+     *
+     * @param userId   The ID of the user.
+     * @param friendId The ID of the friend.
+     */
+    public void addFriend(Long userId, Long friendId) {
+
+        lock.readLock().lock();
+        try {
+            change(userId, friendId, true);
+            if (userDao.isFriendshipMutual()) {
+                change(friendId, userId, true);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a friendship from the lists of both users after it was deleted by either of them.
+     *
+     * @param userId   The ID of the user.
+     * @param friendId The ID of the friend.
+     */
+    public void deleteFriend(Long userId, Long friendId) {
+
+        lock.readLock().lock();
+        try {
+            change(userId, friendId, false);
+            change(friendId, userId, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieves the friend IDs of a user.
+     *
+     * @param userId The ID of the user.
+     * @return The friend IDs in ascending order, the set must not be modified.
+     */
+    public LongSortedSet findFriendIds(Long userId) {
+
+        return friendIdsByUserId.getOrDefault(userId, NO_FRIENDS);
+    }
+
+    /**
+     * Retrieves the IDs of the users that have friends.
+     *
+     * @return The user IDs, the set must not be modified.
+     */
+    public Set<Long> findUserIds() {
+
+        return friendIdsByUserId.keySet();
+    }
+
+    /**
+     * Retrieves a page of the friend IDs of a user.
+     *
+     * @param userId  The ID of the user.
+     * @param afterId The friend ID after which the page starts, or null to start from the first friend.
+     * @param limit   The maximum number of friend IDs in the page.
+     * @return The friend IDs in ascending order.
+     */
+    public long[] findFriendIds(Long userId, Long afterId, int limit) {
+
+        return findFriendIds(userId).toLongArray(afterId == null ? 0L : afterId, limit);
+    }
+
+    /**
+     * Retrieves the IDs of the common friends of two users.
+     *
+     * @param userId  The ID of the first user.
+     * @param otherId The ID of the second user.
+     * @return The common friend IDs in ascending order.
+     */
+    public LongSortedSet findCommonFriendIds(Long userId, Long otherId) {
+
+        return findFriendIds(userId).intersection(findFriendIds(otherId));
+    }
+
+    /**
+     * Replaces the list of a user by a copy with the friend ID inserted or removed, an empty list is removed.
+     * An unchanged list is kept as it is.
+     */
+    private void change(Long userId, Long friendId, boolean isAdded) {
+
+        friendIdsByUserId.compute(userId, (id, friendIds) -> {
+            LongSortedSet current = friendIds == null ? NO_FRIENDS : friendIds;
+            if (current.contains(friendId.longValue()) == isAdded) {
+                return friendIds;
+            }
+
+            LongSortedSet changed = new LongSortedSet(current);
+            if (isAdded) {
+                changed.add(friendId.longValue());
+            } else {
+                changed.remove(friendId.longValue());
+            }
+
+            return changed.isEmpty() ? null : changed;
+        });
+    }
+}
@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The FriendRecommender class suggests users that a user may know: the users that are not friends of the user yet,
+ * ranked by the number of mutual friends. Candidates are collected by a two-hop expansion of the friend graph.
+ * The expansion is bounded: only the first `max-friends` friends of the user are expanded, and friends with more than
+ * `max-fan-out` friends of their own (celebrity accounts) are skipped, since they would add a lot of candidates
+ * with a single mutual friend each.
+ * The top `size` recommendations of a user are cached. The cache entry of a user is invalidated when a friendship
+ * of the user changes, the entries of other users that see the change through a mutual friend expire after `ttl`.
+ * The recommendations of all users can be precomputed in parallel on the fork-join pool, at startup if enabled.
+ */
+@Slf4j
+@Component
+public class FriendRecommender {
+    private final FriendGraph friendGraph;
+    private final Cache<Long, List<Recommendation>> recommendations;
+    private final int size;
+    private final int maxFriends;
+    private final int maxFanOut;
+    private final boolean isPrecomputeEnabled;
+
+    public FriendRecommender(FriendGraph friendGraph,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.recommendations.size:100}") int size,
+                             @Value("${filmorate.recommendations.max-friends:1000}") int maxFriends,
+                             @Value("${filmorate.recommendations.max-fan-out:5000}") int maxFanOut,
+                             @Value("${filmorate.recommendations.cache.maximum-size:10000}") long maximumSize,
+                             @Value("${filmorate.recommendations.cache.ttl:10m}") Duration ttl,
+                             @Value("${filmorate.recommendations.precompute:false}") boolean isPrecomputeEnabled) {
+        this.friendGraph = friendGraph;
+        this.size = size;
+        this.maxFriends = maxFriends;
+        this.maxFanOut = maxFanOut;
+        this.isPrecomputeEnabled = isPrecomputeEnabled;
+        this.recommendations = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recommendations, "recommendations");
+    }
+
+    /**
+     * Retrieves the recommendations for a user.
+     *
+     * @param userId The ID of the user.
+     * @param limit  The maximum number of recommendations, at most `size` recommendations are kept per user.
+     * @return The recommendations, the most mutual friends first, then the smaller user ID first.
+     */
+    public List<Recommendation> findRecommendations(long userId, int limit) {
+
+        List<Recommendation> found = recommendations.get(userId, this::compute);
+
+        return found.subList(0, Math.min(limit, found.size()));
+    }
+
+    /**
+     * Drops the cached recommendations of two users after a friendship between them was added or deleted.
+     *
+     * @param userId  The ID of the first user.
+     * @param otherId The ID of the second user.
+     */
+    public void invalidate(long userId, long otherId) {
+
+        recommendations.invalidateAll(List.of(userId, otherId));
+    }
+
+    /**
+     * Drops all cached recommendations, e.g. after a bulk import of friendships.
+     */
+    public void invalidateAll() {
+
+        recommendations.invalidateAll();
+    }
+
+    @EventListener
+    public void onUserDeleted(UserDeletedEvent event) {
+
+        invalidateAll();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+
+        if (isPrecomputeEnabled) {
+            ForkJoinPool.commonPool().execute(this::precomputeAll);
+        }
+    }
+
+    /**
+     * Computes and caches the recommendations of every user that has friends.
+     * The users are split between the threads of the common fork-join pool by a parallel stream.
+     */
+    public void precomputeAll() {
+
+        long start = System.nanoTime();
+        Set<Long> userIds = friendGraph.findUserIds();
+        userIds.parallelStream().forEach(userId -> recommendations.put(userId, compute(userId)));
+        log.info("The recommendations are precomputed, users: {}, time: {} ms.", userIds.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private List<Recommendation> compute(long userId) {
+
+        LongSortedSet friendIds = friendGraph.findFriendIds(userId);
+        Map<Long, Integer> mutualFriends = new HashMap<>();
+
+        for (int i = 0; i < friendIds.size() && i < maxFriends; i++) {
+            LongSortedSet candidateIds = friendGraph.findFriendIds(friendIds.get(i));
+            if (candidateIds.size() > maxFanOut) {
+                continue;
+            }
+            for (int j = 0; j < candidateIds.size(); j++) {
+                long candidateId = candidateIds.get(j);
+                if (candidateId != userId && !friendIds.contains(candidateId)) {
+                    mutualFriends.merge(candidateId, 1, Integer::sum);
+                }
+            }
+        }
+
+        return top(mutualFriends);
+    }
+
+    private List<Recommendation> top(Map<Long, Integer> mutualFriends) {
+
+        Comparator<Recommendation> order = Comparator.comparingInt(Recommendation::getMutualFriends).reversed()
+                .thenComparingLong(Recommendation::getUserId);
+        PriorityQueue<Recommendation> worstFirst = new PriorityQueue<>(size + 1, order.reversed());
+
+        mutualFriends.forEach((candidateId, count) -> {
+            worstFirst.add(new Recommendation(candidateId, count));
+            if (worstFirst.size() > size) {
+                worstFirst.poll();
+            }
+        });
+
+        List<Recommendation> result = new ArrayList<>(worstFirst);
+        result.sort(order);
+
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * A recommended user and the number of mutual friends with the user the recommendation is made for.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Recommendation {
+        private final long userId;
+        private final int mutualFriends;
+    }
+}
@@ -0,0 +1,549 @@
+package ru.yandex.practicum.filmorate.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The Journal class makes an in-memory store durable with a write-ahead log and snapshots.
+ * <p>
+ * A change of the store is applied in memory and its record is queued for the log under the lock of the changed
+ * key, so the records of one key are logged in the order of the changes. The log is written by one thread,
+ * which takes all the queued records, writes them and forces the file once for all of them (group commit).
+ * The writer of a change waits until its record is forced. If `fsync` is off, the writer does not wait
+ * and the records reach the disk through the page cache.
+ * <p>
+ * A snapshot starts a new segment of the log and then writes the state of the store while the writers go on,
+ * the writers are paused only while the segment is switched. The records of the new segment may already be
+ * in the snapshot, they set absolute values, so replaying them again gives the same state.
+ * The older segments are deleted once the snapshot is on the disk.
+ * <p>
+ * On startup the latest snapshot is loaded and the segments written after it are replayed in order.
+ * A record cut by a crash at the end of the last segment is dropped.
+ */
+@Slf4j
+public class Journal {
+    private static final int MAGIC = 0x4A524E31;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(.+)-(\\d{12})\\.wal");
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final String name;
+    private final Path directory;
+    private final boolean isFsync;
+    private final ReentrantReadWriteLock rotation = new ReentrantReadWriteLock();
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private Journaled store;
+    private long segment;
+    private Thread writer;
+    private volatile boolean isClosed;
+
+    Journal(Path directory, String name, boolean isFsync) {
+        this.directory = directory;
+        this.name = name;
+        this.isFsync = isFsync;
+    }
+
+    /**
+     * A journal that only applies the changes, for a store that is not persisted.
+     */
+    public static Journal disabled() {
+
+        return new Journal(null, null, false);
+    }
+
+    public boolean isEnabled() {
+
+        return directory != null;
+    }
+
+    /**
+     * Writes one record of a change.
+     */
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Applies a change to the store and logs its record.
+     *
+     * @param lock   The lock of the changed key, or null if the change does not depend on other changes.
+     * @param change The change, it returns the result of the store method.
+     * @param record The record of the change made, or null if the change did not change the store.
+     * @param <T>    The type of the result.
+     * @return The result of the change.
+     * @throws UncheckedIOException if the record cannot be written, the change stays in memory.
+     */
+    public <T> T write(Object lock, Supplier<T> change, Function<T, RecordWriter> record) {
+
+        if (!isEnabled()) {
+            return change.get();
+        }
+
+        List<T> result = new ArrayList<>(1);
+        commit(lock, () -> {
+            result.add(change.get());
+            return enqueue(record.apply(result.get(0)));
+        });
+
+        return result.get(0);
+    }
+
+    /**
+     * Logs the record of a change and then applies the change, for a change that must not be seen
+     * by other changes before it is logged (e.g. a new film, which can be liked as soon as it is stored).
+     *
+     * @param lock   The lock of the changed key, or null if the change does not depend on other changes.
+     * @param record The record of the change.
+     * @param change The change.
+     * @throws UncheckedIOException if the record cannot be written, the change stays in memory.
+     */
+    public void append(Object lock, RecordWriter record, Runnable change) {
+
+        if (!isEnabled()) {
+            change.run();
+            return;
+        }
+
+        commit(lock, () -> {
+            CompletableFuture<Void> written = enqueue(record);
+            change.run();
+            return written;
+        });
+    }
+
+    /**
+     * Loads the latest snapshot and replays the log into the empty store, then opens a new segment.
+     *
+     * @param store The store.
+     */
+    public synchronized void recover(Journaled store) {
+
+        if (!isEnabled()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        this.store = store;
+        try {
+            Files.createDirectories(directory);
+            Path snapshot = snapshotPath();
+            long firstSegment = Files.exists(snapshot) ? readSnapshot(snapshot) : 1L;
+
+            List<Long> segments = findSegments();
+            long lastSegment = segments.isEmpty() ? 0L : segments.get(segments.size() - 1);
+            long records = 0;
+            for (Long number : segments) {
+                if (number < firstSegment) {
+                    Files.delete(segmentPath(number));
+                } else {
+                    records += replay(number, number == lastSegment);
+                }
+            }
+
+            segment = Math.max(lastSegment, firstSegment - 1) + 1;
+            FileChannel channel = openSegment(segment);
+            writer = new Thread(() -> writeLoop(channel), "journal-" + name);
+            writer.setDaemon(true);
+            writer.start();
+
+            log.info("The journal `{}` is recovered: snapshot {}, {} records replayed, {} ms.", name,
+                    Files.exists(snapshot) ? "loaded" : "absent", records, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(String.format("Error recovering the journal `%s`.", name), exception);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the store without stopping the writers and deletes the segments it replaces.
+     * A failed snapshot keeps the log as it is.
+     */
+    public synchronized void snapshot() {
+
+        if (!isEnabled() || isClosed || store == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long nextSegment;
+        Entry rotate;
+        rotation.writeLock().lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+            nextSegment = ++segment;
+            rotate = new Entry(null, nextSegment);
+            queue.add(rotate);
+        } finally {
+            rotation.writeLock().unlock();
+        }
+
+        try {
+            await(rotate.written);
+            writeSnapshot(nextSegment);
+            for (Long number : findSegments()) {
+                if (number < nextSegment) {
+                    Files.delete(segmentPath(number));
+                }
+            }
+            log.info("The journal `{}` snapshot is written, the log starts from segment {}, {} ms.", name,
+                    nextSegment, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException exception) {
+            log.error("Error writing the snapshot of the journal `{}`.", name, exception);
+        }
+    }
+
+    /**
+     * Writes the queued records and stops the writer thread, later changes are rejected.
+     */
+    public void close() {
+
+        if (!isEnabled() || writer == null) {
+            return;
+        }
+
+        Entry stop = new Entry(null, -1);
+        rotation.writeLock().lock();
+        try {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            queue.add(stop);
+        } finally {
+            rotation.writeLock().unlock();
+        }
+
+        await(stop.written);
+    }
+
+    /**
+     * Runs a change that queues its record, a snapshot never starts a new segment in the middle of it.
+     * The writer waits for the record out of the lock, so the changes of the same key are batched.
+     */
+    private void commit(Object lock, Supplier<CompletableFuture<Void>> change) {
+
+        CompletableFuture<Void> written;
+        rotation.readLock().lock();
+        try {
+            if (lock == null) {
+                written = change.get();
+            } else {
+                synchronized (lock) {
+                    written = change.get();
+                }
+            }
+        } finally {
+            rotation.readLock().unlock();
+        }
+
+        if (isFsync) {
+            await(written);
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(RecordWriter record) {
+
+        if (record == null) {
+            return DONE;
+        }
+        if (isClosed) {
+            throw new IllegalStateException(String.format("The journal `%s` is closed.", name));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            record.write(new DataOutputStream(bytes));
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+
+        Entry entry = new Entry(bytes.toByteArray(), 0);
+        queue.add(entry);
+
+        return entry.written;
+    }
+
+    /**
+     * Writes the queued records in batches, one force per batch. A record is framed by its length
+     * and its checksum, so a record cut by a crash is recognized on recovery.
+     */
+    private void writeLoop(FileChannel initialChannel) {
+
+        FileChannel channel = initialChannel;
+        DataOutputStream out = segmentStream(channel);
+        CRC32 crc = new CRC32();
+        List<Entry> batch = new ArrayList<>();
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch);
+
+            boolean isStopped = false;
+            try {
+                for (Entry entry : batch) {
+                    if (entry.record != null) {
+                        crc.reset();
+                        crc.update(entry.record);
+                        out.writeInt(entry.record.length);
+                        out.writeInt((int) crc.getValue());
+                        out.write(entry.record);
+                    } else {
+                        out.flush();
+                        channel.force(false);
+                        if (entry.segment < 0) {
+                            channel.close();
+                            isStopped = true;
+                        } else {
+                            channel.close();
+                            channel = openSegment(entry.segment);
+                            out = segmentStream(channel);
+                        }
+                    }
+                }
+                if (!isStopped) {
+                    out.flush();
+                    if (isFsync) {
+                        channel.force(false);
+                    }
+                }
+                batch.forEach(entry -> entry.written.complete(null));
+            } catch (IOException exception) {
+                log.error("Error writing the journal `{}`.", name, exception);
+                UncheckedIOException failure = new UncheckedIOException(
+                        String.format("Error writing the journal `%s`.", name), exception);
+                batch.forEach(entry -> entry.written.completeExceptionally(failure));
+            }
+            batch.clear();
+
+            if (isStopped) {
+                return;
+            }
+        }
+    }
+
+    private long readSnapshot(Path snapshot) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size() - Long.BYTES;
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            CRC32 crc = new CRC32();
+            for (long position = 0; position < size; ) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                crc.update(buffer.flip());
+                position += read;
+            }
+            ByteBuffer stored = ByteBuffer.allocate(Long.BYTES);
+            channel.read(stored, size);
+            if (size < 0 || stored.flip().getLong() != crc.getValue()) {
+                throw new IllegalStateException(String.format("The snapshot `%s` is corrupted.", snapshot));
+            }
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(channel.position(0)), 1 << 16));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException(String.format("The file `%s` is not a snapshot.", snapshot));
+            }
+            long firstSegment = in.readLong();
+            store.readSnapshot(in);
+
+            return firstSegment;
+        }
+    }
+
+    private void writeSnapshot(long firstSegment) throws IOException {
+
+        Path temp = directory.resolve(name + ".snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new ChecksumStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeLong(firstSegment);
+            store.writeSnapshot(out);
+            out.flush();
+
+            ByteBuffer checksum = ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue()).flip();
+            while (checksum.hasRemaining()) {
+                channel.write(checksum);
+            }
+            channel.force(true);
+        }
+
+        Files.move(temp, snapshotPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Replays the records of a segment. A broken record ends the replay: at the end of the last segment
+     * it is the trace of a crash and is cut off, anywhere else the log is damaged.
+     */
+    private long replay(long number, boolean isLast) throws IOException {
+
+        Path path = segmentPath(number);
+        long records = 0;
+        long position = 0;
+        long size = Files.size(path);
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (position < size) {
+                byte[] record = readRecord(in, size - position, crc);
+                if (record == null) {
+                    break;
+                }
+                store.replay(new DataInputStream(new ByteArrayInputStream(record)));
+                position += 2 * Integer.BYTES + record.length;
+                records++;
+            }
+        }
+
+        if (position < size) {
+            if (!isLast) {
+                throw new IllegalStateException(String.format("The journal segment `%s` is damaged at %d.",
+                        path, position));
+            }
+            log.warn("The journal segment `{}` is cut at {} of {} bytes, the last record was not written whole.",
+                    path, position, size);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+            }
+        }
+
+        return records;
+    }
+
+    private static byte[] readRecord(DataInputStream in, long remaining, CRC32 crc) throws IOException {
+
+        if (remaining < 2 * Integer.BYTES) {
+            return null;
+        }
+
+        int length = in.readInt();
+        int checksum = in.readInt();
+        if (length < 0 || length > remaining - 2 * Integer.BYTES) {
+            return null;
+        }
+
+        byte[] record = new byte[length];
+        in.readFully(record);
+        crc.reset();
+        crc.update(record);
+
+        return (int) crc.getValue() == checksum ? record : null;
+    }
+
+    private List<Long> findSegments() throws IOException {
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> SEGMENT_NAME.matcher(path.getFileName().toString()))
+                    .filter(matcher -> matcher.matches() && matcher.group(1).equals(name))
+                    .map(matcher -> Long.parseLong(matcher.group(2)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static DataOutputStream segmentStream(FileChannel channel) {
+
+        return new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    private Path segmentPath(long number) {
+
+        return directory.resolve(String.format("%s-%012d.wal", name, number));
+    }
+
+    private Path snapshotPath() {
+
+        return directory.resolve(name + ".snapshot");
+    }
+
+    private static void await(CompletableFuture<Void> written) {
+
+        try {
+            written.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * A queued record, or a command for the writer thread: switch to the given segment, or stop if it is negative.
+     */
+    private static class Entry {
+        private final byte[] record;
+        private final long segment;
+        private final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        private Entry(byte[] record, long segment) {
+            this.record = record;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * Computes the checksum of the bytes passing to the file.
+     */
+    private static class ChecksumStream extends FilterOutputStream {
+        private final CRC32 crc;
+
+        private ChecksumStream(OutputStream out, CRC32 crc) {
+            super(out);
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+
+            crc.update(b);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            crc.update(b, off, len);
+            out.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.yandex.practicum.filmorate.journal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.function.LongConsumer;
+
+/**
+ * The JournalCodec class provides utility methods for writing nullable values and sorted ID sets
+ * in the compact binary form of the journal records and snapshots.
+ */
+public class JournalCodec {
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a nullable non-negative number, e.g. an ID, in one byte per 7 bits.
+     */
+    public static void writeId(DataOutput out, Long value) throws IOException {
+
+        writeVarLong(out, value == null ? 0 : value + 1);
+    }
+
+    public static Long readId(DataInput in) throws IOException {
+
+        long value = readVarLong(in);
+
+        return value == 0 ? null : value - 1;
+    }
+
+    public static void writeInteger(DataOutput out, Integer value) throws IOException {
+
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    public static Integer readInteger(DataInput in) throws IOException {
+
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    public static void writeDate(DataOutput out, LocalDate value) throws IOException {
+
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochDay());
+        }
+    }
+
+    public static LocalDate readDate(DataInput in) throws IOException {
+
+        return in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    }
+
+    /**
+     * Writes IDs in ascending order as the differences between neighbours, a set of close IDs
+     * takes one or two bytes per ID. The collection must not change while it is written.
+     *
+     * @param out The output.
+     * @param ids The IDs in ascending order.
+     */
+    public static void writeIds(DataOutput out, Collection<Long> ids) throws IOException {
+
+        writeVarLong(out, ids.size());
+        long previous = 0;
+        for (Long id : ids) {
+            writeVarLong(out, id - previous);
+            previous = id;
+        }
+    }
+
+    public static void readIds(DataInput in, LongConsumer consumer) throws IOException {
+
+        long count = readVarLong(in);
+        long id = 0;
+        for (long i = 0; i < count; i++) {
+            id += readVarLong(in);
+            consumer.accept(id);
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            out.writeByte((int) ((rest & 0x7F) | 0x80));
+            rest >>>= 7;
+        }
+        out.writeByte((int) rest);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte part = in.readByte();
+            value |= (long) (part & 0x7F) << shift;
+            if ((part & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("The variable-length number is too long.");
+    }
+}
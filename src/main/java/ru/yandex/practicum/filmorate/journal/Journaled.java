@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.journal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The Journaled interface is implemented by an in-memory store made durable by a {@link Journal}.
+ * A record of the log must set an absolute value (e.g. the fields of a film, the presence of a like),
+ * so a change that is both in a snapshot and in the log gives the same state when it is replayed.
+ *
+ * @see Journal
+ */
+public interface Journaled {
+
+    /**
+     * Writes the whole state of the store. It is called while the store is changed by other threads,
+     * so a change made meanwhile may or may not be written.
+     *
+     * @param out The snapshot.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    void writeSnapshot(DataOutput out) throws IOException;
+
+    /**
+     * Replaces the state of the empty store with the state written by {@link #writeSnapshot}.
+     *
+     * @param in The snapshot.
+     * @throws IOException if the snapshot cannot be read.
+     */
+    void readSnapshot(DataInput in) throws IOException;
+
+    /**
+     * Applies one record of the log without logging it again.
+     *
+     * @param record The record.
+     * @throws IOException if the record cannot be read.
+     */
+    void replay(DataInput record) throws IOException;
+}
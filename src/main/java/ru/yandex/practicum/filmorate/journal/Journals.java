@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Journals class creates the journals of the in-memory DAOs. It is switched on by
+ * `filmorate.memory.journal.enabled`, otherwise the created journals only apply the changes.
+ * The journals are written to `filmorate.memory.journal.directory`, a snapshot of every journal is taken
+ * each `snapshot-interval` and once more when the application stops. With `fsync` off a change is
+ * acknowledged before it is forced to the disk and may be lost if the machine fails.
+ */
+@Slf4j
+@Component
+public class Journals {
+    private final boolean isEnabled;
+    private final Path directory;
+    private final boolean isFsync;
+    private final Duration snapshotInterval;
+    private final List<Journal> journals = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    @Autowired
+    public Journals(@Value("${filmorate.memory.journal.enabled:false}") boolean isEnabled,
+                    @Value("${filmorate.memory.journal.directory:./db/journal}") String directory,
+                    @Value("${filmorate.memory.journal.fsync:true}") boolean isFsync,
+                    @Value("${filmorate.memory.journal.snapshot-interval:10m}") Duration snapshotInterval) {
+        this.isEnabled = isEnabled;
+        this.directory = Path.of(directory);
+        this.isFsync = isFsync;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Creates the journal of a store, the store recovers from it by {@link Journal#recover}.
+     *
+     * @param name The name of the store, it prefixes the journal files.
+     * @return The journal.
+     */
+    public synchronized Journal create(String name) {
+
+        if (!isEnabled) {
+            return Journal.disabled();
+        }
+
+        Journal journal = new Journal(directory, name, isFsync);
+        journals.add(journal);
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> journals.forEach(Journal::snapshot),
+                    snapshotInterval.toMillis(), snapshotInterval.toMillis(), TimeUnit.MILLISECONDS);
+            log.info("The in-memory DAOs are journaled to `{}`, fsync: {}, snapshot interval: {}.",
+                    directory.toAbsolutePath(), isFsync, snapshotInterval);
+        }
+
+        return journal;
+    }
+
+    /**
+     * Stops the scheduled snapshots, then takes the last snapshot of every journal and closes it,
+     * so the next start does not replay the log.
+     */
+    @PreDestroy
+    public synchronized void close() throws InterruptedException {
+
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("The journal snapshot did not finish in 30 seconds.");
+        }
+        for (Journal journal : journals) {
+            journal.snapshot();
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.mapper;
+
+import org.mapstruct.Mapper;
+import ru.yandex.practicum.filmorate.dto.FriendshipDTO;
+import ru.yandex.practicum.filmorate.model.Friendship;
+
+/**
+ * The FriendshipMapper interface represents a mapper for converting Friendship entities to FriendshipDTOs
+ * and vice versa.
+ *
+ * @see GenericMapper
+ */
+@Mapper(componentModel = "spring")
+public interface FriendshipMapper extends GenericMapper<Friendship, FriendshipDTO> {
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.Builder;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 
 import java.time.LocalDate;
 import java.util.Set;
@@ -16,6 +17,8 @@ public class Film {
     private LocalDate releaseDate;
     private Integer duration;
     private Mpa mpa;
-    private Set<Long> likedUserIds;
+    private LongSortedSet likedUserIds;
+    private Integer likeCount;
     private Set<Genre> genres;
+    private Long version;
 }
\ No newline at end of file
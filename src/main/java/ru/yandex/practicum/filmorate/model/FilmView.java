@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * The FilmView enum defines how much of a film is read and returned.
+ * FULL contains the IDs of the users who liked the film, SUMMARY contains only the number of likes
+ * and skips reading the likes.
+ */
+public enum FilmView {
+    SUMMARY,
+    FULL
+}
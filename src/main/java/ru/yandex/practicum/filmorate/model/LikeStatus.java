@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+/**
+ * The LikeStatus enum is the result of adding or removing a like.
+ * OK means the like was added or removed, ALREADY_LIKED and NOT_LIKED mean there was nothing to change,
+ * the other values name what is missing.
+ */
+public enum LikeStatus {
+    OK,
+    ALREADY_LIKED,
+    NOT_LIKED,
+    FILM_NOT_FOUND,
+    USER_NOT_FOUND,
+    FILM_AND_USER_NOT_FOUND
+}
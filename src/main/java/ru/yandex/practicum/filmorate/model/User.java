@@ -2,9 +2,9 @@ package ru.yandex.practicum.filmorate.model;
 
 import lombok.Builder;
 import lombok.Data;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 
 import java.time.LocalDate;
-import java.util.Set;
 
 @Data
 @Builder(toBuilder = true)
@@ -15,5 +15,6 @@ public class User {
     private String login;
     private String name;
     private LocalDate birthday;
-    private Set<Long> friends;
+    private LongSortedSet friends;
+    private Long version;
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package ru.yandex.practicum.filmorate.service;
 
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.FilmRankDTO;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
+import ru.yandex.practicum.filmorate.model.FilmView;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The FilmService interface represents a service for managing films.
@@ -29,6 +33,69 @@ public interface FilmService extends GenericService<FilmDTO, Long> {
      */
     List<FilmDTO> getPopularFilms(String count);
 
+    /**
+     * Retrieves a page of popular films.
+     *
+     * @param count The number of popular films to retrieve as a string.
+     * @param after The cursor returned with the previous page, or null to start from the most popular film.
+     * @param view  The view of the films.
+     * @return The page of FilmDTO objects and the cursor of the next page.
+     */
+    PageDTO<FilmDTO> getPopularFilms(String count, String after, FilmView view);
+
+    /**
+     * Retrieves a film by its ID.
+     *
+     * @param filmId The ID of the film.
+     * @param view   The view of the film.
+     * @return The FilmDTO object.
+     */
+    FilmDTO getById(Long filmId, FilmView view);
+
+    /**
+     * Retrieves all films.
+     *
+     * @param view The view of the films.
+     * @return A list of FilmDTO objects.
+     */
+    List<FilmDTO> getAll(FilmView view);
+
+    /**
+     * Retrieves a page of films ordered by ID.
+     *
+     * @param afterId The ID after which the page starts, or null to start from the first film.
+     * @param limit   The maximum number of films in the page.
+     * @param view    The view of the films.
+     * @return A list of FilmDTO objects.
+     */
+    List<FilmDTO> getAll(Long afterId, int limit, FilmView view);
+
+    /**
+     * Retrieves a page of the IDs of the users who liked the film, ordered by user ID.
+     *
+     * @param filmId      The ID of the film.
+     * @param afterUserId The user ID after which the page starts, or null to start from the first user.
+     * @param limit       The maximum number of user IDs in the page.
+     * @return A list of user IDs.
+     */
+    List<Long> getLikes(Long filmId, Long afterUserId, int limit);
+
+    /**
+     * Creates several films at once, either all of them or none.
+     *
+     * @param filmDTOs The films to be created.
+     * @return The IDs assigned to the films, in the order of the given films.
+     */
+    List<Long> createAll(List<FilmDTO> filmDTOs);
+
+    /**
+     * Retrieves the position of a film in the list of popular films.
+     *
+     * @param filmId The ID of the film.
+     * @return The rank of the film, starting from 1, and its number of likes.
+     */
+    FilmRankDTO getRank(Long filmId);
+
     /**
      * Deletes a previously liked film by the given film ID and user ID.
      *
@@ -36,4 +103,12 @@ public interface FilmService extends GenericService<FilmDTO, Long> {
      * @param userId The ID of the user who unlikes the film.
      */
     void deleteLike(Long filmId, Long userId);
+
+    /**
+     * Passes all films ordered by ID to the consumer one by one, without collecting them into a list.
+     *
+     * @param consumer The consumer that receives the films.
+     * @param view     The view of the films.
+     */
+    void streamAll(Consumer<FilmDTO> consumer, FilmView view);
 }
@@ -33,6 +33,15 @@ public interface GenericService<T, ID> {
      */
     List<T> getAll();
 
+    /**
+     * Retrieves a page of entities ordered by identifier.
+     *
+     * @param afterId The identifier after which the page starts, or null to start from the first entity.
+     * @param limit   The maximum number of entities in the page.
+     * @return A list containing the entities of the page.
+     */
+    List<T> getAll(ID afterId, int limit);
+
     /**
      * Updates an entity.
      *
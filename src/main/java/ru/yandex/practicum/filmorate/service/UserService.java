@@ -1,8 +1,12 @@
 package ru.yandex.practicum.filmorate.service;
 
+import ru.yandex.practicum.filmorate.dto.FriendshipDTO;
+import ru.yandex.practicum.filmorate.dto.FriendshipResultDTO;
+import ru.yandex.practicum.filmorate.dto.RecommendationDTO;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The UserService interface represents a service for managing users.
@@ -21,6 +25,15 @@ public interface UserService extends GenericService<UserDTO, Long> {
      */
     void addFriend(Long id, Long friendId);
 
+    /**
+     * Adds many friend requests at once. Invalid, duplicate and already existing friend requests are skipped
+     * without failing the rest.
+     *
+     * @param friendshipDTOs The friend requests to be added.
+     * @return The result of every friend request, in the given order.
+     */
+    List<FriendshipResultDTO> addFriends(List<FriendshipDTO> friendshipDTOs);
+
     /**
      * Retrieves a list of all friends for the user with the specified ID.
      *
@@ -29,6 +42,16 @@ public interface UserService extends GenericService<UserDTO, Long> {
      */
     List<UserDTO> getAllFriends(Long id);
 
+    /**
+     * Retrieves a page of friends for the user with the specified ID.
+     *
+     * @param id      The ID of the user.
+     * @param afterId The friend ID after which the page starts, or null to start from the first friend.
+     * @param limit   The maximum number of friends in the page.
+     * @return A list of UserDTO objects representing the user's friends.
+     */
+    List<UserDTO> getAllFriends(Long id, Long afterId, int limit);
+
     /**
      * Deletes a friend from the user with the specified ID.
      *
@@ -38,6 +61,15 @@ public interface UserService extends GenericService<UserDTO, Long> {
      */
     List<UserDTO> getCommonFriends(Long id, Long otherId);
 
+    /**
+     * Retrieves the users that the user with the specified ID may know, ranked by the number of mutual friends.
+     *
+     * @param id    The ID of the user.
+     * @param limit The maximum number of recommended users.
+     * @return A list of RecommendationDTO objects with the recommended users and their number of mutual friends.
+     */
+    List<RecommendationDTO> getRecommendations(Long id, int limit);
+
     /**
      * Deletes a friend from the user with the specified ID.
      *
@@ -45,4 +77,11 @@ public interface UserService extends GenericService<UserDTO, Long> {
      * @param friendId The ID of the friend to be deleted.
      */
     void deleteFriendById(Long id, Long friendId);
+
+    /**
+     * Passes all users ordered by ID to the consumer one by one, without collecting them into a list.
+     *
+     * @param consumer The consumer that receives the users.
+     */
+    void streamAll(Consumer<UserDTO> consumer);
 }
@@ -6,20 +6,31 @@ import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.FilmDao;
 import ru.yandex.practicum.filmorate.dao.UserDao;
 import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.dto.FilmRankDTO;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
 import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmPopularityIndex;
 import ru.yandex.practicum.filmorate.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.utils.ValidatorUtils;
 import ru.yandex.practicum.filmorate.validation.Marker;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static ru.yandex.practicum.filmorate.constant.FilmConstant.FILM_DAO_IMPL;
 import static ru.yandex.practicum.filmorate.constant.UserConstant.USER_DAO_IMPL;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.FILM;
 
 @Service
 public class FilmServiceImpl implements FilmService {
@@ -27,14 +38,20 @@ public class FilmServiceImpl implements FilmService {
     private final FilmDao filmDao;
     private final UserDao userDao;
     private final FilmMapper mapper;
+    private final FilmPopularityIndex popularityIndex;
+    private final EntityVersions versions;
 
     @Autowired
     public FilmServiceImpl(@Qualifier(value = FILM_DAO_IMPL) FilmDao filmDao,
                            @Qualifier(value = USER_DAO_IMPL) UserDao userDao,
-                           FilmMapper mapper) {
+                           FilmMapper mapper,
+                           FilmPopularityIndex popularityIndex,
+                           EntityVersions versions) {
         this.filmDao = filmDao;
         this.userDao = userDao;
         this.mapper = mapper;
+        this.popularityIndex = popularityIndex;
+        this.versions = versions;
     }
 
     @Override
@@ -42,13 +59,35 @@ public class FilmServiceImpl implements FilmService {
 
         ValidatorUtils.validate(filmDTO, Marker.OnCreate.class);
 
-        return mapper.toDTO(filmDao.save(mapper.toEntity(filmDTO)));
+        FilmDTO createdFilm = mapper.toDTO(filmDao.save(mapper.toEntity(filmDTO)));
+        popularityIndex.add(createdFilm.getId());
+        versions.touch(FILM, createdFilm.getId());
+
+        return createdFilm;
+    }
+
+    @Override
+    public List<Long> createAll(List<FilmDTO> filmDTOs) {
+
+        ValidatorUtils.validateAll(filmDTOs, Marker.OnCreate.class);
+
+        List<Long> filmIds = filmDao.saveAll(mapper.toEntities(filmDTOs));
+        filmIds.forEach(popularityIndex::add);
+        filmIds.forEach(filmId -> versions.touch(FILM, filmId));
+
+        return filmIds;
     }
 
     @Override
     public FilmDTO getById(Long filmId) {
 
-        return mapper.toDTO(filmDao.findById(filmId)
+        return getById(filmId, FilmView.FULL);
+    }
+
+    @Override
+    public FilmDTO getById(Long filmId, FilmView view) {
+
+        return mapper.toDTO(filmDao.findById(filmId, view)
                 .orElseThrow(() -> NotFoundException.builder()
                         .message(String.format("The film with the ID - `%d` was not found.", filmId))
                         .httpStatus(NOT_FOUND)
@@ -58,7 +97,44 @@ public class FilmServiceImpl implements FilmService {
     @Override
     public List<FilmDTO> getAll() {
 
-        return mapper.toDTOs(filmDao.findAll());
+        return getAll(FilmView.FULL);
+    }
+
+    @Override
+    public List<FilmDTO> getAll(FilmView view) {
+
+        return mapper.toDTOs(filmDao.findAll(view));
+    }
+
+    @Override
+    public List<FilmDTO> getAll(Long afterId, int limit) {
+
+        return getAll(afterId, limit, FilmView.FULL);
+    }
+
+    @Override
+    public List<FilmDTO> getAll(Long afterId, int limit, FilmView view) {
+
+        return mapper.toDTOs(filmDao.findAll(afterId, limit, view));
+    }
+
+    @Override
+    public void streamAll(Consumer<FilmDTO> consumer, FilmView view) {
+
+        filmDao.streamAll(film -> consumer.accept(mapper.toDTO(film)), view);
+    }
+
+    @Override
+    public List<Long> getLikes(Long filmId, Long afterUserId, int limit) {
+
+        if (!filmDao.isExistsById(filmId)) {
+            throw NotFoundException.builder()
+                    .message(String.format("The film with the ID - `%d` was not found.", filmId))
+                    .httpStatus(NOT_FOUND)
+                    .build();
+        }
+
+        return filmDao.findLikes(filmId, afterUserId, limit);
     }
 
     @Override
@@ -66,11 +142,11 @@ public class FilmServiceImpl implements FilmService {
 
         ValidatorUtils.validate(filmDTO, Marker.OnUpdate.class);
 
-        return mapper.toDTO(filmDao.update(mapper.toEntity(filmDTO))
-                .orElseThrow(() -> NotFoundException.builder()
-                        .message(String.format("The film `%s` was not found.", filmDTO.getName()))
-                        .httpStatus(NOT_FOUND)
-                        .build()));
+        FilmDTO updatedFilm = mapper.toDTO(filmDao.update(mapper.toEntity(filmDTO))
+                .orElseThrow(() -> updateFailure(filmDTO)));
+        versions.touch(FILM, updatedFilm.getId());
+
+        return updatedFilm;
     }
 
     @Override
@@ -84,55 +160,132 @@ public class FilmServiceImpl implements FilmService {
                     .httpStatus(NOT_FOUND)
                     .build();
         }
+        popularityIndex.remove(filmId);
+        versions.touch(FILM, filmId);
     }
 
     @Override
     public void likeFilm(Long filmId, Long userId) {
 
-        checkIds(filmId, userId);
-        boolean isAddedLike = filmDao.addLike(filmId, userId);
+        LikeStatus status = isUnknownUser(userId) ? unknownUserStatus(filmId) : filmDao.addLike(filmId, userId);
 
-        if (!isAddedLike) {
+        checkFound(status, filmId, userId);
+        if (status == LikeStatus.ALREADY_LIKED) {
             throw BadRequestException.builder()
                     .message(String.format("The user with the ID - `%d` has already liked the film with the ID - `%d`.",
                             userId, filmId))
                     .httpStatus(BAD_REQUEST)
                     .build();
         }
+        popularityIndex.incrementLikes(filmId);
+        versions.touch(FILM, filmId);
     }
 
     @Override
     public List<FilmDTO> getPopularFilms(String count) {
 
-        return mapper.toDTOs(filmDao.findPopularFilms(Integer.parseInt(count)));
+        return getPopularFilms(count, null, FilmView.FULL).getItems();
+    }
+
+    @Override
+    public PageDTO<FilmDTO> getPopularFilms(String count, String after, FilmView view) {
+
+        int limit = Integer.parseInt(count);
+        List<FilmPopularityIndex.Entry> entries = popularityIndex.findPage(parseCursor(after), limit);
+        List<Long> filmIds = entries.stream()
+                .map(FilmPopularityIndex.Entry::getFilmId)
+                .collect(Collectors.toList());
+
+        return PageDTO.<FilmDTO>builder()
+                .items(mapper.toDTOs(filmDao.findAllByIds(filmIds, view)))
+                .nextCursor(entries.size() < limit ? null : toCursor(entries.get(entries.size() - 1)))
+                .build();
+    }
+
+    @Override
+    public FilmRankDTO getRank(Long filmId) {
+
+        FilmPopularityIndex.Rank rank = popularityIndex.findRank(filmId)
+                .orElseThrow(() -> NotFoundException.builder()
+                        .message(String.format("The film with the ID - `%d` was not found.", filmId))
+                        .httpStatus(NOT_FOUND)
+                        .build());
+
+        return FilmRankDTO.builder()
+                .filmId(filmId)
+                .rank(rank.getRank())
+                .likeCount(rank.getLikes())
+                .build();
     }
 
     @Override
     public void deleteLike(Long filmId, Long userId) {
 
-        checkIds(filmId, userId);
-        boolean isDeletedLike = filmDao.deleteLike(filmId, userId);
+        LikeStatus status = isUnknownUser(userId) ? unknownUserStatus(filmId) : filmDao.deleteLike(filmId, userId);
 
-        if (!isDeletedLike) {
+        checkFound(status, filmId, userId);
+        if (status == LikeStatus.NOT_LIKED) {
             throw BadRequestException.builder()
                     .message(String.format("The user with the ID - `%d` did not like the film with the ID - `%d`.",
                             userId, filmId))
                     .httpStatus(BAD_REQUEST)
                     .build();
         }
+        popularityIndex.decrementLikes(filmId);
+        versions.touch(FILM, filmId);
     }
 
-    private void checkIds(Long filmId, Long userId) {
+    /**
+     * Converts a position in the popular films list into a cursor of the form `likes_filmId`.
+     */
+    private String toCursor(FilmPopularityIndex.Entry entry) {
+
+        return entry.getLikes() + "_" + entry.getFilmId();
+    }
+
+    private FilmPopularityIndex.Entry parseCursor(String cursor) {
+
+        if (cursor == null) {
+            return null;
+        }
+
+        String[] parts = cursor.split("_");
+        try {
+            if (parts.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            return new FilmPopularityIndex.Entry(Long.parseLong(parts[1]), Integer.parseInt(parts[0]));
+        } catch (IllegalArgumentException exception) {
+            throw BadRequestException.builder()
+                    .message(String.format("The cursor `%s` is invalid.", cursor))
+                    .httpStatus(BAD_REQUEST)
+                    .build();
+        }
+    }
+
+    /**
+     * A DAO that does not know the users accepts any user ID, then the user is checked here before the like
+     * is changed. Otherwise the DAO checks the film and the user in the same statement that changes the like.
+     */
+    private boolean isUnknownUser(Long userId) {
+
+        return !filmDao.isUserChecked() && !userDao.isExistsById(userId);
+    }
+
+    private LikeStatus unknownUserStatus(Long filmId) {
+
+        return filmDao.isExistsById(filmId) ? LikeStatus.USER_NOT_FOUND : LikeStatus.FILM_AND_USER_NOT_FOUND;
+    }
+
+    private void checkFound(LikeStatus status, Long filmId, Long userId) {
 
         List<String> messages = new ArrayList<>();
-        boolean filmExists = filmDao.isExistsById(filmId);
-        boolean userExists = userDao.isExistsById(userId);
 
-        if (!filmExists) {
+        if (status == LikeStatus.FILM_NOT_FOUND || status == LikeStatus.FILM_AND_USER_NOT_FOUND) {
             messages.add(String.format("The film by ID - `%d` was not found.", filmId));
         }
 
-        if (!userExists) {
+        if (status == LikeStatus.USER_NOT_FOUND || status == LikeStatus.FILM_AND_USER_NOT_FOUND) {
             messages.add(String.format("The user by ID - `%d` was not found.", userId));
         }
 
@@ -143,4 +296,24 @@ public class FilmServiceImpl implements FilmService {
                     .build();
         }
     }
+
+    /**
+     * An update changes nothing if the film does not exist or if the given version is not the stored one,
+     * the second case means the film was changed by another request after the client read it.
+     */
+    private RuntimeException updateFailure(FilmDTO filmDTO) {
+
+        if (filmDTO.getVersion() != null && filmDao.isExistsById(filmDTO.getId())) {
+            return ConflictException.builder()
+                    .message(String.format("The film `%s` was changed by another request, the version `%d` " +
+                            "is outdated.", filmDTO.getName(), filmDTO.getVersion()))
+                    .httpStatus(CONFLICT)
+                    .build();
+        }
+
+        return NotFoundException.builder()
+                .message(String.format("The film `%s` was not found.", filmDTO.getName()))
+                .httpStatus(NOT_FOUND)
+                .build();
+    }
 }
@@ -1,37 +1,50 @@
 package ru.yandex.practicum.filmorate.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.GenreDao;
+import ru.yandex.practicum.filmorate.dao.impl.ReferenceData;
 import ru.yandex.practicum.filmorate.dto.GenreDTO;
+import ru.yandex.practicum.filmorate.event.ReferenceDataChangedEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.GenreMapper;
 import ru.yandex.practicum.filmorate.service.GenreService;
 import ru.yandex.practicum.filmorate.utils.ValidatorUtils;
 import ru.yandex.practicum.filmorate.validation.Marker;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
 
 import java.util.List;
 
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.FILM;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.GENRE;
 
 @Service
 @RequiredArgsConstructor
 public class GenreServiceImpl implements GenreService {
     private final GenreDao genreDao;
+    private final ReferenceData referenceData;
     private final GenreMapper mapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityVersions versions;
 
     @Override
     public GenreDTO create(GenreDTO genreDTO) {
 
         ValidatorUtils.validate(genreDTO, Marker.OnCreate.class);
 
-        return mapper.toDTO(genreDao.save(mapper.toEntity(genreDTO)));
+        GenreDTO createdGenre = mapper.toDTO(genreDao.save(mapper.toEntity(genreDTO)));
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent());
+        versions.touch(GENRE, createdGenre.getId());
+
+        return createdGenre;
     }
 
     @Override
     public GenreDTO getById(Long genreId) {
 
-        return mapper.toDTO(genreDao.findById(genreId).orElseThrow(() -> NotFoundException.builder()
+        return mapper.toDTO(referenceData.findGenre(genreId).orElseThrow(() -> NotFoundException.builder()
                 .message(String.format("The genre with the ID - `%d` was not found.", genreId))
                 .httpStatus(NOT_FOUND)
                 .build()));
@@ -40,7 +53,13 @@ public class GenreServiceImpl implements GenreService {
     @Override
     public List<GenreDTO> getAll() {
 
-        return mapper.toDTOs(genreDao.findAll());
+        return mapper.toDTOs(referenceData.findAllGenres());
+    }
+
+    @Override
+    public List<GenreDTO> getAll(Long afterId, int limit) {
+
+        return mapper.toDTOs(referenceData.findAllGenres(afterId, limit));
     }
 
     @Override
@@ -48,10 +67,16 @@ public class GenreServiceImpl implements GenreService {
 
         ValidatorUtils.validate(genreDTO, Marker.OnUpdate.class);
 
-        return mapper.toDTO(genreDao.update(mapper.toEntity(genreDTO)).orElseThrow(() -> NotFoundException.builder()
-                .message(String.format("The film `%s` was not found.", genreDTO.getName()))
-                .httpStatus(NOT_FOUND)
-                .build()));
+        GenreDTO updatedGenre = mapper.toDTO(genreDao.update(mapper.toEntity(genreDTO))
+                .orElseThrow(() -> NotFoundException.builder()
+                        .message(String.format("The film `%s` was not found.", genreDTO.getName()))
+                        .httpStatus(NOT_FOUND)
+                        .build()));
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent());
+        versions.touch(GENRE, updatedGenre.getId());
+        versions.touchAll(FILM);
+
+        return updatedGenre;
     }
 
     @Override
@@ -65,5 +90,8 @@ public class GenreServiceImpl implements GenreService {
                     .httpStatus(NOT_FOUND)
                     .build();
         }
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent());
+        versions.touch(GENRE, genreId);
+        versions.touchAll(FILM);
     }
 }
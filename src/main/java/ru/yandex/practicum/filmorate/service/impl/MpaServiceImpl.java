@@ -1,37 +1,50 @@
 package ru.yandex.practicum.filmorate.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.dao.MpaDao;
+import ru.yandex.practicum.filmorate.dao.impl.ReferenceData;
 import ru.yandex.practicum.filmorate.dto.MpaDTO;
+import ru.yandex.practicum.filmorate.event.ReferenceDataChangedEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.mapper.MpaMapper;
 import ru.yandex.practicum.filmorate.service.MpaService;
 import ru.yandex.practicum.filmorate.utils.ValidatorUtils;
 import ru.yandex.practicum.filmorate.validation.Marker;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
 
 import java.util.List;
 
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.FILM;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.MPA;
 
 @Service
 @RequiredArgsConstructor
 public class MpaServiceImpl implements MpaService {
     private final MpaDao mpaDao;
+    private final ReferenceData referenceData;
     private final MpaMapper mapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityVersions versions;
 
     @Override
     public MpaDTO create(MpaDTO mpaDTO) {
 
         ValidatorUtils.validate(mpaDTO, Marker.OnCreate.class);
 
-        return mapper.toDTO(mpaDao.save(mapper.toEntity(mpaDTO)));
+        MpaDTO createdMpa = mapper.toDTO(mpaDao.save(mapper.toEntity(mpaDTO)));
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent());
+        versions.touch(MPA, createdMpa.getId());
+
+        return createdMpa;
     }
 
     @Override
     public MpaDTO getById(Long mpaId) {
 
-        return mapper.toDTO(mpaDao.findById(mpaId).orElseThrow(() -> NotFoundException.builder()
+        return mapper.toDTO(referenceData.findMpa(mpaId).orElseThrow(() -> NotFoundException.builder()
                 .message(String.format("The MPA rating with the ID - `%d` was not found.", mpaId))
                 .httpStatus(NOT_FOUND)
                 .build()));
@@ -40,7 +53,13 @@ public class MpaServiceImpl implements MpaService {
     @Override
     public List<MpaDTO> getAll() {
 
-        return mapper.toDTOs(mpaDao.findAll());
+        return mapper.toDTOs(referenceData.findAllMpa());
+    }
+
+    @Override
+    public List<MpaDTO> getAll(Long afterId, int limit) {
+
+        return mapper.toDTOs(referenceData.findAllMpa(afterId, limit));
     }
 
     @Override
@@ -48,10 +67,16 @@ public class MpaServiceImpl implements MpaService {
 
         ValidatorUtils.validate(mpaDTO, Marker.OnUpdate.class);
 
-        return mapper.toDTO(mpaDao.update(mapper.toEntity(mpaDTO)).orElseThrow(() -> NotFoundException.builder()
-                .message(String.format("The MPA rating `%s` was not found.", mpaDTO.getName()))
-                .httpStatus(NOT_FOUND)
-                .build()));
+        MpaDTO updatedMpa = mapper.toDTO(mpaDao.update(mapper.toEntity(mpaDTO))
+                .orElseThrow(() -> NotFoundException.builder()
+                        .message(String.format("The MPA rating `%s` was not found.", mpaDTO.getName()))
+                        .httpStatus(NOT_FOUND)
+                        .build()));
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent());
+        versions.touch(MPA, updatedMpa.getId());
+        versions.touchAll(FILM);
+
+        return updatedMpa;
     }
 
     @Override
@@ -65,5 +90,8 @@ public class MpaServiceImpl implements MpaService {
                     .httpStatus(NOT_FOUND)
                     .build();
         }
+        eventPublisher.publishEvent(new ReferenceDataChangedEvent());
+        versions.touch(MPA, mpaId);
+        versions.touchAll(FILM);
     }
 }
@@ -2,33 +2,73 @@ package ru.yandex.practicum.filmorate.service.impl;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.dao.FilmDao;
 import ru.yandex.practicum.filmorate.dao.UserDao;
+import ru.yandex.practicum.filmorate.dto.FriendshipDTO;
+import ru.yandex.practicum.filmorate.dto.FriendshipResultDTO;
+import ru.yandex.practicum.filmorate.dto.RecommendationDTO;
 import ru.yandex.practicum.filmorate.dto.UserDTO;
 import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.exception.ConflictException;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.index.FriendRecommender;
+import ru.yandex.practicum.filmorate.mapper.FriendshipMapper;
 import ru.yandex.practicum.filmorate.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.utils.ValidatorUtils;
 import ru.yandex.practicum.filmorate.validation.Marker;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static ru.yandex.practicum.filmorate.constant.FilmConstant.FILM_DAO_IMPL;
 import static ru.yandex.practicum.filmorate.constant.UserConstant.USER_DAO_IMPL;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.FILM;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.USER;
 
 @Service
 public class UserServiceImpl implements UserService {
     private final UserDao userDao;
+    private final FilmDao filmDao;
     private final UserMapper mapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FriendGraph friendGraph;
+    private final FriendRecommender friendRecommender;
+    private final FriendshipMapper friendshipMapper;
+    private final EntityVersions versions;
+
+    @Value("${filmorate.batch.size:1000}")
+    private int batchSize = 1000;
 
     @Autowired
     public UserServiceImpl(@Qualifier(value = USER_DAO_IMPL) UserDao userDao,
-                           UserMapper mapper) {
+                           @Qualifier(value = FILM_DAO_IMPL) FilmDao filmDao,
+                           UserMapper mapper,
+                           FriendshipMapper friendshipMapper,
+                           ApplicationEventPublisher eventPublisher,
+                           FriendGraph friendGraph,
+                           FriendRecommender friendRecommender,
+                           EntityVersions versions) {
         this.userDao = userDao;
+        this.filmDao = filmDao;
         this.mapper = mapper;
+        this.friendshipMapper = friendshipMapper;
+        this.eventPublisher = eventPublisher;
+        this.friendGraph = friendGraph;
+        this.friendRecommender = friendRecommender;
+        this.versions = versions;
     }
 
     @Override
@@ -37,7 +77,10 @@ public class UserServiceImpl implements UserService {
         ValidatorUtils.validate(userDTO, Marker.OnCreate.class);
         ValidatorUtils.validateUserName(userDTO);
 
-        return mapper.toDTO(userDao.save(mapper.toEntity(userDTO)));
+        UserDTO createdUser = mapper.toDTO(userDao.save(mapper.toEntity(userDTO)));
+        versions.touch(USER, createdUser.getId());
+
+        return createdUser;
     }
 
     @Override
@@ -56,22 +99,35 @@ public class UserServiceImpl implements UserService {
         return mapper.toDTOs(userDao.findAll());
     }
 
+    @Override
+    public List<UserDTO> getAll(Long afterId, int limit) {
+
+        return mapper.toDTOs(userDao.findAll(afterId, limit));
+    }
+
+    @Override
+    public void streamAll(Consumer<UserDTO> consumer) {
+
+        userDao.streamAll(user -> consumer.accept(mapper.toDTO(user)));
+    }
+
     @Override
     public UserDTO update(UserDTO userDTO) {
 
         ValidatorUtils.validate(userDTO, Marker.OnUpdate.class);
         ValidatorUtils.validateUserName(userDTO);
 
-        return mapper.toDTO(userDao.update(mapper.toEntity(userDTO))
-                .orElseThrow(() -> NotFoundException.builder()
-                        .message(String.format("The user `%s` was not found.", userDTO.getLogin()))
-                        .httpStatus(NOT_FOUND)
-                        .build()));
+        UserDTO updatedUser = mapper.toDTO(userDao.update(mapper.toEntity(userDTO))
+                .orElseThrow(() -> updateFailure(userDTO)));
+        versions.touch(USER, updatedUser.getId());
+
+        return updatedUser;
     }
 
     @Override
     public void deleteById(Long userId) {
 
+        List<Long> likedFilmIds = filmDao.findLikedFilmIds(userId);
         boolean isUserDeleted = userDao.deleteById(userId);
 
         if (!isUserDeleted) {
@@ -80,11 +136,20 @@ public class UserServiceImpl implements UserService {
                     .httpStatus(NOT_FOUND)
                     .build();
         }
+        eventPublisher.publishEvent(new UserDeletedEvent(userId, likedFilmIds));
+        versions.touchAll(USER);
+        versions.touchAll(FILM);
     }
 
     @Override
     public void addFriend(Long userId, Long friendId) {
 
+        if (userId.equals(friendId)) {
+            throw BadRequestException.builder()
+                    .message(String.format("The user by ID - `%d` cannot be added as a friend of itself.", userId))
+                    .httpStatus(BAD_REQUEST)
+                    .build();
+        }
         checkIds(userId, friendId);
         boolean isFriendAdded = userDao.addFriend(userId, friendId);
 
@@ -94,19 +159,97 @@ public class UserServiceImpl implements UserService {
                     .httpStatus(BAD_REQUEST)
                     .build();
         }
+        friendGraph.addFriend(userId, friendId);
+        friendRecommender.invalidate(userId, friendId);
+        versions.touch(USER, userId);
+        versions.touch(USER, friendId);
     }
 
+    /**
+     * The friendships are checked in memory first: the existence of every distinct user ID is read with one query,
+     * and a pair of users that occurs more than once (in either direction) is imported only once.
+     * The rest is sorted by the primary key (the lower and then the higher user ID of the pair), so the index pages
+     * are filled in order, and inserted in chunks of `filmorate.batch.size` friendships, each chunk in its own
+     * transaction, so a large import does not hold one long transaction and the chunks committed before a failure
+     * are kept.
+     */
     @Override
-    public List<UserDTO> getAllFriends(Long userId) {
+    public List<FriendshipResultDTO> addFriends(List<FriendshipDTO> friendshipDTOs) {
+
+        Set<Long> userIds = new HashSet<>();
+        friendshipDTOs.forEach(friendship -> {
+            userIds.add(friendship.getUserId());
+            userIds.add(friendship.getFriendId());
+        });
+        userIds.remove(null);
+        Set<Long> existingIds = userDao.findExistingIds(userIds);
+
+        FriendshipResultDTO.Status[] statuses = new FriendshipResultDTO.Status[friendshipDTOs.size()];
+        List<Integer> indexes = new ArrayList<>();
+        Set<List<Long>> pairs = new HashSet<>();
+        for (int i = 0; i < friendshipDTOs.size(); i++) {
+            Long userId = friendshipDTOs.get(i).getUserId();
+            Long friendId = friendshipDTOs.get(i).getFriendId();
+            if (userId == null || friendId == null || userId.equals(friendId)) {
+                statuses[i] = FriendshipResultDTO.Status.INVALID;
+            } else if (!existingIds.contains(userId) || !existingIds.contains(friendId)) {
+                statuses[i] = FriendshipResultDTO.Status.USER_NOT_FOUND;
+            } else if (!pairs.add(List.of(Math.min(userId, friendId), Math.max(userId, friendId)))) {
+                statuses[i] = FriendshipResultDTO.Status.DUPLICATE;
+            } else {
+                indexes.add(i);
+            }
+        }
 
-        if (!userDao.isExistsById(userId)) {
-            throw NotFoundException.builder()
-                    .message(String.format("The user with the ID - `%d` was not found.", userId))
-                    .httpStatus(NOT_FOUND)
-                    .build();
+        indexes.sort(Comparator.comparing((Integer index) -> Math.min(friendshipDTOs.get(index).getUserId(),
+                        friendshipDTOs.get(index).getFriendId()))
+                .thenComparing(index -> Math.max(friendshipDTOs.get(index).getUserId(),
+                        friendshipDTOs.get(index).getFriendId())));
+        for (int from = 0; from < indexes.size(); from += batchSize) {
+            List<Integer> chunk = indexes.subList(from, Math.min(from + batchSize, indexes.size()));
+            List<Friendship> friendships = chunk.stream()
+                    .map(index -> friendshipMapper.toEntity(friendshipDTOs.get(index)))
+                    .collect(Collectors.toList());
+            boolean[] added = userDao.addFriends(friendships);
+            for (int i = 0; i < chunk.size(); i++) {
+                statuses[chunk.get(i)] = added[i]
+                        ? FriendshipResultDTO.Status.ADDED
+                        : FriendshipResultDTO.Status.ALREADY_EXISTS;
+            }
+        }
+
+        if (!indexes.isEmpty()) {
+            friendGraph.load();
+            friendRecommender.invalidateAll();
+            versions.touchAll(USER);
         }
 
-        return mapper.toDTOs(userDao.findAllFriends(userId));
+        List<FriendshipResultDTO> results = new ArrayList<>(friendshipDTOs.size());
+        for (int i = 0; i < friendshipDTOs.size(); i++) {
+            results.add(FriendshipResultDTO.builder()
+                    .userId(friendshipDTOs.get(i).getUserId())
+                    .friendId(friendshipDTOs.get(i).getFriendId())
+                    .status(statuses[i])
+                    .build());
+        }
+
+        return results;
+    }
+
+    @Override
+    public List<UserDTO> getAllFriends(Long userId) {
+
+        checkId(userId);
+
+        return mapper.toDTOs(findAllByIds(friendGraph.findFriendIds(userId).toLongArray()));
+    }
+
+    @Override
+    public List<UserDTO> getAllFriends(Long userId, Long afterId, int limit) {
+
+        checkId(userId);
+
+        return mapper.toDTOs(findAllByIds(friendGraph.findFriendIds(userId, afterId, limit)));
     }
 
     @Override
@@ -114,7 +257,26 @@ public class UserServiceImpl implements UserService {
 
         checkIds(userId, otherId);
 
-        return mapper.toDTOs(userDao.findCommonFriends(userId, otherId));
+        return mapper.toDTOs(findAllByIds(friendGraph.findCommonFriendIds(userId, otherId).toLongArray()));
+    }
+
+    @Override
+    public List<RecommendationDTO> getRecommendations(Long userId, int limit) {
+
+        checkId(userId);
+
+        List<FriendRecommender.Recommendation> recommendations = friendRecommender.findRecommendations(userId, limit);
+        Map<Long, Integer> mutualFriends = new HashMap<>();
+        recommendations.forEach(recommendation ->
+                mutualFriends.put(recommendation.getUserId(), recommendation.getMutualFriends()));
+
+        return findAllByIds(recommendations.stream().mapToLong(FriendRecommender.Recommendation::getUserId).toArray())
+                .stream()
+                .map(user -> RecommendationDTO.builder()
+                        .user(mapper.toDTO(user))
+                        .mutualFriends(mutualFriends.get(user.getId()))
+                        .build())
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -130,6 +292,25 @@ public class UserServiceImpl implements UserService {
                     .httpStatus(BAD_REQUEST)
                     .build();
         }
+        friendGraph.deleteFriend(userId, friendId);
+        friendRecommender.invalidate(userId, friendId);
+        versions.touch(USER, userId);
+        versions.touch(USER, friendId);
+    }
+
+    private List<User> findAllByIds(long[] userIds) {
+
+        return userDao.findAllByIds(Arrays.stream(userIds).boxed().collect(Collectors.toList()));
+    }
+
+    private void checkId(Long userId) {
+
+        if (!userDao.isExistsById(userId)) {
+            throw NotFoundException.builder()
+                    .message(String.format("The user with the ID - `%d` was not found.", userId))
+                    .httpStatus(NOT_FOUND)
+                    .build();
+        }
     }
 
     private void checkIds(Long firstUserId, Long secondUserId) {
@@ -153,4 +334,24 @@ public class UserServiceImpl implements UserService {
                     .build();
         }
     }
+
+    /**
+     * An update changes nothing if the user does not exist or if the given version is not the stored one,
+     * the second case means the user was changed by another request after the client read it.
+     */
+    private RuntimeException updateFailure(UserDTO userDTO) {
+
+        if (userDTO.getVersion() != null && userDao.isExistsById(userDTO.getId())) {
+            return ConflictException.builder()
+                    .message(String.format("The user `%s` was changed by another request, the version `%d` " +
+                            "is outdated.", userDTO.getLogin(), userDTO.getVersion()))
+                    .httpStatus(CONFLICT)
+                    .build();
+        }
+
+        return NotFoundException.builder()
+                .message(String.format("The user `%s` was not found.", userDTO.getLogin()))
+                .httpStatus(NOT_FOUND)
+                .build();
+    }
 }
\ No newline at end of file
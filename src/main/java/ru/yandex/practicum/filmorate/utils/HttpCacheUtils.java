@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * The HttpCacheUtils class provides utility methods for conditional requests and HTTP caching headers.
+ */
+public class HttpCacheUtils {
+
+    /**
+     * Compares the ETag of the current representation with the `If-None-Match` header of the request,
+     * see {@link ServletWebRequest#checkNotModified(String)}. A 304 response also gets the Cache-Control header
+     * the full response would have.
+     *
+     * @param request      The current request.
+     * @param etag         The quoted strong ETag of the current representation.
+     * @param cacheControl The caching directives of the resource.
+     * @return true if the client already has the current representation.
+     */
+    public static boolean checkNotModified(ServletWebRequest request, String etag, CacheControl cacheControl) {
+
+        boolean isNotModified = request.checkNotModified(etag);
+        HttpServletResponse response = request.getResponse();
+        if (isNotModified && response != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        }
+
+        return isNotModified;
+    }
+
+    /**
+     * Adds the Cache-Control header to a successful response, keeping its status, headers and body.
+     *
+     * @param response     The response.
+     * @param cacheControl The caching directives of the resource.
+     * @param <T>          The type of the body.
+     * @return The response with the Cache-Control header.
+     */
+    public static <T> ResponseEntity<T> withCacheControl(ResponseEntity<T> response, CacheControl cacheControl) {
+
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .cacheControl(cacheControl)
+                .body(response.getBody());
+    }
+
+    /**
+     * Reads the version of an entity from the `If-Match` header of an update, e.g. `"3"` or `W/"3"`.
+     * The value is the `version` field of the entity, not the ETag of a GET response, which also changes
+     * with likes and friendships.
+     *
+     * @param ifMatch The `If-Match` header, may be null.
+     * @return The expected version, or null if the header is absent or `*`.
+     * @throws BadRequestException if the header is not a single version.
+     */
+    public static Long parseIfMatchVersion(String ifMatch) {
+
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String version = ifMatch.trim();
+        if (version.startsWith("W/")) {
+            version = version.substring(2);
+        }
+        if (version.length() > 1 && version.startsWith("\"") && version.endsWith("\"")) {
+            version = version.substring(1, version.length() - 1);
+        }
+
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException exception) {
+            throw BadRequestException.builder()
+                    .message(String.format("The If-Match header must hold the version of the entity, e.g. " +
+                            "\"3\", but was `%s`.", ifMatch))
+                    .httpStatus(BAD_REQUEST)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * The JsonStreamUtils class provides utility methods for writing entities straight to the response output stream
+ * as they are read, either as a JSON array or as newline-delimited JSON (NDJSON), and for reading NDJSON requests.
+ */
+public class JsonStreamUtils {
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Builds a streaming response that serializes every item supplied by the source as soon as it is produced.
+     *
+     * @param format       The output format, `json` for a JSON array or `ndjson` for one JSON document per line.
+     * @param objectMapper The object mapper used to serialize the items.
+     * @param source       The source that passes the items to the given consumer one by one.
+     * @param <T>          The type of the items.
+     * @return The streaming response.
+     * @throws BadRequestException If the format is not supported.
+     */
+    public static <T> ResponseEntity<StreamingResponseBody> toResponse(String format, ObjectMapper objectMapper,
+                                                                      Consumer<Consumer<T>> source) {
+
+        boolean isNdjson = FORMAT_NDJSON.equalsIgnoreCase(format);
+
+        if (!isNdjson && !FORMAT_JSON.equalsIgnoreCase(format)) {
+            throw BadRequestException.builder()
+                    .message(String.format("The stream format `%s` is not supported, use `%s` or `%s`.",
+                            format, FORMAT_JSON, FORMAT_NDJSON))
+                    .httpStatus(BAD_REQUEST)
+                    .build();
+        }
+
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                if (!isNdjson) {
+                    generator.writeStartArray();
+                }
+                source.accept(item -> write(generator, writer, item, isNdjson));
+                if (!isNdjson) {
+                    generator.writeEndArray();
+                }
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(isNdjson ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    /**
+     * Reads newline-delimited JSON (NDJSON), one item per line.
+     *
+     * @param inputStream  The input stream to read.
+     * @param objectMapper The object mapper used to deserialize the items.
+     * @param type         The type of the items.
+     * @param <T>          The type of the items.
+     * @return The items in the order of the lines.
+     * @throws BadRequestException If a line is not a valid JSON document of the given type.
+     */
+    public static <T> List<T> readNdjson(InputStream inputStream, ObjectMapper objectMapper, Class<T> type) {
+
+        try (MappingIterator<T> iterator = objectMapper.readerFor(type).readValues(inputStream)) {
+            return iterator.readAll();
+        } catch (IOException exception) {
+            throw BadRequestException.builder()
+                    .message(String.format("The NDJSON body is invalid: %s", exception.getMessage()))
+                    .httpStatus(BAD_REQUEST)
+                    .build();
+        }
+    }
+
+    private static <T> void write(JsonGenerator generator, ObjectWriter writer, T item, boolean isNdjson) {
+
+        try {
+            writer.writeValue(generator, item);
+            if (isNdjson) {
+                generator.writeRaw('\n');
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.utils;
+
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.dto.PageDTO;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static ru.yandex.practicum.filmorate.constant.PageConstant.NEXT_CURSOR_HEADER;
+
+/**
+ * The PageUtils class provides utility methods for building responses of keyset-paginated list endpoints.
+ */
+public class PageUtils {
+
+    /**
+     * Wraps a page of items into a response.
+     * If the page is full, the cursor of its last item is returned in the X-Next-Cursor header,
+     * the client passes it as the `after` parameter to request the next page.
+     *
+     * @param page   The items of the page.
+     * @param limit  The requested page size.
+     * @param cursor The function that extracts the cursor value from an item.
+     * @param <T>    The type of the items.
+     * @return The response containing the page and, if there may be more items, the next cursor.
+     */
+    public static <T> ResponseEntity<List<T>> toResponse(List<T> page, int limit, Function<T, ?> cursor) {
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (!page.isEmpty() && page.size() >= limit) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(cursor.apply(page.get(page.size() - 1))));
+        }
+
+        return response.body(page);
+    }
+
+    /**
+     * Wraps a page with a precomputed cursor into a response, the cursor is returned in the X-Next-Cursor header.
+     *
+     * @param page The page and the cursor of the next page, if any.
+     * @param <T>  The type of the items.
+     * @return The response containing the items of the page and the next cursor.
+     */
+    public static <T> ResponseEntity<List<T>> toResponse(PageDTO<T> page) {
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+
+        return response.body(page.getItems());
+    }
+}
@@ -8,6 +8,8 @@ import ru.yandex.practicum.filmorate.exception.ValidException;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -16,6 +18,8 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 public class ValidatorUtils {
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
     /**
      * Validates the given object using the default validator and specified groups.
      * If validation fails, throws ValidException with the validation error message.
@@ -27,12 +31,7 @@ public class ValidatorUtils {
      */
     public static <T> void validate(T object, Class<?>... groups) {
 
-        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
-
-        Set<ConstraintViolation<T>> violations = validator.validate(object);
-        if (groups != null && groups.length > 0) {
-            violations.addAll(validator.validate(object, groups));
-        }
+        Set<ConstraintViolation<T>> violations = findViolations(object, groups);
 
         if (!violations.isEmpty()) {
             throw ValidException.builder()
@@ -42,6 +41,40 @@ public class ValidatorUtils {
         }
     }
 
+    /**
+     * Validates all objects of the list in one pass using the default validator and specified groups.
+     * If validation fails, throws ValidException with the validation errors of all invalid objects,
+     * each error is prefixed with the index of the object in the list.
+     *
+     * @param objects The objects to be validated.
+     * @param groups  The validator groups to be applied.
+     * @param <T>     The type of the objects to be validated.
+     * @throws ValidException If validation of at least one object fails.
+     */
+    public static <T> void validateAll(List<T> objects, Class<?>... groups) {
+
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < objects.size(); i++) {
+            T object = objects.get(i);
+            if (object == null) {
+                errors.add(String.format("[%d] The object must not be null.", i));
+                continue;
+            }
+
+            Set<ConstraintViolation<T>> violations = findViolations(object, groups);
+            if (!violations.isEmpty()) {
+                errors.add(String.format("[%d] %s", i, buildValidationErrorMessage(violations)));
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            throw ValidException.builder()
+                    .message(String.join(" & ", errors))
+                    .httpStatus(HttpStatus.BAD_REQUEST)
+                    .build();
+        }
+    }
+
     /**
      * Validates the user-name in the UserDTO object.
      * If the name is null or empty, sets it to the login value.
@@ -58,6 +91,16 @@ public class ValidatorUtils {
         }
     }
 
+    private static <T> Set<ConstraintViolation<T>> findViolations(T object, Class<?>... groups) {
+
+        Set<ConstraintViolation<T>> violations = VALIDATOR.validate(object);
+        if (groups != null && groups.length > 0) {
+            violations.addAll(VALIDATOR.validate(object, groups));
+        }
+
+        return violations;
+    }
+
     /**
      * Builds the validation error message from the set of constraint violations.
      *
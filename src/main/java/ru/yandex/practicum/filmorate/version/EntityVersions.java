@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.version;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The EntityVersions class keeps version counters of entities and entity collections in memory
+ * and turns them into strong ETags, so a conditional GET is answered before any DAO query runs.
+ * Every write takes the next value of one global counter: the written entity and the collection of its type
+ * get that value. A change that affects all entities of a type (e.g. likes removed by the cascade
+ * of a user deletion) raises the epoch of the type instead, the older per-entity versions of the type are dropped.
+ * A version must be raised after the change is visible to readers, otherwise a reader could tag stale content
+ * with the new version. The counters start from zero on every start, the tags carry a boot ID,
+ * so tags issued before a restart never match.
+ */
+@Component
+public class EntityVersions {
+    private final String bootId = Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Type, TypeVersions> versions = new EnumMap<>(Type.class);
+
+    public EntityVersions() {
+        for (Type type : Type.values()) {
+            versions.put(type, new TypeVersions());
+        }
+    }
+
+    /**
+     * Raises the version of an entity and of the collection of its type.
+     *
+     * @param type The type of the entity.
+     * @param id   The ID of the entity.
+     */
+    public void touch(Type type, Long id) {
+
+        long version = clock.incrementAndGet();
+        TypeVersions typeVersions = versions.get(type);
+        typeVersions.byId.merge(id, version, Math::max);
+        typeVersions.collection.accumulateAndGet(version, Math::max);
+    }
+
+    /**
+     * Raises the version of every entity of a type and of its collection.
+     *
+     * @param type The type of the entities.
+     */
+    public void touchAll(Type type) {
+
+        long version = clock.incrementAndGet();
+        TypeVersions typeVersions = versions.get(type);
+        typeVersions.epoch.accumulateAndGet(version, Math::max);
+        typeVersions.collection.accumulateAndGet(version, Math::max);
+        typeVersions.byId.values().removeIf(entityVersion -> entityVersion < version);
+    }
+
+    /**
+     * Builds the ETag of an entity.
+     *
+     * @param type The type of the entity.
+     * @param id   The ID of the entity.
+     * @return The quoted strong ETag.
+     */
+    public String tag(Type type, Long id) {
+
+        TypeVersions typeVersions = versions.get(type);
+        long epoch = typeVersions.epoch.get();
+
+        return format(type, Math.max(epoch, typeVersions.byId.getOrDefault(id, 0L)));
+    }
+
+    /**
+     * Builds the ETag of the collection of a type, it changes with any entity of the type.
+     *
+     * @param type The type of the entities.
+     * @return The quoted strong ETag.
+     */
+    public String tag(Type type) {
+
+        return format(type, versions.get(type).collection.get());
+    }
+
+    private String format(Type type, long version) {
+
+        return "\"" + type.name().toLowerCase() + "-" + bootId + "-" + version + "\"";
+    }
+
+    public enum Type {
+        FILM, USER, GENRE, MPA
+    }
+
+    private static class TypeVersions {
+        private final Map<Long, Long> byId = new ConcurrentHashMap<>();
+        private final AtomicLong epoch = new AtomicLong();
+        private final AtomicLong collection = new AtomicLong();
+    }
+}
@@ -0,0 +1,27 @@
+-- Moves the friendships of an existing DB from the (user_1, user_2, friendship_status) layout
+-- to one row per pair of users stored as (user_low, user_high).
+-- Opposite requests of the same pair are merged: the request of the lower ID is kept as the direction,
+-- the pair is confirmed if any of its rows is confirmed or both users sent a request.
+
+CREATE TABLE IF NOT EXISTS friendships_canonical
+(
+    user_low         INTEGER NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    user_high        INTEGER NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    initiated_by_low BOOLEAN NOT NULL,
+    confirmed        BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (user_low, user_high),
+    CHECK (user_low < user_high)
+);
+
+INSERT INTO friendships_canonical (user_low, user_high, initiated_by_low, confirmed)
+SELECT LEAST(user_1, user_2),
+       GREATEST(user_1, user_2),
+       MAX(user_1 < user_2),
+       MAX(COALESCE(friendship_status, FALSE)) OR COUNT(*) > 1
+FROM friendships
+WHERE user_1 <> user_2
+GROUP BY LEAST(user_1, user_2), GREATEST(user_1, user_2);
+
+DROP TABLE friendships;
+
+ALTER TABLE friendships_canonical RENAME TO friendships;
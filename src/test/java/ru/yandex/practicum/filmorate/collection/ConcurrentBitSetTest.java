@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.collection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentBitSetTest {
+
+    @Test
+    @DisplayName("A test to check setting and clearing values across word boundaries.")
+    void setAndClearValues() {
+
+        // Подготавливаем данные для теста
+        ConcurrentBitSet set = new ConcurrentBitSet();
+
+        // вызываем тестируемый метод
+        set.set(1);
+        set.set(63);
+        set.set(64);
+        set.set(1_000_000);
+        set.clear(63);
+        set.clear(5_000_000); // значение за пределами массива
+
+        // проверяем утверждения
+        assertTrue(set.get(1));
+        assertFalse(set.get(63));
+        assertTrue(set.get(64));
+        assertTrue(set.get(1_000_000));
+        assertFalse(set.get(0));
+        assertFalse(set.get(-1)); // отрицательные значения отсутствуют
+        assertFalse(set.get(Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> set.set(-1));
+        assertThrows(IllegalArgumentException.class, () -> set.set(ConcurrentBitSet.MAX_VALUE + 1));
+        assertFalse(set.get(ConcurrentBitSet.MAX_VALUE + 1)); // значения больше MAX_VALUE отсутствуют
+    }
+
+    @Test
+    @DisplayName("A test to check that concurrent writes growing the array are not lost.")
+    void concurrentSetsAreNotLost() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        ConcurrentBitSet set = new ConcurrentBitSet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // вызываем тестируемый метод
+        for (int thread = 0; thread < 4; thread++) {
+            int offset = thread;
+            executor.submit(() -> LongStream.range(0, 50_000).forEach(i -> set.set(i * 4 + offset)));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        // проверяем утверждения
+        assertTrue(LongStream.range(0, 200_000).allMatch(set::get)); // все значения установлены
+    }
+}
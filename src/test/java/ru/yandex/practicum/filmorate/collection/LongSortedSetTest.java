@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.collection;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongSortedSetTest {
+
+    @Test
+    @DisplayName("A test to check that the set behaves like a TreeSet after random changes.")
+    void randomChangesMatchTreeSet() {
+
+        // Подготавливаем данные для теста
+        Random random = new Random(7);
+        LongSortedSet set = new LongSortedSet();
+        TreeSet<Long> expected = new TreeSet<>();
+
+        // вызываем тестируемый метод
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+        }
+
+        // проверяем утверждения
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set)); // проверяем порядок элементов
+        assertEquals(expected, set);
+        assertEquals(set, expected);
+        assertEquals(expected.hashCode(), set.hashCode());
+        assertTrue(set.contains(expected.first()));
+        assertFalse(set.contains(-1L));
+        assertFalse(set.contains("1"));
+    }
+
+    @Test
+    @DisplayName("A test to check creating the set from unsorted values with duplicates.")
+    void ofUnsortedValuesWithDuplicates() {
+
+        // вызываем тестируемый метод
+        LongSortedSet set = LongSortedSet.of(5, 1, 3, 1, 5, 2);
+
+        // проверяем утверждения
+        assertEquals(List.of(1L, 2L, 3L, 5L), new ArrayList<>(set));
+        assertEquals(4, set.size());
+        assertEquals(3L, set.get(2));
+        assertEquals(set, new LongSortedSet(Set.of(3L, 2L, 5L, 1L)));
+    }
+
+    @Test
+    @DisplayName("A test to check removing values with the iterator.")
+    void iteratorRemove() {
+
+        // Подготавливаем данные для теста
+        LongSortedSet set = LongSortedSet.of(1, 2, 3, 4);
+
+        // вызываем тестируемый метод
+        Iterator<Long> iterator = set.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) {
+                iterator.remove();
+            }
+        }
+
+        // проверяем утверждения
+        assertEquals(List.of(1L, 3L), new ArrayList<>(set));
+    }
+
+    @Test
+    @DisplayName("A test to check the intersection of sets of similar and very different sizes.")
+    void intersectionMatchesRetainAll() {
+
+        // Подготавливаем данные для теста
+        Random random = new Random(11);
+        for (int[] sizes : new int[][]{{0, 10}, {300, 400}, {20, 50_000}, {50_000, 3}}) {
+            TreeSet<Long> first = new TreeSet<>();
+            TreeSet<Long> second = new TreeSet<>();
+            for (int i = 0; i < sizes[0]; i++) {
+                first.add((long) random.nextInt(100_000));
+            }
+            for (int i = 0; i < sizes[1]; i++) {
+                second.add((long) random.nextInt(100_000));
+            }
+            TreeSet<Long> expected = new TreeSet<>(first);
+            expected.retainAll(second);
+
+            // вызываем тестируемый метод
+            LongSortedSet result = new LongSortedSet(first).intersection(new LongSortedSet(second));
+
+            // проверяем утверждения
+            assertEquals(new ArrayList<>(expected), new ArrayList<>(result));
+        }
+    }
+
+    @Test
+    @DisplayName("A test to check reading the values after a given one.")
+    void toLongArrayAfterValue() {
+
+        // Подготавливаем данные для теста
+        LongSortedSet set = LongSortedSet.of(2, 4, 6, 8);
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertArrayEquals(new long[]{2, 4}, set.toLongArray(0, 2));
+        assertArrayEquals(new long[]{6, 8}, set.toLongArray(4, 10)); // значение курсора не попадает в страницу
+        assertArrayEquals(new long[]{6}, set.toLongArray(5, 1));
+        assertArrayEquals(new long[0], set.toLongArray(8, 10));
+    }
+
+    @Test
+    @DisplayName("A test to check that the set is written to JSON and read back as an array of numbers.")
+    void jsonRoundTrip() throws JsonProcessingException {
+
+        // Подготавливаем данные для теста
+        ObjectMapper objectMapper = new ObjectMapper();
+        LongSortedSet set = LongSortedSet.of(3, 1, 2);
+
+        // вызываем тестируемый метод
+        String json = objectMapper.writeValueAsString(set);
+        LongSortedSet result = objectMapper.readValue("[3, 2, 1, 2]", LongSortedSet.class);
+
+        // проверяем утверждения
+        assertEquals("[1,2,3]", json);
+        assertEquals(set, result);
+        assertEquals("[]", objectMapper.writeValueAsString(new LongSortedSet()));
+    }
+}
@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A load test of the request execution modes, run once in each mode. Every connection requests the full film
+ * list (slow, DB bound) once in ten requests, the rank of a film once in ten requests and the genre list
+ * (served from memory) otherwise. Every request must succeed, the throughput and p99 latency are printed
+ * per endpoint. The defaults are small enough for every build, compare the modes under a real load with
+ * `mvn test -Dtest=RequestExecutionLoadTest -Dload.connections=2000 -Dload.films=2000 -Dload.seconds=20`.
+ */
+class RequestExecutionLoadTest {
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 50);
+    private static final int FILMS = Integer.getInteger("load.films", 200);
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.seconds", 2));
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = "filmorate.async.enabled=false")
+    @AutoConfigureTestDatabase
+    class ContainerThreads extends Load {
+    }
+
+    @Nested
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = "filmorate.async.enabled=true")
+    @AutoConfigureTestDatabase
+    class AsyncExecution extends Load {
+    }
+
+    abstract static class Load {
+        @LocalServerPort
+        private int port;
+
+        @Test
+        @DisplayName("A load test to check that every film, rank and genre request succeeds under concurrent load.")
+        void loadFilmsRanksAndGenres() throws Exception {
+
+            // Подготавливаем данные для теста
+            HttpClient client = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            String films = IntStream.range(0, FILMS)
+                    .mapToObj(i -> "{\"name\":\"Film " + i + "\",\"description\":\"Description\"," +
+                            "\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1}}")
+                    .collect(Collectors.joining(",", "[", "]"));
+            HttpResponse<String> created = client.send(HttpRequest.newBuilder(uri("/films/batch"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(films))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(201, created.statusCode());
+            String rankPath = "/films/" + created.body().replaceAll("\\[(\\d+).*", "$1") + "/rank";
+
+            List<Long> filmLatencies = Collections.synchronizedList(new ArrayList<>());
+            List<Long> rankLatencies = Collections.synchronizedList(new ArrayList<>());
+            List<Long> genreLatencies = Collections.synchronizedList(new ArrayList<>());
+            List<String> errors = Collections.synchronizedList(new ArrayList<>());
+            ExecutorService connections = Executors.newFixedThreadPool(CONNECTIONS);
+            long deadline = System.nanoTime() + DURATION.toNanos();
+
+            // вызываем тестируемый метод
+            for (int connection = 0; connection < CONNECTIONS; connection++) {
+                int offset = connection;
+                connections.submit(() -> {
+                    for (int i = offset; System.nanoTime() < deadline; i++) {
+                        String path = i % 10 == 0 ? "/films" : i % 10 == 5 ? rankPath : "/genres";
+                        long start = System.nanoTime();
+                        HttpRequest request = HttpRequest.newBuilder(uri(path))
+                                .timeout(Duration.ofSeconds(60))
+                                .build();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        long latency = System.nanoTime() - start;
+                        if (response.statusCode() != 200) {
+                            errors.add(path + ": " + response.statusCode());
+                        }
+                        (path.equals("/films") ? filmLatencies : path.equals(rankPath) ? rankLatencies
+                                : genreLatencies).add(latency);
+                    }
+                    return null;
+                });
+            }
+            connections.shutdown();
+            assertTrue(connections.awaitTermination(DURATION.toSeconds() + 120, TimeUnit.SECONDS));
+
+            // проверяем утверждения
+            print("GET /films", filmLatencies);
+            print("GET rank", rankLatencies);
+            print("GET /genres", genreLatencies);
+            assertEquals(List.of(), errors); // ни один запрос не отклонен и не завершился ошибкой
+            assertFalse(filmLatencies.isEmpty());
+            assertFalse(rankLatencies.isEmpty());
+            assertFalse(genreLatencies.isEmpty());
+        }
+
+        private URI uri(String path) {
+
+            return URI.create("http://localhost:" + port + path);
+        }
+
+        private void print(String endpoint, List<Long> latencies) {
+
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            long p99 = sorted.isEmpty() ? 0 : sorted.get((int) Math.min(sorted.size() - 1, sorted.size() * 0.99));
+
+            System.out.printf("%-12s requests/s: %,10.1f, p99: %,8d ms%n", endpoint,
+                    sorted.size() / (double) DURATION.toSeconds(), TimeUnit.NANOSECONDS.toMillis(p99));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dto.UserDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.yandex.practicum.filmorate.constant.PageConstant.NEXT_CURSOR_HEADER;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@DirtiesContext
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class UserControllerTest {
+    private final TestRestTemplate restTemplate;
+
+    @Test
+    void testAddFriendItselfResultBadRequest() {
+
+        // Подготавливаем данные для теста
+        Long userId = createUser("self");
+
+        // вызываем тестируемый метод
+        ResponseEntity<String> response = restTemplate.exchange("/users/{id}/friends/{friendId}", HttpMethod.PUT,
+                null, String.class, userId, userId);
+
+        // проверяем утверждения
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode()); // проверяем что не 500 от ограничения БД
+        assertTrue(response.getBody().contains("cannot be added as a friend of itself"));
+        assertEquals(List.of(), restTemplate.getForObject("/users/{id}", Map.class, userId).get("friends"));
+    }
+
+    @Test
+    void testGetAllUsersResultFullListStreamedAndPageWithCursor() {
+
+        // Подготавливаем данные для теста
+        Long firstId = createUser("first");
+        Long secondId = createUser("second");
+        Long thirdId = createUser("third");
+
+        // вызываем тестируемый метод
+        ResponseEntity<List> all = restTemplate.getForEntity("/users", List.class);
+        ResponseEntity<List> page = restTemplate.getForEntity("/users?after={after}&limit=2", List.class,
+                firstId - 1);
+
+        // проверяем утверждения
+        assertEquals(HttpStatus.OK, all.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, all.getHeaders().getContentType()); // полный список без страниц
+        assertEquals(List.of(firstId, secondId, thirdId), ids(all.getBody()).stream()
+                .filter(id -> id >= firstId) // пользователи других тестов созданы раньше
+                .collect(Collectors.toList()));
+        assertEquals(List.of(firstId, secondId), ids(page.getBody()));
+        assertEquals(String.valueOf(secondId), page.getHeaders().getFirst(NEXT_CURSOR_HEADER));
+    }
+
+    private static List<Long> ids(List<?> users) {
+
+        return users.stream()
+                .map(user -> ((Number) ((Map<?, ?>) user).get("id")).longValue())
+                .collect(Collectors.toList());
+    }
+
+    private Long createUser(String login) {
+
+        UserDTO user = UserDTO.builder()
+                .email(login + "@mail.ru")
+                .login(login)
+                .name(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+
+        Map<?, ?> created = restTemplate.postForObject("/users", user, Map.class);
+
+        return ((Number) created.get("id")).longValue();
+    }
+}
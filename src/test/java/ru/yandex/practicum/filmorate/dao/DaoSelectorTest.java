@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDaoDBImpl;
+import ru.yandex.practicum.filmorate.dao.impl.UserDaoDBImpl;
+import ru.yandex.practicum.filmorate.dao.impl.buffer.FilmDaoWriteBehindImpl;
+import ru.yandex.practicum.filmorate.dao.impl.cache.UserDaoCachedImpl;
+import ru.yandex.practicum.filmorate.dao.impl.mapped.FilmDaoMappedImpl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.constant.FilmConstant.FILM_DAO_IMPL;
+import static ru.yandex.practicum.filmorate.constant.UserConstant.USER_DAO_IMPL;
+
+class DaoSelectorTest {
+
+    @Nested
+    @SpringBootTest
+    @AutoConfigureTestDatabase
+    class DefaultDao {
+        @Autowired
+        @Qualifier(value = FILM_DAO_IMPL)
+        private FilmDao filmDao;
+        @Autowired
+        @Qualifier(value = USER_DAO_IMPL)
+        private UserDao userDao;
+        @Autowired
+        private ApplicationContext context;
+
+        @Test
+        @DisplayName("A test to check that the DB DAOs are used and the caches are not created by default.")
+        void testDefaultResultDBDaos() {
+
+            // проверяем утверждения
+            assertInstanceOf(FilmDaoDBImpl.class, filmDao);
+            assertInstanceOf(UserDaoDBImpl.class, userDao);
+            assertFalse(context.containsBean("filmCache")); // кэши подключаются только по настройке
+            assertFalse(context.containsBean("userCache"));
+            assertFalse(context.containsBean("filmWriteBehind"));
+            assertFalse(context.containsBean("filmMapped")); // файлы не открываются без настройки
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {"filmorate.dao.films=filmWriteBehind", "filmorate.dao.users=userCache"})
+    @AutoConfigureTestDatabase
+    class SelectedDao {
+        @Autowired
+        @Qualifier(value = FILM_DAO_IMPL)
+        private FilmDao filmDao;
+        @Autowired
+        @Qualifier(value = USER_DAO_IMPL)
+        private UserDao userDao;
+
+        @Test
+        @DisplayName("A test to check that the DAOs named by the properties are used.")
+        void testSelectedResultDecorators() {
+
+            // проверяем утверждения
+            assertInstanceOf(FilmDaoWriteBehindImpl.class, filmDao);
+            assertInstanceOf(UserDaoCachedImpl.class, userDao);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(properties = {"filmorate.dao.films=filmMapped",
+            "filmorate.mapped.directory=target/dao-selector-mapped"})
+    @AutoConfigureTestDatabase
+    class MappedDao {
+        @Autowired
+        @Qualifier(value = FILM_DAO_IMPL)
+        private FilmDao filmDao;
+
+        @Test
+        @DisplayName("A test to check that the mapped DAO is selected by the property.")
+        void testSelectedResultMappedDao() {
+
+            // проверяем утверждения
+            assertInstanceOf(FilmDaoMappedImpl.class, filmDao);
+        }
+    }
+}
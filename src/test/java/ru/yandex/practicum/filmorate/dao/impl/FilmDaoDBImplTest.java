@@ -7,29 +7,46 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.FilmDao;
 import ru.yandex.practicum.filmorate.dao.UserDao;
 import ru.yandex.practicum.filmorate.exception.SQLDataAccessException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @JdbcTest
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 class FilmDaoDBImplTest {
     private final JdbcTemplate jdbcTemplate;
+    private ReferenceData referenceData;
     private FilmDao filmDao;
     private UserDao userDao;
     protected Film film1;
@@ -47,7 +64,8 @@ class FilmDaoDBImplTest {
     @BeforeEach
     void setUp() {
 
-        filmDao = new FilmDaoDBImpl(jdbcTemplate);
+        referenceData = new ReferenceData(new GenreDaoDBImpl(jdbcTemplate), new MpaDaoDBImpl(jdbcTemplate));
+        filmDao = new FilmDaoDBImpl(jdbcTemplate, referenceData);
         userDao = new UserDaoDBImpl(jdbcTemplate);
         film1 = Film.builder()
                 .name("nisi eiusmod")
@@ -123,7 +141,7 @@ class FilmDaoDBImplTest {
         assertThat(result)
                 .isNotNull() // проверяем, что объект не равен null
                 .usingRecursiveComparison() // проверяем значения полей сохраненного фильма
-                .ignoringFields("likedUserIds") // пропускаем проверку полей
+                .ignoringFields("likedUserIds", "likeCount") // пропускаем проверку полей
                 .isEqualTo(film1); // проверяем что сохраненный объект и передаваемый идентичны
     }
 
@@ -175,6 +193,30 @@ class FilmDaoDBImplTest {
         assertEquals(exception.getMessage(), "Error saving the film in the DB."); // проверяем текст ошибки
     }
 
+    @Test
+    void testSaveAllFilmsResultIdsAndGenresInOrder() {
+
+        // Подготавливаем данные для теста
+        setUpGenres();
+        FilmDaoDBImpl filmDaoDB = new FilmDaoDBImpl(jdbcTemplate, referenceData);
+        ReflectionTestUtils.setField(filmDaoDB, "batchSize", 2); // несколько пакетов на три фильма
+        listGenreIds.add(genreOnlyId1);
+        listGenreIds.add(genreOnlyId2);
+        film2.setGenres(listGenreIds);
+        Film film3 = film1.toBuilder().name("Third film").build();
+
+        // вызываем тестируемый метод
+        List<Long> result = filmDaoDB.saveAll(List.of(film1, film2, film3));
+
+        // проверяем утверждения
+        assertEquals(List.of(1L, 2L, 3L), result); // проверяем что ID выданы в порядке фильмов
+        assertEquals("Third film", filmDao.findById(3L).orElseThrow().getName());
+        assertEquals(Set.of(1L, 2L), filmDao.findById(2L).orElseThrow().getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet())); // проверяем что жанры сохранены для нужного фильма
+        assertTrue(filmDao.findById(1L).orElseThrow().getGenres().isEmpty());
+    }
+
     @Test
     void testFindFilmByIdWithExpectedResultNotNull() {
 
@@ -189,7 +231,7 @@ class FilmDaoDBImplTest {
         assertThat(result)
                 .isNotNull() // проверяем, что объект не равен null
                 .usingRecursiveComparison() // проверяем значения полей запрошенного фильма по id=2
-                .ignoringFields("likedUserIds", "genres") // пропускаем проверку полей
+                .ignoringFields("likedUserIds", "likeCount", "genres") // пропускаем проверку полей
                 .isEqualTo(film2);
     }
 
@@ -224,6 +266,188 @@ class FilmDaoDBImplTest {
                 .isEqualTo(2); // проверяем что findAll возвращает верное количество фильмов
     }
 
+    @Test
+    void testFindAllWithCursorResultPageOfFilms() {
+
+        // Подготавливаем данные для теста
+        filmDao.save(film1);
+        filmDao.save(film2);
+        filmDao.save(filmUpdate.toBuilder().id(null).build());
+
+        // вызываем тестируемый метод
+        List<Film> firstPage = filmDao.findAll(null, 2);
+        List<Film> secondPage = filmDao.findAll(firstPage.get(1).getId(), 2);
+
+        // проверяем утверждения
+        assertThat(firstPage.size()).isEqualTo(2); // проверяем размер первой страницы
+        assertThat(firstPage.get(0).getId()).isEqualTo(1L); // проверяем что страница упорядочена по id
+        assertThat(secondPage.size()).isEqualTo(1); // проверяем что вторая страница содержит оставшийся фильм
+        assertThat(secondPage.get(0).getId()).isEqualTo(3L); // проверяем что вторая страница начинается после курсора
+    }
+
+    @Test
+    void testFindAllResultGenresAndLikesOfEveryFilm() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        setUpGenres();
+        listGenreIds.add(genreOnlyId1);
+        listGenreIds.add(genreOnlyId2);
+        film1.setGenres(listGenreIds);
+        film2.setGenres(Set.of(genreOnlyId2));
+        filmDao.save(film1);
+        filmDao.save(film2);
+        userDao.save(user1);
+        userDao.save(user2);
+        filmDao.addLike(film1.getId(), user1.getId());
+        filmDao.addLike(film2.getId(), user1.getId());
+        filmDao.addLike(film2.getId(), user2.getId());
+
+        // вызываем тестируемый метод
+        List<Film> result = filmDao.findAll();
+
+        // проверяем утверждения
+        listGenres.add(genre1);
+        listGenres.add(genre2);
+        assertThat(result.get(0).getGenres()).isEqualTo(listGenres); // проверяем жанры первого фильма
+        assertThat(result.get(1).getGenres()).isEqualTo(Set.of(genre2)); // проверяем жанры второго фильма
+        assertThat(result.get(0).getLikedUserIds())
+                .isEqualTo(Set.of(user1.getId())); // проверяем лайки первого фильма
+        assertThat(result.get(1).getLikedUserIds())
+                .isEqualTo(Set.of(user1.getId(), user2.getId())); // проверяем лайки второго фильма
+    }
+
+    @Test
+    void testFindAllResultGenresAndMpaFromReferenceData() {
+
+        // Подготавливаем данные для теста
+        film1.setGenres(Set.of(Genre.builder().id(2L).build()));
+        film2.setGenres(Set.of(Genre.builder().id(2L).build()));
+        film2.setMpa(Mpa.builder().id(1L).build());
+        filmDao.save(film1);
+        filmDao.save(film2);
+        jdbcTemplate.update("UPDATE genres SET name = 'Мелодрама' WHERE id = 2");
+        referenceData.onReferenceDataChanged();
+
+        // вызываем тестируемый метод
+        List<Film> result = filmDao.findAll();
+
+        // проверяем утверждения
+        Genre genre = result.get(0).getGenres().iterator().next();
+        assertThat(genre.getName())
+                .isEqualTo("Мелодрама"); // название жанра берется из перезагруженного справочника
+        assertTrue(genre == result.get(1).getGenres().iterator().next()); // фильмы делят один экземпляр жанра
+        assertTrue(result.get(0).getMpa() == result.get(1).getMpa()); // и один экземпляр рейтинга MPA
+        assertThat(referenceData.findAllGenres(1L, 2).size())
+                .isEqualTo(2); // страница жанров читается из справочника
+    }
+
+    @Test
+    void testFindFilmsWithSummaryViewResultLikeCountWithoutLikes() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        filmDao.save(film1);
+        filmDao.save(film2);
+        userDao.save(user1);
+        userDao.save(user2);
+        filmDao.addLike(film1.getId(), user1.getId());
+        filmDao.addLike(film1.getId(), user2.getId());
+
+        // вызываем тестируемый метод
+        Film summary = filmDao.findById(film1.getId(), FilmView.SUMMARY).orElseThrow();
+        Film full = filmDao.findById(film1.getId(), FilmView.FULL).orElseThrow();
+        List<Film> summaries = filmDao.findAll(null, 10, FilmView.SUMMARY);
+
+        // проверяем утверждения
+        assertEquals(2, summary.getLikeCount()); // проверяем что счетчик лайков заполнен
+        assertThat(summary.getLikedUserIds()).isNull(); // проверяем что лайки не прочитаны
+        assertEquals(2, full.getLikeCount());
+        assertEquals(Set.of(user1.getId(), user2.getId()), full.getLikedUserIds());
+        assertEquals(List.of(2, 0), summaries.stream()
+                .map(Film::getLikeCount)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testFindLikesWithCursorResultPageOfUserIds() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        filmDao.save(film1);
+        userDao.save(user1);
+        userDao.save(user2);
+        filmDao.addLike(film1.getId(), user2.getId());
+        filmDao.addLike(film1.getId(), user1.getId());
+
+        // вызываем тестируемый метод
+        List<Long> firstPage = filmDao.findLikes(film1.getId(), null, 1);
+        List<Long> secondPage = filmDao.findLikes(film1.getId(), firstPage.get(0), 1);
+        List<Long> lastPage = filmDao.findLikes(film1.getId(), secondPage.get(0), 1);
+
+        // проверяем утверждения
+        assertEquals(List.of(user1.getId()), firstPage); // проверяем порядок по ID пользователя
+        assertEquals(List.of(user2.getId()), secondPage);
+        assertTrue(lastPage.isEmpty());
+    }
+
+    @Test
+    void testIsLikeExistsResultOnlyGivenPairChecked() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        filmDao.save(film1);
+        filmDao.save(film2);
+        userDao.save(user1);
+        userDao.save(user2);
+        filmDao.addLike(film1.getId(), user1.getId());
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertTrue(filmDao.isLikeExists(film1.getId(), user1.getId()));
+        assertFalse(filmDao.isLikeExists(film1.getId(), user2.getId())); // проверяем другого пользователя
+        assertFalse(filmDao.isLikeExists(film2.getId(), user1.getId())); // проверяем другой фильм
+        assertFalse(filmDao.isLikeExists(999L, user1.getId()));
+    }
+
+    @Test
+    void testStreamAllResultAllFilmsInOrder() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        filmDao.save(film1);
+        filmDao.save(film2);
+        userDao.save(user1);
+        filmDao.addLike(film2.getId(), user1.getId());
+        List<Film> result = new ArrayList<>();
+
+        // вызываем тестируемый метод
+        filmDao.streamAll(result::add);
+
+        // проверяем утверждения
+        assertThat(result)
+                .usingRecursiveComparison() // проверяем что поток содержит те же фильмы, что и findAll
+                .isEqualTo(filmDao.findAll());
+    }
+
+    @Test
+    void testStreamAllInSeveralPagesResultAllFilmsInOrder() {
+
+        // Подготавливаем данные для теста
+        FilmDaoDBImpl filmDaoDB = new FilmDaoDBImpl(jdbcTemplate, referenceData);
+        ReflectionTestUtils.setField(filmDaoDB, "streamFetchSize", 1); // по одному фильму на страницу
+        filmDao.save(film1);
+        filmDao.save(film2);
+        List<Film> result = new ArrayList<>();
+
+        // вызываем тестируемый метод
+        filmDaoDB.streamAll(result::add, FilmView.SUMMARY);
+
+        // проверяем утверждения
+        assertThat(result)
+                .usingRecursiveComparison() // проверяем что страницы склеены без пропусков и повторов
+                .isEqualTo(filmDao.findAll(FilmView.SUMMARY));
+    }
+
     @Test
     void testUpdateFilmWithExpectedResultNotNull() {
 
@@ -244,10 +468,74 @@ class FilmDaoDBImplTest {
         assertThat(result)
                 .isNotNull() // проверяем, что объект не равен null
                 .usingRecursiveComparison() // проверяем значения полей обновленного фильма
-                .ignoringFields("likedUserIds") // пропускаем проверку полей
+                .ignoringFields("likedUserIds", "likeCount") // пропускаем проверку полей
                 .isEqualTo(filmUpdate);
     }
 
+    @Test
+    void testUpdateFilmWithStaleVersionResultEmptyAndFilmNotChanged() {
+
+        // Подготавливаем данные для теста
+        filmDao.save(film1);
+        filmUpdate.setVersion(0L);
+        Film firstEditor = filmDao.update(filmUpdate).orElseThrow();
+        Film secondEditor = filmUpdate.toBuilder()
+                .name("Stale Update")
+                .version(0L)
+                .build();
+
+        // вызываем тестируемый метод
+        Optional<Film> result = filmDao.update(secondEditor);
+
+        // проверяем утверждения
+        assertEquals(1L, firstEditor.getVersion()); // каждое обновление увеличивает версию
+        assertThat(result).isEmpty(); // обновление с устаревшей версией не выполняется
+        Film stored = filmDao.findById(film1.getId()).orElseThrow();
+        assertEquals("Film Updated", stored.getName()); // изменения первого редактора не потеряны
+        assertEquals(1L, stored.getVersion());
+    }
+
+    @Test
+    void testUpdateFilmGenresResultOnlyChangedLinksAndLikeCountWithoutLikes() {
+
+        // Подготавливаем данные для теста
+        setUpGenres();
+        setUpUsers();
+        listGenreIds.add(genreOnlyId1);
+        listGenreIds.add(genreOnlyId2);
+        film1.setGenres(listGenreIds);
+        filmDao.save(film1);
+        userDao.save(user1);
+        filmDao.addLike(film1.getId(), user1.getId());
+        Set<Genre> newGenreIds = new TreeSet<>(Comparator.comparing(Genre::getId));
+        newGenreIds.add(genreOnlyId2);
+        newGenreIds.add(Genre.builder().id(3L).build());
+        filmUpdate.setGenres(newGenreIds);
+
+        // вызываем тестируемый метод
+        Film result = filmDao.update(filmUpdate).orElseThrow();
+        filmUpdate.setGenres(null);
+        Film resultWithoutGenres = filmDao.update(filmUpdate).orElseThrow();
+
+        // проверяем утверждения
+        assertEquals(List.of("Драма", "Мультфильм"), result.getGenres().stream()
+                .map(Genre::getName)
+                .collect(Collectors.toList())); // проверяем что названия жанров взяты из справочника
+        assertEquals(1, result.getLikeCount()); // проверяем что счетчик взят из обновленной строки
+        assertNull(result.getLikedUserIds()); // проверяем что лайки не перечитываются
+        assertEquals(Set.of(user1.getId()), filmDao.findById(film1.getId()).orElseThrow().getLikedUserIds());
+        assertEquals("PG", result.getMpa().getName());
+        assertThat(resultWithoutGenres)
+                .usingRecursiveComparison() // проверяем что без жанров в запросе сохраненные жанры не меняются
+                .isEqualTo(filmDao.findById(film1.getId(), FilmView.SUMMARY).orElseThrow());
+        assertThat(result)
+                .usingRecursiveComparison() // проверяем что собранный фильм совпадает с фильмом из DB
+                .ignoringFields("version") // второе обновление увеличило версию
+                .isEqualTo(filmDao.findById(film1.getId(), FilmView.SUMMARY).orElseThrow());
+        assertEquals(1L, result.getVersion());
+        assertEquals(2L, resultWithoutGenres.getVersion());
+    }
+
     @Test
     void testUpdateFilmWithInvalidFilmIdResultNull() {
 
@@ -307,18 +595,75 @@ class FilmDaoDBImplTest {
         Long user1Id = user1.getId();
 
         // вызываем тестируемый метод
-        boolean result = filmDao.addLike(film1Id, user1Id);
+        LikeStatus result = filmDao.addLike(film1Id, user1Id);
 
         // проверяем утверждения
         assertThat(result)
-                .isEqualTo(true); // проверяем что метод подтверждает добавление лайка DB
+                .isEqualTo(LikeStatus.OK); // проверяем что метод подтверждает добавление лайка DB
 
         // повторно вызываем тестируемый метод
-        boolean result2 = filmDao.addLike(film1Id, user1Id); // повторяем добавление уже существующего лайка
+        LikeStatus result2 = filmDao.addLike(film1Id, user1Id); // повторяем добавление уже существующего лайка
 
         // проверяем утверждения
         assertThat(result2)
-                .isEqualTo(false); // проверяем что метод не подтверждает добавление уже существующего лайка DB
+                .isEqualTo(LikeStatus.ALREADY_LIKED); // проверяем что метод не подтверждает добавление уже существующего лайка DB
+        assertThat(filmDao.findById(film1Id).orElseThrow().getLikeCount())
+                .isEqualTo(1); // проверяем что счетчик лайков увеличен один раз
+    }
+
+    @Test
+    void testAddingLikeWhitUnknownFilmOrUserResultNotFoundStatus() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        filmDao.save(film1);
+        userDao.save(user1);
+        Long film1Id = film1.getId();
+        Long user1Id = user1.getId();
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertThat(filmDao.addLike(999L, user1Id))
+                .isEqualTo(LikeStatus.FILM_NOT_FOUND); // проверяем что отсутствующий фильм определяется без исключения
+        assertThat(filmDao.addLike(film1Id, 999L))
+                .isEqualTo(LikeStatus.USER_NOT_FOUND); // проверяем что отсутствующий пользователь определяется без исключения
+        assertThat(filmDao.addLike(999L, 999L))
+                .isEqualTo(LikeStatus.FILM_AND_USER_NOT_FOUND); // проверяем что отсутствуют и фильм, и пользователь
+        assertThat(filmDao.deleteLike(999L, user1Id))
+                .isEqualTo(LikeStatus.FILM_NOT_FOUND); // проверяем что удаление лайка отсутствующего фильма определяется
+        assertThat(filmDao.findById(film1Id).orElseThrow().getLikeCount())
+                .isEqualTo(0); // проверяем что счетчик лайков не изменен
+    }
+
+    @Test
+    void testSaveLikesWhitAddedAndDeletedLikesResultBatchAppliedAndCountsChanged() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        filmDao.save(film1);
+        filmDao.save(film2);
+        userDao.save(user1);
+        userDao.save(user2);
+        Long film1Id = film1.getId();
+        Long film2Id = film2.getId();
+        Long user1Id = user1.getId();
+        Long user2Id = user2.getId();
+        filmDao.addLike(film1Id, user1Id);
+        jdbcTemplate.update("UPDATE films SET like_count = 10 WHERE id = ?", film1Id); // счетчик не пересчитывается
+
+        // вызываем тестируемый метод
+        filmDao.saveLikes(List.of(Like.builder().filmId(film1Id).userId(user2Id).build(),
+                        Like.builder().filmId(film1Id).userId(user2Id).build(), // повторный лайк пропускается
+                        Like.builder().filmId(999L).userId(user2Id).build(), // лайк отсутствующего фильма пропускается
+                        Like.builder().filmId(film2Id).userId(user1Id).build(),
+                        Like.builder().filmId(film2Id).userId(user2Id).build()),
+                List.of(Like.builder().filmId(film1Id).userId(user1Id).build(),
+                        Like.builder().filmId(film2Id).userId(999L).build())); // отсутствующий лайк пропускается
+
+        // проверяем утверждения
+        Film film = filmDao.findById(film1Id).orElseThrow();
+        assertEquals(Set.of(user2Id), film.getLikedUserIds()); // проверяем что лайки добавлены и удалены
+        assertEquals(10, film.getLikeCount()); // проверяем что счетчик изменен на разницу +1 - 1
+        assertEquals(2, filmDao.findById(film2Id).orElseThrow().getLikeCount());
     }
 
     @Test
@@ -346,7 +691,7 @@ class FilmDaoDBImplTest {
                 .isEqualTo(2); // проверяем что findPopularFilms возвращает верное количество фильмов
         assertThat(result.get(0))
                 .usingRecursiveComparison() // проверяем значения полей обновленного фильма
-                .ignoringFields("likedUserIds", "genres") // пропускаем проверку полей
+                .ignoringFields("likedUserIds", "likeCount", "genres") // пропускаем проверку полей
                 .isEqualTo(film2); // проверяем что findPopularFilms возвращает фильмы в порядке убывания популярности
     }
 
@@ -365,17 +710,129 @@ class FilmDaoDBImplTest {
         filmDao.addLike(film1Id, user2Id);
 
         // вызываем тестируемый метод
-        boolean result = filmDao.deleteLike(film1Id, user1Id);
+        LikeStatus result = filmDao.deleteLike(film1Id, user1Id);
 
         // проверяем утверждения
         assertThat(result)
-                .isEqualTo(true); // проверяем что метод подтверждает удаление лайка из DB
+                .isEqualTo(LikeStatus.OK); // проверяем что метод подтверждает удаление лайка из DB
 
         // повторно вызываем тестируемый метод
-        boolean result2 = filmDao.deleteLike(film1Id, user1Id); // повторяем удаление уже удаленного лайка
+        LikeStatus result2 = filmDao.deleteLike(film1Id, user1Id); // повторяем удаление уже удаленного лайка
 
         // проверяем утверждения
         assertThat(result2)
-                .isEqualTo(false); // проверяем что метод не подтверждает удаление несуществующего лайка из DB
+                .isEqualTo(LikeStatus.NOT_LIKED); // проверяем что метод не подтверждает удаление несуществующего лайка из DB
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testLikeCountMatchesLikesAfterConcurrentLikesAndUnlikes() throws InterruptedException {
+
+        // Подготавливаем данные для теста: фиксируем данные в DB, чтобы их видели все потоки
+        FilmDaoDBImpl filmDaoDB = new FilmDaoDBImpl(jdbcTemplate, referenceData);
+        filmDao.save(film1);
+        filmDao.save(film2);
+        List<Long> filmIds = List.of(film1.getId(), film2.getId());
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            userIds.add(userDao.save(User.builder()
+                    .login("user-" + i)
+                    .name("User-" + i)
+                    .email("user-" + i + "@mail.ru")
+                    .birthday(LocalDate.of(1990, 1, 1))
+                    .build()).getId());
+        }
+
+        // вызываем тестируемые методы из нескольких потоков
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2000; i++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Long filmId = filmIds.get(random.nextInt(filmIds.size()));
+                Long userId = userIds.get(random.nextInt(userIds.size()));
+                if (random.nextBoolean()) {
+                    filmDaoDB.addLike(filmId, userId);
+                } else {
+                    filmDaoDB.deleteLike(filmId, userId);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // проверяем утверждения
+        for (Long filmId : filmIds) {
+            Integer likeCount = jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?",
+                    Integer.class, filmId);
+            Integer likes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = ?",
+                    Integer.class, filmId);
+            assertEquals(likes, likeCount); // проверяем что счетчик совпадает с количеством лайков
+        }
+        assertEquals(0, filmDaoDB.recountLikes()); // проверяем что восстановление не нашло расхождений
+    }
+
+    @Test
+    void testRecountLikesResultRepairedLikeCount() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        FilmDaoDBImpl filmDaoDB = new FilmDaoDBImpl(jdbcTemplate, referenceData);
+        filmDao.save(film1);
+        userDao.save(user1);
+        userDao.save(user2);
+        filmDao.addLike(film1.getId(), user1.getId());
+        filmDao.addLike(film1.getId(), user2.getId());
+        jdbcTemplate.update("UPDATE films SET like_count = 0 WHERE id = ?", film1.getId()); // портим счетчик
+
+        // вызываем тестируемый метод
+        int result = filmDaoDB.recountLikes();
+
+        // проверяем утверждения
+        assertEquals(1, result); // проверяем что исправлен один фильм
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?",
+                Integer.class, film1.getId())); // проверяем что счетчик восстановлен
+    }
+
+    @Test
+    void testRecountLikesOnStartupResultRepairedOnlyWhenEnabled() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        FilmDaoDBImpl filmDaoDB = new FilmDaoDBImpl(jdbcTemplate, referenceData);
+        filmDao.save(film1);
+        userDao.save(user1);
+        filmDao.addLike(film1.getId(), user1.getId());
+        jdbcTemplate.update("UPDATE films SET like_count = 5 WHERE id = ?", film1.getId()); // портим счетчик
+
+        // вызываем тестируемый метод
+        filmDaoDB.recountLikesOnStartup(); // по умолчанию выключено
+        Integer notRepaired = jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?",
+                Integer.class, film1.getId());
+        ReflectionTestUtils.setField(filmDaoDB, "isRecountOnStartup", true);
+        filmDaoDB.recountLikesOnStartup();
+
+        // проверяем утверждения
+        assertEquals(5, notRepaired);
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?",
+                Integer.class, film1.getId())); // проверяем что счетчик восстановлен при запуске
+    }
+
+    @Test
+    void testDeleteUserResultLikeCountDecremented() {
+
+        // Подготавливаем данные для теста
+        setUpUsers();
+        filmDao.save(film1);
+        userDao.save(user1);
+        userDao.save(user2);
+        filmDao.addLike(film1.getId(), user1.getId());
+        filmDao.addLike(film1.getId(), user2.getId());
+
+        // вызываем тестируемый метод
+        userDao.deleteById(user1.getId());
+
+        // проверяем утверждения
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?",
+                Integer.class, film1.getId())); // проверяем что лайк удаленного пользователя не учитывается
     }
-}
\ No newline at end of file
+}
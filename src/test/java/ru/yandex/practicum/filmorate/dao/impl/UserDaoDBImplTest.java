@@ -7,12 +7,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
 import ru.yandex.practicum.filmorate.dao.UserDao;
 import ru.yandex.practicum.filmorate.exception.SQLDataAccessException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -64,7 +69,7 @@ class UserDaoDBImplTest {
                 .login("User-1-Update")
                 .name("User-1 Name-Update")
                 .email("user-1@mail.ru")
-                .friends(Set.of(2L))
+                .friends(LongSortedSet.of(2L))
                 .birthday(LocalDate.of(1985, 5, 5))
                 .build();
     }
@@ -169,6 +174,48 @@ class UserDaoDBImplTest {
                 .isEqualTo(2); // проверяем что findAll возвращает верное количество пользователей
     }
 
+    @Test
+    void testStreamAllResultAllUsersInOrder() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.addFriend(user1.getId(), user2.getId());
+        List<User> result = new ArrayList<>();
+
+        // вызываем тестируемый метод
+        userDao.streamAll(result::add);
+
+        // проверяем утверждения
+        assertThat(result)
+                .usingRecursiveComparison() // проверяем что поток содержит тех же пользователей, что и findAll
+                .isEqualTo(userDao.findAll());
+    }
+
+    @Test
+    void testStreamAllInSeveralPagesResultAllUsersAndIdsInOrder() {
+
+        // Подготавливаем данные для теста
+        UserDaoDBImpl userDaoDB = new UserDaoDBImpl(jdbcTemplate);
+        ReflectionTestUtils.setField(userDaoDB, "streamFetchSize", 1); // по одному пользователю на страницу
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.save(user3);
+        userDao.addFriend(user1.getId(), user3.getId());
+        List<User> result = new ArrayList<>();
+        List<Long> resultIds = new ArrayList<>();
+
+        // вызываем тестируемый метод
+        userDaoDB.streamAll(result::add);
+        userDaoDB.streamAllIds(resultIds::add);
+
+        // проверяем утверждения
+        assertThat(result)
+                .usingRecursiveComparison() // проверяем что страницы склеены без пропусков и повторов
+                .isEqualTo(userDao.findAll());
+        assertEquals(List.of(user1.getId(), user2.getId(), user3.getId()), resultIds);
+    }
+
     @Test
     void testUpdateUserWithExpectedResultNotNull() {
 
@@ -187,6 +234,28 @@ class UserDaoDBImplTest {
                 .isEqualTo(userUpdate);
     }
 
+    @Test
+    void testUpdateUserWithVersionResultUpdatedOnlyWithCurrentVersion() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        User staleUser = userUpdate.toBuilder()
+                .name("Stale Name")
+                .version(0L)
+                .build();
+        userUpdate.setVersion(0L);
+
+        // вызываем тестируемый метод
+        User result = userDao.update(userUpdate).orElse(null);
+        User staleResult = userDao.update(staleUser).orElse(null);
+
+        // проверяем утверждения
+        assertThat(result).isNotNull();
+        assertEquals(1L, result.getVersion()); // версия увеличена обновлением
+        assertThat(staleResult).isNull(); // обновление с устаревшей версией не выполняется
+        assertEquals(userUpdate.getName(), userDao.findById(user1.getId()).orElseThrow().getName());
+    }
+
     @Test
     void testUpdateUserWithInvalidUserIdResultNull() {
 
@@ -266,6 +335,64 @@ class UserDaoDBImplTest {
                 .isEqualTo(false); // проверяем что метод не подтверждает добавление уже существующего друга DB
     }
 
+    @Test
+    void testAddFriendFromHigherIdResultOneCanonicalRow() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        Long user1Id = user1.getId();
+        Long user2Id = user2.getId();
+
+        // вызываем тестируемый метод
+        boolean result = userDao.addFriend(user2Id, user1Id); // заявку отправляет пользователь с большим ID
+
+        // проверяем утверждения
+        assertThat(result)
+                .isEqualTo(true);
+        assertThat(jdbcTemplate.queryForMap("SELECT * FROM friendships"))
+                .isEqualTo(Map.of("USER_LOW", user1Id.intValue(), "USER_HIGH", user2Id.intValue(),
+                        "INITIATED_BY_LOW", false, "CONFIRMED", false)); // пара хранится одной строкой
+        assertThat(userDao.findById(user2Id).orElseThrow().getFriends())
+                .isEqualTo(LongSortedSet.of(user1Id)); // отправитель видит друга
+        assertThat(userDao.findById(user1Id).orElseThrow().getFriends())
+                .isEqualTo(new LongSortedSet()); // получатель не видит неподтвержденную заявку
+
+        // повторно вызываем тестируемый метод
+        boolean result2 = userDao.deleteFriend(user1Id, user2Id); // удаляем дружбу в обратном порядке
+
+        // проверяем утверждения
+        assertThat(result2)
+                .isEqualTo(true);
+        assertThat(userDao.findById(user2Id).orElseThrow().getFriends())
+                .isEqualTo(new LongSortedSet());
+    }
+
+    @Test
+    void testAddFriendsResultAddedOnlyNewFriendRequests() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.save(user3);
+        userDao.addFriend(user2.getId(), user1.getId());
+        List<Friendship> friendships = List.of(
+                Friendship.builder().userId(user1.getId()).friendId(user2.getId()).build(),
+                Friendship.builder().userId(user1.getId()).friendId(user3.getId()).build(),
+                Friendship.builder().userId(user3.getId()).friendId(user2.getId()).build());
+
+        // вызываем тестируемый метод
+        boolean[] result = userDao.addFriends(friendships);
+
+        // проверяем утверждения
+        assertThat(result)
+                .isEqualTo(new boolean[]{false, true, true}); // встречная заявка уже существует
+        assertThat(userDao.findById(user1.getId()).orElseThrow().getFriends())
+                .isEqualTo(LongSortedSet.of(user3.getId()));
+        assertThat(userDao.findExistingIds(List.of(user1.getId(), 99L, user3.getId())))
+                .isEqualTo(Set.of(user1.getId(), user3.getId())); // проверяем поиск существующих пользователей
+    }
+
     @Test
     void testFindAllFriendsResultListOfUsers() {
 
@@ -296,6 +423,42 @@ class UserDaoDBImplTest {
                 .isEqualTo(user2); // проверяем что первым первым идет друг с id=2
     }
 
+    @Test
+    void testFindAllFriendsWithCursorResultPageOfFriends() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.save(user3);
+        userDao.save(user4);
+        userDao.addFriend(user1.getId(), user2.getId());
+        userDao.addFriend(user1.getId(), user3.getId());
+        userDao.addFriend(user1.getId(), user4.getId());
+
+        // вызываем тестируемый метод
+        List<User> result = userDao.findAllFriends(user1.getId(), user2.getId(), 1);
+
+        // проверяем утверждения
+        assertThat(result.size()).isEqualTo(1); // проверяем размер страницы
+        assertThat(result.get(0).getId()).isEqualTo(user3.getId()); // проверяем что страница начинается после курсора
+    }
+
+    @Test
+    void testFindAllWithCursorResultPageOfUsers() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.save(user3);
+
+        // вызываем тестируемый метод
+        List<User> result = userDao.findAll(1L, 5);
+
+        // проверяем утверждения
+        assertThat(result.size()).isEqualTo(2); // проверяем что в страницу попали пользователи после курсора
+        assertThat(result.get(0).getId()).isEqualTo(2L); // проверяем что страница упорядочена по id
+    }
+
     @Test
     void testFindCommonFriendsResultListOfUsers() {
 
@@ -328,6 +491,86 @@ class UserDaoDBImplTest {
                 .isEqualTo(user1); // проверяем что первым первым идет друг с id=2
     }
 
+    @Test
+    void testFindUserByIdWithConfirmedFriendshipResultFriendsOfBothUsers() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.save(user3);
+        userDao.addFriend(user1.getId(), user2.getId());
+        userDao.addFriend(user3.getId(), user1.getId());
+        jdbcTemplate.update("UPDATE friendships SET confirmed = TRUE WHERE user_low = ? AND user_high = ?",
+                user1.getId(), user3.getId());
+
+        // вызываем тестируемый метод
+        User result1 = userDao.findById(user1.getId()).orElseThrow();
+        User result2 = userDao.findById(user2.getId()).orElseThrow();
+        User result3 = userDao.findById(user3.getId()).orElseThrow();
+
+        // проверяем утверждения
+        assertThat(result1.getFriends())
+                .isEqualTo(LongSortedSet.of(user2.getId(), user3.getId())); // исходящая заявка и подтвержденная входящая
+        assertThat(result2.getFriends())
+                .isEqualTo(new LongSortedSet()); // неподтвержденная входящая заявка не делает пользователя другом
+        assertThat(result3.getFriends())
+                .isEqualTo(LongSortedSet.of(user1.getId())); // проверяем исходящую заявку
+    }
+
+    @Test
+    void testFindAllFriendIdsResultFriendsOfEveryUser() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.save(user3);
+        userDao.addFriend(user1.getId(), user2.getId());
+        userDao.addFriend(user3.getId(), user1.getId());
+        userDao.addFriend(user2.getId(), user3.getId());
+        jdbcTemplate.update("UPDATE friendships SET confirmed = TRUE WHERE user_low = ? AND user_high = ?",
+                user1.getId(), user3.getId());
+
+        // вызываем тестируемый метод
+        Map<Long, LongSortedSet> result = userDao.findAllFriendIds();
+
+        // проверяем утверждения
+        assertThat(result)
+                .isEqualTo(Map.of(
+                        user1.getId(), LongSortedSet.of(user2.getId(), user3.getId()),
+                        user2.getId(), LongSortedSet.of(user3.getId()),
+                        user3.getId(), LongSortedSet.of(user1.getId()))); // друзья совпадают с findById
+    }
+
+    @Test
+    void testFindAllByIdsResultUsersInOrderOfIds() {
+
+        // Подготавливаем данные для теста
+        userDao.save(user1);
+        userDao.save(user2);
+        userDao.save(user3);
+
+        // вызываем тестируемый метод
+        List<User> result = userDao.findAllByIds(List.of(user3.getId(), 99L, user1.getId()));
+
+        // проверяем утверждения
+        assertThat(result.size()).isEqualTo(2); // несуществующий пользователь пропущен
+        assertThat(result.get(0).getId()).isEqualTo(user3.getId()); // порядок совпадает с порядком ID
+        assertThat(result.get(1).getId()).isEqualTo(user1.getId());
+    }
+
+    @Test
+    void testFindUsersQueryPlanResultFriendshipsReadByIndex() {
+
+        // вызываем тестируемый метод
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + UserDaoDBImpl.FIND_ALL_FRIENDS_BY_USER_ID,
+                String.class, 1L, 1L);
+
+        // проверяем утверждения
+        assertThat(plan)
+                .contains("USER_LOW = U.ID */", "USER_HIGH = U.ID */") // друзья каждого пользователя ищутся по индексам
+                .doesNotContain("tableScan"); // таблица дружбы не читается целиком
+    }
+
     @Test
     void testDeleteFriendByUserIdAndFriendIdResultDeletedLinkUserFriend() {
 
@@ -0,0 +1,152 @@
+package ru.yandex.practicum.filmorate.dao.impl.buffer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.impl.memory.FilmDaoInMemoryImpl;
+import ru.yandex.practicum.filmorate.dao.impl.memory.UserDaoInMemoryImpl;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmDaoWriteBehindImplTest {
+    private FilmDaoInMemoryImpl storedFilms;
+    private FilmDaoWriteBehindImpl filmDao;
+    private MeterRegistry meterRegistry;
+    private Long filmId;
+    private Long user1Id;
+    private Long user2Id;
+
+    @BeforeEach
+    void setUp() {
+
+        storedFilms = new FilmDaoInMemoryImpl();
+        UserDaoInMemoryImpl users = new UserDaoInMemoryImpl();
+        meterRegistry = new SimpleMeterRegistry();
+        filmDao = new FilmDaoWriteBehindImpl(storedFilms, users, meterRegistry, true, Duration.ofHours(1), 1000);
+        filmId = storedFilms.save(Film.builder().name("Film").duration(100).build()).getId();
+        user1Id = users.save(User.builder().login("user1").birthday(LocalDate.of(2000, 1, 1)).build()).getId();
+        user2Id = users.save(User.builder().login("user2").birthday(LocalDate.of(2000, 1, 1)).build()).getId();
+    }
+
+    @Test
+    @DisplayName("A test to check that pending likes are visible to reads and written by a flush.")
+    void pendingLikesAreMergedAndFlushed() {
+
+        // Подготавливаем данные для теста
+        storedFilms.addLike(filmId, user2Id); // сохраненный лайк
+
+        // вызываем тестируемый метод
+        assertEquals(LikeStatus.OK, filmDao.addLike(filmId, user1Id));
+        assertEquals(LikeStatus.ALREADY_LIKED, filmDao.addLike(filmId, user1Id)); // ожидающий лайк учитывается
+        assertEquals(LikeStatus.OK, filmDao.deleteLike(filmId, user2Id));
+
+        // проверяем утверждения
+        assertEquals(Set.of(user2Id), storedFilms.findById(filmId).orElseThrow().getLikedUserIds()); // БД не изменена
+        Film film = filmDao.findById(filmId).orElseThrow();
+        assertEquals(Set.of(user1Id), film.getLikedUserIds()); // чтение видит ожидающие изменения
+        assertEquals(1, film.getLikeCount());
+        assertEquals(List.of(user1Id), filmDao.findLikes(filmId, null, 10));
+        assertEquals(2.0, meterRegistry.get("filmorate.likes.pending").gauge().value());
+
+        filmDao.flush();
+
+        assertEquals(Set.of(user1Id), storedFilms.findById(filmId).orElseThrow().getLikedUserIds()); // записано в БД
+        assertEquals(Set.of(user1Id), filmDao.findById(filmId).orElseThrow().getLikedUserIds());
+        assertEquals(1, filmDao.findAllLikeCounts().get(filmId));
+        assertEquals(0.0, meterRegistry.get("filmorate.likes.pending").gauge().value());
+        assertEquals(1, meterRegistry.get("filmorate.likes.flush").timer().count());
+    }
+
+    @Test
+    @DisplayName("A test to check that a like followed by an unlike cancels out without a write.")
+    void likeAndUnlikeCancelOut() {
+
+        // вызываем тестируемый метод
+        filmDao.addLike(filmId, user1Id);
+        filmDao.deleteLike(filmId, user1Id);
+
+        // проверяем утверждения
+        assertEquals(0.0, meterRegistry.get("filmorate.likes.pending").gauge().value()); // журнал пуст
+        assertEquals(LikeStatus.NOT_LIKED, filmDao.deleteLike(filmId, user1Id));
+        assertEquals(0, filmDao.findById(filmId, FilmView.SUMMARY).orElseThrow().getLikeCount());
+        filmDao.flush();
+        assertEquals(0, meterRegistry.get("filmorate.likes.flush").timer().count()); // нечего записывать
+    }
+
+    @Test
+    @DisplayName("A test to check missing films and users and the final flush on shutdown.")
+    void missingIdsAndShutdownFlush() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        filmDao.start();
+
+        // вызываем тестируемый метод
+        assertEquals(LikeStatus.FILM_NOT_FOUND, filmDao.addLike(999L, user1Id));
+        assertEquals(LikeStatus.USER_NOT_FOUND, filmDao.addLike(filmId, 999L));
+        assertEquals(LikeStatus.FILM_AND_USER_NOT_FOUND, filmDao.deleteLike(999L, 999L));
+        filmDao.addLike(filmId, user1Id);
+        filmDao.stop();
+
+        // проверяем утверждения
+        assertEquals(Set.of(user1Id), storedFilms.findById(filmId).orElseThrow().getLikedUserIds()); // буфер сброшен
+    }
+
+    @Test
+    @DisplayName("A test to check that a like reads only its own stored state, not the whole film.")
+    void likeChecksOnlyItsOwnStoredState() {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl films = new FilmDaoInMemoryImpl() {
+            @Override
+            public Optional<Film> findById(Long filmId, FilmView view) {
+                throw new AssertionError("The film must not be read to change a like.");
+            }
+        };
+        UserDaoInMemoryImpl users = new UserDaoInMemoryImpl();
+        FilmDaoWriteBehindImpl buffer = new FilmDaoWriteBehindImpl(films, users, new SimpleMeterRegistry(), true,
+                Duration.ofHours(1), 1000);
+        Long storedFilmId = films.save(Film.builder().name("Film").duration(100).build()).getId();
+        Long userId = users.save(User.builder().login("user").birthday(LocalDate.of(2000, 1, 1)).build()).getId();
+        films.addLike(storedFilmId, userId);
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertEquals(LikeStatus.ALREADY_LIKED, buffer.addLike(storedFilmId, userId)); // сохраненный лайк учитывается
+        assertEquals(LikeStatus.OK, buffer.deleteLike(storedFilmId, userId));
+        assertFalse(buffer.isLikeExists(storedFilmId, userId)); // ожидающее удаление учитывается
+        assertTrue(films.isLikeExists(storedFilmId, userId));
+    }
+
+    @Test
+    @DisplayName("A test to check that a like after the shutdown does not fail on the stopped scheduler.")
+    void likeAfterShutdownIsNotRejected() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        FilmDaoWriteBehindImpl buffer = new FilmDaoWriteBehindImpl(storedFilms, new UserDaoInMemoryImpl() {
+            @Override
+            public boolean isExistsById(Long userId) {
+                return true;
+            }
+        }, new SimpleMeterRegistry(), true, Duration.ofHours(1), 1);
+        buffer.start();
+        buffer.stop();
+
+        // вызываем тестируемый метод
+        LikeStatus status = buffer.addLike(filmId, user1Id); // max-pending достигнут, сброс запрашивается
+
+        // проверяем утверждения
+        assertEquals(LikeStatus.OK, status);
+        assertTrue(buffer.isLikeExists(filmId, user1Id));
+    }
+}
@@ -0,0 +1,166 @@
+package ru.yandex.practicum.filmorate.dao.impl.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.dao.FilmDao;
+import ru.yandex.practicum.filmorate.dao.UserDao;
+import ru.yandex.practicum.filmorate.dao.impl.FilmDaoDBImpl;
+import ru.yandex.practicum.filmorate.dao.impl.GenreDaoDBImpl;
+import ru.yandex.practicum.filmorate.dao.impl.MpaDaoDBImpl;
+import ru.yandex.practicum.filmorate.dao.impl.ReferenceData;
+import ru.yandex.practicum.filmorate.dao.impl.UserDaoDBImpl;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class FilmDaoCachedImplTest {
+    private final JdbcTemplate jdbcTemplate;
+    private MeterRegistry meterRegistry;
+    private FilmDao filmDaoDB;
+    private FilmDaoCachedImpl filmDao;
+    private UserDao userDao;
+    private Film film;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        ReferenceData referenceData = new ReferenceData(new GenreDaoDBImpl(jdbcTemplate),
+                new MpaDaoDBImpl(jdbcTemplate));
+        filmDaoDB = new FilmDaoDBImpl(jdbcTemplate, referenceData);
+        filmDao = new FilmDaoCachedImpl(filmDaoDB, meterRegistry, 100);
+        userDao = new UserDaoDBImpl(jdbcTemplate);
+        film = Film.builder()
+                .name("nisi eiusmod")
+                .description("adipisicing")
+                .releaseDate(LocalDate.of(1967, 3, 25))
+                .duration(100)
+                .mpa(Mpa.builder().id(1L).name("G").build())
+                .build();
+        user = User.builder()
+                .email("mail@mail.ru")
+                .login("dolore")
+                .name("Nick Name")
+                .birthday(LocalDate.of(1946, 8, 20))
+                .build();
+    }
+
+    @Test
+    void testFindByIdIsServedFromCache() {
+
+        // Подготавливаем данные для теста
+        Long filmId = filmDao.save(film).getId();
+
+        // вызываем тестируемый метод
+        filmDao.findById(filmId);
+        filmDao.findById(filmId);
+        boolean isExists = filmDao.isExistsById(filmId);
+
+        // проверяем утверждения
+        assertTrue(isExists);
+        assertEquals(1, cacheCounter("cache.gets", "miss"));
+        assertEquals(1, cacheCounter("cache.gets", "hit")); // проверка существования читает только набор ID
+    }
+
+    @Test
+    void testLikesInvalidateCachedFilm() {
+
+        // Подготавливаем данные для теста
+        Long filmId = filmDao.save(film).getId();
+        Long userId = userDao.save(user).getId();
+        filmDao.findById(filmId);
+
+        // вызываем тестируемый метод
+        filmDao.addLike(filmId, userId);
+        Set<Long> likesAfterAdd = filmDao.findById(filmId).orElseThrow().getLikedUserIds();
+        filmDao.deleteLike(filmId, userId);
+        Set<Long> likesAfterDelete = filmDao.findById(filmId).orElseThrow().getLikedUserIds();
+
+        // проверяем утверждения
+        assertEquals(Set.of(userId), likesAfterAdd);
+        assertTrue(likesAfterDelete.isEmpty());
+    }
+
+    @Test
+    void testUserDeletionInvalidatesCachedFilms() {
+
+        // Подготавливаем данные для теста
+        Long filmId = filmDao.save(film).getId();
+        Long userId = userDao.save(user).getId();
+        filmDao.addLike(filmId, userId);
+        filmDao.findById(filmId);
+
+        // вызываем тестируемый метод
+        userDao.deleteById(userId);
+        filmDao.onUserDeleted(new UserDeletedEvent(userId, List.of(filmId)));
+
+        // проверяем утверждения
+        assertTrue(filmDao.findById(filmId).orElseThrow().getLikedUserIds().isEmpty());
+    }
+
+    @Test
+    void testMissingFilmIsCachedUntilSaved() {
+
+        // Подготавливаем данные для теста
+        assertFalse(filmDao.isExistsById(1L));
+
+        // вызываем тестируемый метод
+        Long filmId = filmDao.save(film).getId();
+
+        // проверяем утверждения
+        assertEquals(1L, filmId);
+        assertTrue(filmDao.isExistsById(filmId));
+        assertEquals(filmId, filmDao.findAllByIds(List.of(filmId)).get(0).getId());
+    }
+
+    @Test
+    void testFilmSavedPastDecoratorIsFoundInWrappedDao() {
+
+        // Подготавливаем данные для теста
+        Long loadedId = filmDaoDB.save(film).getId();
+        filmDao = new FilmDaoCachedImpl(filmDaoDB, new SimpleMeterRegistry(), 100); // ID читаются при создании
+        Long savedPastId = filmDaoDB.save(film).getId();
+
+        // вызываем тестируемый метод
+        boolean isLoadedExists = filmDao.isExistsById(loadedId);
+        boolean isSavedPastExists = filmDao.isExistsById(savedPastId);
+        Long foundId = filmDao.findById(savedPastId).orElseThrow().getId();
+
+        // проверяем утверждения
+        assertTrue(isLoadedExists);
+        assertTrue(isSavedPastExists); // ID нет в наборе, фильм найден в обернутом DAO
+        assertEquals(savedPastId, foundId);
+        assertFalse(filmDao.isExistsById(savedPastId + 1));
+        assertTrue(filmDao.deleteById(savedPastId));
+        assertFalse(filmDao.isExistsById(savedPastId));
+    }
+
+    private double cacheCounter(String name, String result) {
+
+        return meterRegistry.get(name)
+                .tag("cache", "films")
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
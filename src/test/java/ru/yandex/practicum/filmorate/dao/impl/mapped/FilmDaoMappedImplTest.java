@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.dao.impl.mapped;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.impl.GenreDaoDBImpl;
+import ru.yandex.practicum.filmorate.dao.impl.MpaDaoDBImpl;
+import ru.yandex.practicum.filmorate.dao.impl.ReferenceData;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmDaoMappedImplTest {
+    private final JdbcTemplate jdbcTemplate;
+    private ReferenceData referenceData;
+    private FilmDaoMappedImpl filmDao;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+
+        referenceData = new ReferenceData(new GenreDaoDBImpl(jdbcTemplate), new MpaDaoDBImpl(jdbcTemplate));
+        referenceData.load();
+        filmDao = open(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        filmDao.close();
+    }
+
+    @Test
+    void testSaveAndFindFilmResultFieldsAndReferenceNames() {
+
+        // Подготавливаем данные для теста
+        Film film = film("Фильм", 1L, 3L);
+
+        // вызываем тестируемый метод
+        Film saved = filmDao.save(film);
+        Film result = filmDao.findById(saved.getId()).orElseThrow();
+
+        // проверяем утверждения
+        assertThat(result)
+                .usingRecursiveComparison() // проверяем что сохраненный и прочитанный фильмы совпадают
+                .isEqualTo(saved);
+        assertEquals("Фильм", result.getName()); // строки в UTF-8
+        assertEquals("PG", result.getMpa().getName()); // названия взяты из справочника
+        assertEquals(List.of("Комедия", "Мультфильм"), result.getGenres().stream()
+                .map(Genre::getName)
+                .collect(Collectors.toList()));
+        assertEquals(0L, result.getVersion());
+        assertTrue(filmDao.findById(saved.getId() + 1).isEmpty());
+    }
+
+    @Test
+    void testUpdateFilmResultStringsReplacedGenresKeptAndVersionChecked() {
+
+        // Подготавливаем данные для теста
+        Film saved = filmDao.save(film("Короткое", 1L));
+        Film update = film("Название длиннее прежнего", 2L).toBuilder()
+                .id(saved.getId())
+                .description("Д")
+                .genres(null)
+                .version(0L)
+                .build();
+
+        // вызываем тестируемый метод
+        Film result = filmDao.update(update).orElseThrow();
+
+        // проверяем утверждения
+        assertEquals("Название длиннее прежнего", result.getName()); // строка дописана в конец файла
+        assertEquals("Д", result.getDescription()); // строка записана на старое место
+        assertEquals(Set.of(1L), result.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet())); // без жанров в запросе сохраненные жанры не меняются
+        assertEquals(1L, result.getVersion());
+        assertTrue(filmDao.update(update.toBuilder().version(0L).build()).isEmpty()); // устаревшая версия
+        assertTrue(filmDao.update(update.toBuilder().id(999L).version(null).build()).isEmpty());
+    }
+
+    @Test
+    void testReopenFilesResultFilmsAndLikesRestored() {
+
+        // Подготавливаем данные для теста
+        List<Long> filmIds = filmDao.saveAll(LongStream.rangeClosed(1, 100) // больше начальной емкости файлов
+                .mapToObj(i -> film("Фильм " + i, i % 6 + 1))
+                .collect(Collectors.toList()));
+        filmDao.addLike(filmIds.get(0), 1L);
+        filmDao.addLike(filmIds.get(0), 2L);
+        filmDao.deleteLike(filmIds.get(0), 1L);
+        filmDao.addLike(filmIds.get(1), 1L);
+        filmDao.deleteById(filmIds.get(1));
+        List<Film> expected = filmDao.findAll(FilmView.FULL);
+
+        // вызываем тестируемый метод
+        filmDao.close();
+        filmDao = open(1);
+
+        // проверяем утверждения
+        assertEquals(99, expected.size());
+        assertThat(filmDao.findAll(FilmView.FULL))
+                .usingRecursiveComparison() // проверяем что после открытия файлов фильмы и лайки те же
+                .isEqualTo(expected);
+        assertEquals(List.of(2L), filmDao.findLikes(filmIds.get(0), null, 10));
+        assertFalse(filmDao.isExistsById(filmIds.get(1))); // удаленный фильм не восстановлен
+        assertEquals(LikeStatus.FILM_NOT_FOUND, filmDao.addLike(filmIds.get(1), 1L));
+        assertEquals(101L, filmDao.save(film("Новый", 1L)).getId()); // идентификаторы не повторяются
+        assertEquals(filmIds.get(0), filmDao.findPopularFilms(1).get(0).getId());
+    }
+
+    @Test
+    void testSaveFilmWithGenreIdAboveMaskResultException() {
+
+        // Подготавливаем данные для теста
+        Film film = film("Фильм", 1L, 64L);
+
+        // вызываем тестируемый метод
+        BadRequestException exception = assertThrows(BadRequestException.class, () -> filmDao.save(film));
+
+        // проверяем утверждения
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        assertEquals("The mapped films support the genre IDs from 1 to 63, but the ID is `64`.",
+                exception.getMessage());
+        assertTrue(filmDao.findAll(FilmView.FULL).isEmpty()); // фильм не сохранен
+        assertEquals(1L, filmDao.save(film("Фильм", 1L, 63L)).getId());
+    }
+
+    private FilmDaoMappedImpl open(int initialCapacity) {
+
+        return new FilmDaoMappedImpl(referenceData, directory.toString(), initialCapacity);
+    }
+
+    private static Film film(String name, Long... genreIds) {
+
+        Set<Genre> genres = new TreeSet<>(Comparator.comparing(Genre::getId));
+        for (Long genreId : genreIds) {
+            genres.add(Genre.builder().id(genreId).build());
+        }
+
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(2L).build())
+                .genres(genres)
+                .build();
+    }
+}
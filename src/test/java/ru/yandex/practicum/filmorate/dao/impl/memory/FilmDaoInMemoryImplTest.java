@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.dao.impl.memory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmDaoInMemoryImplTest {
+    private static final int THREADS = 16;
+
+    @Test
+    @DisplayName("A test to check that concurrent saves get unique IDs and are all stored.")
+    void concurrentSavesGetUniqueIds() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = new FilmDaoInMemoryImpl();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        // вызываем тестируемый метод
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < 1_000; i++) {
+                ids.add(filmDao.save(film()).getId());
+            }
+        });
+
+        // проверяем утверждения
+        assertEquals(THREADS * 1_000, ids.size()); // идентификаторы не повторяются
+        assertEquals(THREADS * 1_000, filmDao.findAll(FilmView.SUMMARY).size()); // все фильмы сохранены
+    }
+
+    @Test
+    @DisplayName("A test to check that concurrent likes and unlikes of one film are not lost.")
+    void concurrentLikesOfOneFilmAreNotLost() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = new FilmDaoInMemoryImpl();
+        Long filmId = filmDao.save(film()).getId();
+        AtomicInteger added = new AtomicInteger();
+
+        // вызываем тестируемый метод
+        runConcurrently(THREADS, thread -> {
+            for (long userId = 1; userId <= 2_000; userId++) { // все потоки лайкают одних и тех же пользователей
+                if (filmDao.addLike(filmId, userId) == LikeStatus.OK) {
+                    added.incrementAndGet();
+                }
+                if (userId % 2 == 0) {
+                    filmDao.deleteLike(filmId, userId);
+                }
+            }
+        });
+
+        // проверяем утверждения
+        Film film = filmDao.findById(filmId, FilmView.FULL).orElseThrow();
+        assertTrue(added.get() >= 2_000); // каждый пользователь лайкнул хотя бы один раз
+        assertEquals(LongStream.rangeClosed(1, 2_000).filter(userId -> userId % 2 != 0).boxed()
+                .collect(Collectors.toSet()), film.getLikedUserIds()); // остались только нечетные пользователи
+        assertEquals(1_000, film.getLikeCount()); // счетчик совпадает с множеством
+        assertEquals(1_000, filmDao.findAllLikeCounts().get(filmId));
+    }
+
+    @Test
+    @DisplayName("A test to check that the likes of a film survive its update and are removed with it.")
+    void updateKeepsLikesAndDeleteRemovesThem() {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = new FilmDaoInMemoryImpl();
+        Film film = filmDao.save(film());
+        filmDao.addLike(film.getId(), 7L);
+
+        // вызываем тестируемый метод
+        filmDao.update(film.toBuilder().name("Updated").likedUserIds(null).build());
+
+        // проверяем утверждения
+        assertEquals(List.of(7L), filmDao.findLikes(film.getId(), null, 10));
+        assertEquals("Updated", filmDao.findById(film.getId(), FilmView.FULL).orElseThrow().getName());
+        assertTrue(filmDao.deleteById(film.getId()));
+        assertEquals(LikeStatus.FILM_NOT_FOUND, filmDao.addLike(film.getId(), 7L));
+    }
+
+    @Test
+    @DisplayName("A test to check that concurrent versioned updates of one film are not lost.")
+    void concurrentVersionedUpdatesAreNotLost() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = new FilmDaoInMemoryImpl();
+        Long filmId = filmDao.save(film()).getId();
+
+        // вызываем тестируемый метод
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < 500; i++) { // чтение и запись без блокировок, повтор при конфликте версий
+                while (true) {
+                    Film stored = filmDao.findById(filmId, FilmView.SUMMARY).orElseThrow();
+                    Film edited = stored.toBuilder().duration(stored.getDuration() + 1).build();
+                    if (filmDao.update(edited).isPresent()) {
+                        break;
+                    }
+                }
+            }
+        });
+
+        // проверяем утверждения
+        Film film = filmDao.findById(filmId, FilmView.SUMMARY).orElseThrow();
+        assertEquals(100 + THREADS * 500, film.getDuration()); // ни одно изменение не потеряно
+        assertEquals(THREADS * 500L, film.getVersion()); // версия увеличена каждым обновлением
+        assertTrue(filmDao.update(film.toBuilder().version(0L).build()).isEmpty()); // устаревшая версия
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("A benchmark of like throughput from 1 to 32 threads, run with -Dbenchmark=true.")
+    void likeThroughput() throws InterruptedException {
+
+        int films = 1_000;
+        int likesPerThread = 200_000;
+
+        for (int threads = 1; threads <= 32; threads *= 2) {
+            FilmDaoInMemoryImpl filmDao = new FilmDaoInMemoryImpl();
+            LongStream.range(0, films).forEach(i -> filmDao.save(film()));
+
+            long start = System.nanoTime();
+            runConcurrently(threads, thread -> {
+                for (int i = 0; i < likesPerThread; i++) {
+                    long filmId = i % 10 == 0 ? 1 : 1 + (i * 31L + thread) % films; // каждый десятый лайк в один фильм
+                    filmDao.addLike(filmId, (long) thread * likesPerThread + i);
+                }
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("threads: %2d, likes/s: %,.0f%n", threads, threads * likesPerThread / seconds);
+        }
+    }
+
+    static void runConcurrently(int threads, ThreadTask task) throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int thread = 0; thread < threads; thread++) {
+            int number = thread;
+            executor.submit(() -> {
+                start.await();
+                task.run(number);
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+    }
+
+    private static Film film() {
+
+        return Film.builder()
+                .name("Film")
+                .description("Description")
+                .duration(100)
+                .build();
+    }
+
+    interface ThreadTask {
+        void run(int thread);
+    }
+}
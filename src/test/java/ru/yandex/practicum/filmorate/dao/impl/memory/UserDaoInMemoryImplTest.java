@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.dao.impl.memory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.dao.impl.memory.FilmDaoInMemoryImplTest.runConcurrently;
+
+class UserDaoInMemoryImplTest {
+
+    @Test
+    @DisplayName("A test to check that concurrent friendship changes keep both sides of every friendship.")
+    void concurrentFriendshipsStaySymmetric() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        UserDaoInMemoryImpl userDao = new UserDaoInMemoryImpl();
+        for (int i = 0; i < 50; i++) {
+            userDao.save(user());
+        }
+
+        // вызываем тестируемый метод
+        runConcurrently(16, thread -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 20_000; i++) {
+                long userId = random.nextLong(1, 51);
+                long friendId = random.nextLong(1, 51);
+                if (userId == friendId) {
+                    continue;
+                }
+                if (random.nextBoolean()) {
+                    userDao.addFriend(userId, friendId);
+                } else {
+                    userDao.deleteFriend(friendId, userId);
+                }
+            }
+        });
+
+        // проверяем утверждения
+        Map<Long, LongSortedSet> friendIds = userDao.findAllFriendIds();
+        friendIds.forEach((userId, ids) -> ids.forEach(friendId ->
+                assertTrue(friendIds.get(friendId).contains(userId)))); // дружба видна с обеих сторон
+    }
+
+    @Test
+    @DisplayName("A test to check that a deleted user is removed from the friends of other users.")
+    void deleteRemovesUserFromFriends() {
+
+        // Подготавливаем данные для теста
+        UserDaoInMemoryImpl userDao = new UserDaoInMemoryImpl();
+        Long userId = userDao.save(user()).getId();
+        Long friendId = userDao.save(user()).getId();
+        userDao.addFriend(userId, friendId);
+
+        // вызываем тестируемый метод
+        assertTrue(userDao.deleteById(userId));
+
+        // проверяем утверждения
+        assertTrue(userDao.findById(friendId).orElseThrow().getFriends().isEmpty());
+        assertFalse(userDao.addFriend(userId, friendId)); // пользователь удален
+    }
+
+    private static User user() {
+
+        return User.builder()
+                .email("user@mail.ru")
+                .login("user")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmPopularityIndexTest {
+    private FilmPopularityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FilmPopularityIndex(null);
+    }
+
+    @Test
+    @DisplayName("A test to check the order of films, ranks and pages after random changes.")
+    void randomChangesMatchSortedOrder() {
+
+        // Подготавливаем данные для теста
+        Random random = new Random(42);
+        Map<Long, Integer> likes = new HashMap<>();
+        for (long id = 1; id <= 200; id++) {
+            likes.put(id, random.nextInt(10));
+        }
+        index.rebuild(likes);
+
+        // вызываем тестируемый метод
+        for (int i = 0; i < 5_000; i++) {
+            long id = 1 + random.nextInt(250);
+            switch (random.nextInt(4)) {
+                case 0:
+                    index.add(id);
+                    likes.putIfAbsent(id, 0);
+                    break;
+                case 1:
+                    index.remove(id);
+                    likes.remove(id);
+                    break;
+                case 2:
+                    index.incrementLikes(id);
+                    likes.computeIfPresent(id, (key, value) -> value + 1);
+                    break;
+                default:
+                    index.decrementLikes(id);
+                    likes.computeIfPresent(id, (key, value) -> Math.max(0, value - 1));
+            }
+        }
+
+        // проверяем утверждения
+        List<Long> expected = likes.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        List<Long> actual = index.findPage(null, Integer.MAX_VALUE).stream()
+                .map(FilmPopularityIndex.Entry::getFilmId)
+                .collect(Collectors.toList());
+        assertEquals(expected, actual, "The films are not ordered by popularity.");
+
+        for (int position = 0; position < expected.size(); position++) {
+            long id = expected.get(position);
+            FilmPopularityIndex.Rank rank = index.findRank(id).orElseThrow();
+            assertEquals(position + 1, rank.getRank(), "The rank of the film is wrong.");
+            assertEquals(likes.get(id), rank.getLikes(), "The number of likes of the film is wrong.");
+        }
+    }
+
+    @Test
+    @DisplayName("A test to check reading the popular films page by page.")
+    void findPageWithCursor() {
+
+        // Подготавливаем данные для теста
+        index.rebuild(Map.of(1L, 3, 2L, 5, 3L, 3, 4L, 0, 5L, 1));
+
+        // вызываем тестируемый метод
+        List<FilmPopularityIndex.Entry> firstPage = index.findPage(null, 2);
+        List<FilmPopularityIndex.Entry> secondPage = index.findPage(firstPage.get(1), 2);
+        List<FilmPopularityIndex.Entry> lastPage = index.findPage(secondPage.get(1), 2);
+
+        // проверяем утверждения
+        assertEquals(List.of(2L, 1L), ids(firstPage), "The first page is wrong.");
+        assertEquals(List.of(3L, 5L), ids(secondPage), "The second page is wrong.");
+        assertEquals(List.of(4L), ids(lastPage), "The last page is wrong.");
+    }
+
+    @Test
+    @DisplayName("A test to check the rank of a film that is not indexed.")
+    void findRankOfUnknownFilm() {
+
+        // Подготавливаем данные для теста
+        index.rebuild(Map.of(1L, 1));
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertTrue(index.findRank(2L).isEmpty(), "The rank of an unknown film is found.");
+        assertEquals(1, index.findRank(1L).orElseThrow().getRank(), "The rank of the film is wrong.");
+    }
+
+    @Test
+    @DisplayName("A test to check that a user deletion takes one like from each film the user liked.")
+    void userDeletionDecrementsLikedFilmsOnly() {
+
+        // Подготавливаем данные для теста
+        index.rebuild(Map.of(1L, 2, 2L, 1, 3L, 1));
+        index.incrementLikes(3L); // лайк, сделанный после удаления пользователя из БД
+
+        // вызываем тестируемый метод
+        index.onUserDeleted(new UserDeletedEvent(7L, List.of(1L, 2L))); // индекс не перечитывает БД
+
+        // проверяем утверждения
+        assertEquals(List.of(3L, 1L, 2L), ids(index.findPage(null, 3)), "The films are not ordered by popularity.");
+        assertEquals(1, index.findRank(1L).orElseThrow().getLikes(), "The like of the deleted user is kept.");
+        assertEquals(0, index.findRank(2L).orElseThrow().getLikes(), "The like of the deleted user is kept.");
+        assertEquals(2, index.findRank(3L).orElseThrow().getLikes(), "The concurrent like is lost.");
+    }
+
+    private static List<Long> ids(List<FilmPopularityIndex.Entry> entries) {
+
+        return entries.stream()
+                .map(FilmPopularityIndex.Entry::getFilmId)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.dao.impl.memory.UserDaoInMemoryImpl;
+import ru.yandex.practicum.filmorate.event.UserDeletedEvent;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendGraphTest {
+    private static final int THREADS = 8;
+
+    private FriendGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        graph = new FriendGraph(null);
+        graph.rebuild(Map.of(
+                1L, LongSortedSet.of(2, 3, 4, 5),
+                2L, LongSortedSet.of(1, 3, 5),
+                3L, LongSortedSet.of(),
+                6L, LongSortedSet.of(1)));
+    }
+
+    @Test
+    @DisplayName("A test to check reading the friends of a user page by page.")
+    void findFriendIdsWithCursor() {
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertEquals(LongSortedSet.of(2, 3, 4, 5), graph.findFriendIds(1L));
+        assertArrayEquals(new long[]{2, 3}, graph.findFriendIds(1L, null, 2));
+        assertArrayEquals(new long[]{4, 5}, graph.findFriendIds(1L, 3L, 2));
+        assertTrue(graph.findFriendIds(3L).isEmpty()); // у пользователя нет друзей
+        assertTrue(graph.findFriendIds(99L).isEmpty()); // пользователь отсутствует в графе
+    }
+
+    @Test
+    @DisplayName("A test to check the common friends of two users.")
+    void findCommonFriendIds() {
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertEquals(LongSortedSet.of(3, 5), graph.findCommonFriendIds(1L, 2L));
+        assertEquals(LongSortedSet.of(), graph.findCommonFriendIds(1L, 6L));
+        assertEquals(LongSortedSet.of(), graph.findCommonFriendIds(1L, 99L));
+    }
+
+    @Test
+    @DisplayName("A test to check that a friend request changes the list of the user without reading the DAO.")
+    void addAndDeleteFriendChangeListsWithoutDao() {
+
+        // Подготавливаем данные для теста
+        FriendGraph friendGraph = new FriendGraph(new UnreadableUserDao(false));
+        friendGraph.rebuild(Map.of(1L, LongSortedSet.of(2), 2L, LongSortedSet.of(1)));
+
+        // вызываем тестируемый метод
+        friendGraph.addFriend(1L, 3L);
+        friendGraph.addFriend(4L, 1L);
+        friendGraph.deleteFriend(2L, 1L);
+
+        // проверяем утверждения
+        assertEquals(LongSortedSet.of(3), friendGraph.findFriendIds(1L)); // пользователь 4 не подтвержден
+        assertEquals(LongSortedSet.of(1), friendGraph.findFriendIds(4L));
+        assertTrue(friendGraph.findFriendIds(2L).isEmpty()); // дружба удалена у обоих пользователей
+        assertTrue(friendGraph.findFriendIds(3L).isEmpty());
+        assertFalse(friendGraph.findUserIds().contains(2L)); // пустой список удален из графа
+    }
+
+    @Test
+    @DisplayName("A test to check that a friendship of a mutual DAO changes the lists of both users.")
+    void addFriendOfMutualDaoChangesBothLists() {
+
+        // Подготавливаем данные для теста
+        FriendGraph friendGraph = new FriendGraph(new UnreadableUserDao(true));
+
+        // вызываем тестируемый метод
+        friendGraph.addFriend(1L, 2L);
+
+        // проверяем утверждения
+        assertEquals(LongSortedSet.of(2), friendGraph.findFriendIds(1L));
+        assertEquals(LongSortedSet.of(1), friendGraph.findFriendIds(2L));
+    }
+
+    @Test
+    @DisplayName("A test to check that a deleted user is removed from every friend list without reloading the graph.")
+    void userDeletedIsRemovedFromEveryList() {
+
+        // Подготавливаем данные для теста
+        FriendGraph friendGraph = new FriendGraph(new UnreadableUserDao(false));
+        friendGraph.rebuild(Map.of(
+                1L, LongSortedSet.of(2, 3, 4, 5),
+                2L, LongSortedSet.of(1, 3, 5),
+                5L, LongSortedSet.of(2),
+                6L, LongSortedSet.of(1)));
+
+        // вызываем тестируемый метод
+        friendGraph.onUserDeleted(new UserDeletedEvent(1L, List.of()));
+
+        // проверяем утверждения
+        assertTrue(friendGraph.findFriendIds(1L).isEmpty());
+        assertEquals(LongSortedSet.of(3, 5), friendGraph.findFriendIds(2L));
+        assertEquals(LongSortedSet.of(2), friendGraph.findFriendIds(5L)); // список без удаленного не изменен
+        assertFalse(friendGraph.findUserIds().contains(6L)); // пользователь 6 добавил только удаленного
+    }
+
+    @Test
+    @DisplayName("A test to check that concurrent changes of the friends of one user are not lost.")
+    void concurrentChangesOfOneUserAreNotLost() throws InterruptedException {
+
+        // Подготавливаем данные для теста
+        FriendGraph friendGraph = new FriendGraph(new UnreadableUserDao(false));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // вызываем тестируемый метод
+        for (int thread = 0; thread < THREADS; thread++) {
+            long offset = thread * 1_000L;
+            executor.submit(() -> {
+                start.await();
+                for (long friendId = offset + 2; friendId < offset + 1_002; friendId++) {
+                    friendGraph.addFriend(1L, friendId);
+                    if (friendId % 2 == 0) {
+                        friendGraph.deleteFriend(1L, friendId);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        // проверяем утверждения
+        assertEquals(THREADS * 500, friendGraph.findFriendIds(1L).size()); // остались только нечетные друзья
+        assertTrue(friendGraph.findFriendIds(1L).longStream().allMatch(friendId -> friendId % 2 != 0));
+    }
+
+
+    /**
+     * A DAO that fails on every read, the graph must be changed without reading the friends back.
+     */
+    private static class UnreadableUserDao extends UserDaoInMemoryImpl {
+        private final boolean isMutual;
+
+        private UnreadableUserDao(boolean isMutual) {
+            this.isMutual = isMutual;
+        }
+
+        @Override
+        public boolean isFriendshipMutual() {
+
+            return isMutual;
+        }
+
+        @Override
+        public Optional<User> findById(Long userId) {
+
+            throw new AssertionError("The friends must not be read from the DAO.");
+        }
+
+        @Override
+        public Map<Long, LongSortedSet> findAllFriendIds() {
+
+            throw new AssertionError("The graph must not be reloaded.");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendRecommenderTest {
+    private FriendGraph graph;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        graph = new FriendGraph(null);
+        meterRegistry = new SimpleMeterRegistry();
+        // у пользователя 1 друзья 2, 3 и 4; пользователь 4 - "знаменитость" с большим числом друзей
+        graph.rebuild(Map.of(
+                1L, LongSortedSet.of(2, 3, 4),
+                2L, LongSortedSet.of(1, 3, 5, 6),
+                3L, LongSortedSet.of(1, 6, 7),
+                4L, LongSortedSet.of(1, 5, 7, 8, 9, 10)));
+    }
+
+    @Test
+    @DisplayName("A test to check that non-friends are ranked by the number of mutual friends.")
+    void findRecommendationsRankedByMutualFriends() {
+
+        // Подготавливаем данные для теста
+        FriendRecommender recommender = createRecommender(100, 100);
+
+        // вызываем тестируемый метод
+        List<FriendRecommender.Recommendation> result = recommender.findRecommendations(1L, 3);
+
+        // проверяем утверждения
+        assertEquals(List.of(5L, 6L, 7L), userIds(result)); // друзья и сам пользователь не рекомендуются
+        assertEquals(List.of(2, 2, 2), result.stream()
+                .map(FriendRecommender.Recommendation::getMutualFriends)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("A test to check that friends with a large fan-out and friends over the limit are not expanded.")
+    void findRecommendationsWithCutOffs() {
+
+        // вызываем тестируемый метод и проверяем утверждения
+        assertEquals(List.of(6L, 5L, 7L), userIds(createRecommender(100, 5).findRecommendations(1L, 10)));
+        assertEquals(List.of(5L, 6L), userIds(createRecommender(1, 100).findRecommendations(1L, 10)));
+    }
+
+    @Test
+    @DisplayName("A test to check that cached recommendations are recomputed after invalidation.")
+    void invalidateRecomputesRecommendations() {
+
+        // Подготавливаем данные для теста
+        FriendRecommender recommender = createRecommender(100, 100);
+        recommender.findRecommendations(1L, 10);
+        graph.rebuild(Map.of(1L, LongSortedSet.of(2), 2L, LongSortedSet.of(1, 5)));
+
+        // вызываем тестируемый метод
+        List<FriendRecommender.Recommendation> cached = recommender.findRecommendations(1L, 10);
+        recommender.invalidate(1L, 2L);
+        List<FriendRecommender.Recommendation> recomputed = recommender.findRecommendations(1L, 10);
+
+        // проверяем утверждения
+        assertEquals(6, cached.size()); // до инвалидации ответ берется из кэша
+        assertEquals(List.of(5L), userIds(recomputed));
+    }
+
+    @Test
+    @DisplayName("A test to check that the precompute fills the cache for every user with friends.")
+    void precomputeAllFillsCache() {
+
+        // Подготавливаем данные для теста
+        FriendRecommender recommender = createRecommender(100, 100);
+
+        // вызываем тестируемый метод
+        recommender.precomputeAll();
+        recommender.findRecommendations(1L, 10);
+
+        // проверяем утверждения
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "recommendations")
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(0.0, meterRegistry.get("cache.gets").tag("cache", "recommendations")
+                .tag("result", "miss").functionCounter().count());
+    }
+
+    private FriendRecommender createRecommender(int maxFriends, int maxFanOut) {
+
+        return new FriendRecommender(graph, meterRegistry, 10, maxFriends, maxFanOut, 100,
+                Duration.ofMinutes(10), false);
+    }
+
+    private static List<Long> userIds(List<FriendRecommender.Recommendation> recommendations) {
+
+        return recommendations.stream()
+                .map(FriendRecommender.Recommendation::getUserId)
+                .collect(Collectors.toList());
+    }
+}
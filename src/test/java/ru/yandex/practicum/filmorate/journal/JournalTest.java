@@ -0,0 +1,305 @@
+package ru.yandex.practicum.filmorate.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.collection.LongSortedSet;
+import ru.yandex.practicum.filmorate.dao.impl.memory.FilmDaoInMemoryImpl;
+import ru.yandex.practicum.filmorate.dao.impl.memory.UserDaoInMemoryImpl;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    private final List<Journal> journals = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+
+        journals.forEach(Journal::close);
+    }
+
+    @Test
+    @DisplayName("A test to check that the films and likes are replayed from the log after a restart.")
+    void recoverFromLogRestoresFilmsAndLikes() {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = openFilms();
+        Film first = filmDao.save(film("Первый"));
+        Film second = filmDao.save(film("Второй"));
+        filmDao.addLike(first.getId(), 1L);
+        filmDao.addLike(first.getId(), 2L);
+        filmDao.deleteLike(first.getId(), 1L);
+        filmDao.addLike(second.getId(), 3L);
+        filmDao.update(first.toBuilder().name("Первый обновленный").build());
+        filmDao.deleteById(second.getId());
+        List<Film> expected = filmDao.findAll(FilmView.FULL);
+
+        // вызываем тестируемый метод
+        closeAll();
+        FilmDaoInMemoryImpl recovered = openFilms();
+
+        // проверяем утверждения
+        assertThat(recovered.findAll(FilmView.FULL))
+                .usingRecursiveComparison() // проверяем что фильмы, версии, жанры и лайки восстановлены
+                .isEqualTo(expected);
+        assertEquals(1L, recovered.findById(first.getId(), FilmView.SUMMARY).orElseThrow().getVersion());
+        assertEquals(LikeStatus.FILM_NOT_FOUND, recovered.addLike(second.getId(), 3L)); // удаленный фильм
+        assertEquals(3L, recovered.save(film("Третий")).getId()); // идентификаторы не повторяются
+    }
+
+    @Test
+    @DisplayName("A test to check that a snapshot replaces the older log and the later log is replayed over it.")
+    void recoverFromSnapshotAndLogTail() throws IOException {
+
+        // Подготавливаем данные для теста
+        UserDaoInMemoryImpl userDao = openUsers();
+        List<Long> userIds = LongStream.rangeClosed(1, 10)
+                .mapToObj(i -> userDao.save(user(i)).getId())
+                .collect(Collectors.toList());
+        userDao.addFriend(userIds.get(0), userIds.get(1));
+        userDao.addFriend(userIds.get(0), userIds.get(2));
+        journals.get(0).snapshot();
+        userDao.deleteFriend(userIds.get(0), userIds.get(1)); // изменения после снимка только в журнале
+        userDao.addFriend(userIds.get(3), userIds.get(4));
+        userDao.deleteById(userIds.get(2));
+        List<User> expected = userDao.findAll();
+
+        // вызываем тестируемый метод
+        closeAll();
+        UserDaoInMemoryImpl recovered = openUsers();
+
+        // проверяем утверждения
+        assertThat(recovered.findAll())
+                .usingRecursiveComparison()
+                .isEqualTo(expected);
+        assertEquals(LongSortedSet.of(), recovered.findById(userIds.get(0)).orElseThrow().getFriends());
+        assertEquals(LongSortedSet.of(5), recovered.findById(userIds.get(3)).orElseThrow().getFriends());
+        assertFalse(Files.exists(directory.resolve("users-000000000001.wal"))); // журнал до снимка удален
+        assertTrue(Files.exists(directory.resolve("users.snapshot")));
+    }
+
+    @Test
+    @DisplayName("A test to check that a record cut by a crash at the end of the log is dropped.")
+    void recoverDropsTornTail() throws IOException {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = openFilms();
+        Long filmId = filmDao.save(film("Фильм")).getId();
+        filmDao.addLike(filmId, 1L);
+        closeAll();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.toString().endsWith(".wal")).findFirst().orElseThrow();
+        }
+        long size = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 20, 1, 2, 3}, StandardOpenOption.APPEND); // неполная запись
+
+        // вызываем тестируемый метод
+        FilmDaoInMemoryImpl recovered = openFilms();
+        recovered.addLike(filmId, 2L);
+        closeAll();
+        FilmDaoInMemoryImpl reopened = openFilms();
+
+        // проверяем утверждения
+        assertEquals(size, Files.size(segment)); // неполная запись отрезана
+        assertEquals(List.of(1L, 2L), reopened.findLikes(filmId, null, 10)); // новые записи после обрезки читаются
+    }
+
+    @Test
+    @DisplayName("A test to check that no like is lost when snapshots are taken while the likes are written.")
+    void snapshotsDuringConcurrentWritesLoseNothing() throws Exception {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = openFilms();
+        List<Long> filmIds = LongStream.range(0, 10)
+                .mapToObj(i -> filmDao.save(film("Фильм " + i)).getId())
+                .collect(Collectors.toList());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // вызываем тестируемый метод
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            long userOffset = thread * 10_000L;
+            writers.add(executor.submit(() -> {
+                for (long userId = 1; userId <= 2_000; userId++) {
+                    Long filmId = filmIds.get((int) (userId % filmIds.size()));
+                    filmDao.addLike(filmId, userOffset + userId);
+                    if (userId % 3 == 0) {
+                        filmDao.deleteLike(filmId, userOffset + userId);
+                    }
+                }
+            }));
+        }
+        for (int i = 0; i < 5; i++) {
+            journals.get(0).snapshot(); // снимки без остановки записи
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+        List<Film> expected = filmDao.findAll(FilmView.FULL);
+        closeAll();
+        FilmDaoInMemoryImpl recovered = openFilms();
+
+        // проверяем утверждения
+        assertEquals(4 * (2_000 - 666), expected.stream().mapToInt(Film::getLikeCount).sum());
+        assertThat(recovered.findAll(FilmView.FULL))
+                .usingRecursiveComparison()
+                .isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("A test to check that concurrent likes and unlikes of one film are replayed in their order.")
+    void concurrentLikesOfOneFilmRecoverInOrder() throws Exception {
+
+        // Подготавливаем данные для теста
+        FilmDaoInMemoryImpl filmDao = openFilms();
+        Long filmId = filmDao.save(film("Фильм").toBuilder()
+                .genres(new LinkedHashSet<>(List.of(Genre.builder().id(3L).name("Мультфильм").build(),
+                        Genre.builder().id(1L).name("Комедия").build())))
+                .build()).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // вызываем тестируемый метод
+        List<Future<?>> writers = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            writers.add(executor.submit(() -> {
+                for (long userId = 1; userId <= 500; userId++) { // все потоки лайкают одних и тех же пользователей
+                    filmDao.addLike(filmId, userId);
+                    if (userId % 2 == 0) {
+                        filmDao.deleteLike(filmId, userId);
+                    }
+                }
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+        List<Long> expected = filmDao.findLikes(filmId, null, 1_000);
+        closeAll();
+        FilmDaoInMemoryImpl recovered = openFilms();
+
+        // проверяем утверждения
+        assertEquals(250, expected.size()); // остались только нечетные пользователи
+        assertEquals(expected, recovered.findLikes(filmId, null, 1_000));
+        assertEquals(List.of(1L, 3L), recovered.findById(filmId, FilmView.FULL).orElseThrow().getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList())); // жанры восстановлены по порядку идентификаторов
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("A benchmark of recovering 1M films with 10M likes, run with -Dbenchmark=true -DargLine=-Xmx3g.")
+    void recoveryTime() {
+
+        writeFilms(1_000_000, 10);
+
+        long start = System.nanoTime();
+        FilmDaoInMemoryImpl recovered = openFilms();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("films: %,d, likes: %,d, recovery: %.1f s%n", recovered.findAllLikeCounts().size(),
+                recovered.findAllLikeCounts().values().stream().mapToLong(Integer::longValue).sum(), seconds);
+    }
+
+    /**
+     * Writes the films and their likes to a snapshot and a log tail, the DAO is not kept in memory.
+     */
+    private void writeFilms(int films, int likesPerFilm) {
+
+        FilmDaoInMemoryImpl filmDao = new FilmDaoInMemoryImpl(journal("films", false));
+        filmDao.recover();
+        for (int i = 0; i < films; i++) {
+            Long filmId = filmDao.save(film("Фильм " + i)).getId();
+            for (long userId = 1; userId <= likesPerFilm; userId++) {
+                filmDao.addLike(filmId, userId * 100_000 + i % 100_000);
+            }
+        }
+        journals.get(0).snapshot();
+        for (long filmId = 1; filmId <= films / 10; filmId++) { // хвост журнала после снимка
+            filmDao.addLike(filmId, 1L);
+        }
+        closeAll();
+    }
+
+    private FilmDaoInMemoryImpl openFilms() {
+
+        FilmDaoInMemoryImpl filmDao = new FilmDaoInMemoryImpl(journal("films", true));
+        filmDao.recover();
+
+        return filmDao;
+    }
+
+    private UserDaoInMemoryImpl openUsers() {
+
+        UserDaoInMemoryImpl userDao = new UserDaoInMemoryImpl(journal("users", true));
+        userDao.recover();
+
+        return userDao;
+    }
+
+    private Journal journal(String name, boolean isFsync) {
+
+        Journal journal = new Journal(directory, name, isFsync);
+        journals.add(journal);
+
+        return journal;
+    }
+
+    private void closeAll() {
+
+        journals.forEach(Journal::close);
+        journals.clear();
+    }
+
+    private static Film film(String name) {
+
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1L).name("G").build())
+                .genres(Set.of(Genre.builder().id(2L).name("Драма").build()))
+                .build();
+    }
+
+    private static User user(long number) {
+
+        return User.builder()
+                .email("user" + number + "@mail.ru")
+                .login("user" + number)
+                .name("Пользователь " + number)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.dao.impl.memory.FilmDaoInMemoryImpl;
+import ru.yandex.practicum.filmorate.dao.impl.memory.UserDaoInMemoryImpl;
+import ru.yandex.practicum.filmorate.dto.FilmDTO;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.index.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.mapper.FilmMapperImpl;
+import ru.yandex.practicum.filmorate.model.FilmView;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.version.EntityVersions;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+class FilmServiceImplTest {
+    private FilmDaoInMemoryImpl filmDao;
+    private UserDaoInMemoryImpl userDao;
+    private FilmServiceImpl filmService;
+
+    @BeforeEach
+    void setUp() {
+        filmDao = new FilmDaoInMemoryImpl();
+        userDao = new UserDaoInMemoryImpl();
+        filmService = new FilmServiceImpl(filmDao, userDao, new FilmMapperImpl(), new FilmPopularityIndex(filmDao),
+                new EntityVersions());
+    }
+
+    @Test
+    @DisplayName("A test to check that a DAO without users does not accept a like of a missing user.")
+    void testLikeFilmByMissingUserWithInMemoryDaoResultNotFound() {
+
+        // Подготавливаем данные для теста
+        Long filmId = filmService.create(film()).getId();
+        Long userId = userDao.save(user()).getId();
+
+        // вызываем тестируемый метод
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> filmService.likeFilm(filmId, userId + 1));
+        NotFoundException deleteException = assertThrows(NotFoundException.class,
+                () -> filmService.deleteLike(filmId, userId + 1));
+        filmService.likeFilm(filmId, userId);
+
+        // проверяем утверждения
+        assertEquals(NOT_FOUND, exception.getHttpStatus());
+        assertEquals(String.format("The user by ID - `%d` was not found.", userId + 1), exception.getMessage());
+        assertEquals(NOT_FOUND, deleteException.getHttpStatus());
+        assertEquals(List.of(userId), filmDao.findLikes(filmId, null, 10)); // лайк отсутствующего пользователя не сохранен
+        assertEquals(1, filmDao.findById(filmId, FilmView.SUMMARY).orElseThrow().getLikeCount());
+    }
+
+    @Test
+    @DisplayName("A test to check that a missing film and a missing user are both reported.")
+    void testLikeMissingFilmByMissingUserWithInMemoryDaoResultNotFound() {
+
+        // вызываем тестируемый метод
+        NotFoundException exception = assertThrows(NotFoundException.class, () -> filmService.likeFilm(9L, 9L));
+
+        // проверяем утверждения
+        assertEquals("The film by ID - `9` was not found. & The user by ID - `9` was not found.",
+                exception.getMessage());
+    }
+
+    private static FilmDTO film() {
+
+        return FilmDTO.builder()
+                .name("Фильм")
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1L).name("G").build())
+                .build();
+    }
+
+    private static User user() {
+
+        return User.builder()
+                .email("user@mail.ru")
+                .login("user")
+                .name("Пользователь")
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.version;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.FILM;
+import static ru.yandex.practicum.filmorate.version.EntityVersions.Type.USER;
+
+class EntityVersionsTest {
+    private EntityVersions versions;
+
+    @BeforeEach
+    void setUp() {
+        versions = new EntityVersions();
+    }
+
+    @Test
+    @DisplayName("A test to check that a write changes the tags of the entity and its collection only.")
+    void touchChangesEntityAndCollectionTags() {
+
+        // Подготавливаем данные для теста
+        String film1 = versions.tag(FILM, 1L);
+        String film2 = versions.tag(FILM, 2L);
+        String films = versions.tag(FILM);
+        String users = versions.tag(USER);
+
+        // вызываем тестируемый метод
+        versions.touch(FILM, 1L);
+
+        // проверяем утверждения
+        assertNotEquals(film1, versions.tag(FILM, 1L)); // тег измененного фильма изменился
+        assertEquals(film2, versions.tag(FILM, 2L)); // тег другого фильма не изменился
+        assertNotEquals(films, versions.tag(FILM)); // тег списка фильмов изменился
+        assertEquals(users, versions.tag(USER)); // теги другого типа не изменились
+        assertTrue(versions.tag(FILM, 1L).startsWith("\"") && versions.tag(FILM, 1L).endsWith("\""));
+    }
+
+    @Test
+    @DisplayName("A test to check that a change of all entities never brings back an earlier tag.")
+    void touchAllChangesEveryEntityTag() {
+
+        // Подготавливаем данные для теста
+        versions.touch(FILM, 1L);
+        String film1 = versions.tag(FILM, 1L);
+        String film2 = versions.tag(FILM, 2L);
+
+        // вызываем тестируемый метод
+        versions.touchAll(FILM);
+
+        // проверяем утверждения
+        String film1AfterTouchAll = versions.tag(FILM, 1L);
+        assertNotEquals(film1, film1AfterTouchAll);
+        assertNotEquals(film2, versions.tag(FILM, 2L));
+
+        // повторно вызываем тестируемый метод
+        versions.touch(FILM, 1L);
+
+        // проверяем утверждения
+        assertNotEquals(film1AfterTouchAll, versions.tag(FILM, 1L)); // запись после эпохи снова меняет тег
+        assertNotEquals(versions.tag(FILM, 1L), new EntityVersions().tag(FILM, 1L)); // теги зависят от запуска
+    }
+}
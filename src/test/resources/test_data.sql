@@ -34,12 +34,16 @@ CREATE TABLE IF NOT EXISTS films
     release_date DATE    NOT NULL,
     duration     INTEGER NOT NULL,
     mpa_id       INTEGER REFERENCES mpa (id) ON DELETE SET NULL,
+    like_count   INTEGER NOT NULL DEFAULT 0,
     CONSTRAINT films_name_check CHECK (LENGTH(name) BETWEEN 1 AND 50),
     CONSTRAINT description_check CHECK (LENGTH(description) BETWEEN 1 AND 200),
     CONSTRAINT release_date_check CHECK (release_date >= '1895-12-28'),
-    CONSTRAINT duration_check CHECK (duration >= 1)
+    CONSTRAINT duration_check CHECK (duration >= 1),
+    CONSTRAINT like_count_check CHECK (like_count >= 0)
 );
 
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
+
 CREATE TABLE IF NOT EXISTS genres
 (
     id   INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -56,10 +60,12 @@ CREATE TABLE IF NOT EXISTS likes
 
 CREATE TABLE IF NOT EXISTS friendships
 (
-    user_1            INTEGER NOT NULL REFERENCES users (id) ON DELETE CASCADE,
-    user_2            INTEGER NOT NULL REFERENCES users (id) ON DELETE CASCADE,
-    friendship_status BOOLEAN DEFAULT FALSE,
-    PRIMARY KEY (user_1, user_2)
+    user_low         INTEGER NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    user_high        INTEGER NOT NULL REFERENCES users (id) ON DELETE CASCADE,
+    initiated_by_low BOOLEAN NOT NULL,
+    confirmed        BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (user_low, user_high),
+    CHECK (user_low < user_high)
 );
 
 CREATE TABLE IF NOT EXISTS film_genre